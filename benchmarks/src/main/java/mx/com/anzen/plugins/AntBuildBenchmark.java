@@ -0,0 +1,307 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Build a generated reactor with Maven, generate its Ant project with the
+ * <code>prosa</code> goal, and build it again with Ant 1.7.1, reporting for
+ * each target the time of a cold build, of a warm build and of a no-op
+ * rebuild with each tool.
+ * <p>
+ * A cold build starts from clean outputs, the first time. A warm build starts
+ * from clean outputs again, with the caches of the file system warm. A no-op
+ * rebuild runs again without cleaning, nothing changed. Each build is a new
+ * JVM, <code>mvn</code> for Maven and <code>org.apache.tools.ant.Main</code>
+ * for Ant, with the classes of this jar.
+ * <p>
+ * The Ant targets are compared with the Maven goals building the same
+ * outputs: <code>compile</code>, <code>test-compile</code>, <code>test</code>,
+ * <code>javadoc</code> and <code>package</code>, without the tests since the
+ * Ant <code>package</code> target doesn't run them. The builds which failed
+ * are reported so, their output tells why.
+ * <p>
+ * Maven runs offline, with the generated repository as its local repository
+ * and the user's one chained after it, so the modules are installed there
+ * only. This needs Maven 3.9 and the plugins of the build in the user's
+ * repository. The sources are copied to the Ant project as the deployment
+ * does. The results are also written to
+ * <code>target/ant-build-benchmark.csv</code>, and the output of each build
+ * to <code>target/ant-build-benchmark/</code>.
+ */
+public class AntBuildBenchmark {
+
+	private static final String[] TARGETS = { "compile", "compile-tests", "test", "javadoc", "package" };
+
+	private static final String[][] MAVEN_GOALS = { { "compile" }, { "test-compile" }, { "test" }, { "org.apache.maven.plugins:maven-javadoc-plugin:3.12.0:javadoc" }, { "package", "-DskipTests" } };
+
+	private static final String PROSA_GOAL = "mx.com.anzen.plugins:anzen-maven-plugin:1.0-SNAPSHOT:prosa";
+
+	private final File basedir;
+
+	private final File logDirectory;
+
+	private final List<File> modules = new ArrayList<File>();
+
+	/**
+	 * @param basedir
+	 *            the directory of the reactor, not null
+	 * @param logDirectory
+	 *            the directory of the output of the builds, not null
+	 */
+	public AntBuildBenchmark(File basedir, File logDirectory) {
+		this.basedir = basedir;
+		this.logDirectory = logDirectory;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int moduleCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+		File basedir = File.createTempFile("anzen-ant", "");
+		basedir.delete();
+		try {
+			AntBuildBenchmark benchmark = new AntBuildBenchmark(basedir, new File("target/ant-build-benchmark"));
+			benchmark.generate(moduleCount);
+
+			List<Result> results = new ArrayList<Result>();
+			for (int i = 0; i < TARGETS.length; i++) {
+				results.add(new Result(TARGETS[i]));
+			}
+			for (int i = 0; i < TARGETS.length; i++) {
+				benchmark.runMaven(MAVEN_GOALS[i], results.get(i));
+			}
+			double prosa = benchmark.generateAntProject();
+			for (Result result : results) {
+				benchmark.runAnt(result);
+			}
+
+			System.out.println(moduleCount + " modules, Ant project generated in " + Result.format(prosa) + " s");
+			System.out.println(Result.getHeader());
+			for (Result result : results) {
+				System.out.println(result);
+			}
+			writeResults(results, new File("target/ant-build-benchmark.csv"));
+		} finally {
+			FileUtils.deleteDirectory(basedir);
+		}
+	}
+
+	/**
+	 * Generate the reactor and install its modules, which the goals not
+	 * building them, as <code>javadoc</code> and <code>prosa</code>, resolve
+	 * from the repository. There are jar, war and ear modules only: the root
+	 * Ant project copies a <code>build.properties</code> for each module, but
+	 * none is written for a <code>pom</code> one.
+	 *
+	 * @param moduleCount
+	 *            the number of modules
+	 * @throws IOException
+	 *             if the reactor couldn't be generated or built
+	 */
+	public void generate(int moduleCount) throws IOException {
+		SyntheticReactor reactor = new SyntheticReactor();
+		reactor.setModuleCount(moduleCount);
+		reactor.setPackagingMix(6, 2, 1, 0);
+		List<MavenProject> projects = reactor.generate(basedir);
+		for (MavenProject project : projects.subList(1, projects.size())) {
+			modules.add(project.getBasedir());
+		}
+		if (run(getMavenCommand(Arrays.asList("install", "-DskipTests")), basedir, "maven-install") < 0) {
+			throw new IOException("The modules couldn't be installed, see " + logDirectory);
+		}
+	}
+
+	/**
+	 * Time the cold, warm and no-op builds of Maven.
+	 *
+	 * @param goals
+	 *            the goals and options of the builds
+	 * @param result
+	 *            the result of the target
+	 * @throws IOException
+	 *             if any
+	 */
+	public void runMaven(String[] goals, Result result) throws IOException {
+		List<String> clean = new ArrayList<String>();
+		clean.add("clean");
+		clean.addAll(Arrays.asList(goals));
+		result.mavenCold = run(getMavenCommand(clean), basedir, "maven-" + result.target + "-cold");
+		result.mavenWarm = run(getMavenCommand(clean), basedir, "maven-" + result.target + "-warm");
+		result.mavenNoop = run(getMavenCommand(Arrays.asList(goals)), basedir, "maven-" + result.target + "-noop");
+	}
+
+	/**
+	 * Generate the Ant project and copy the sources into it, with the common
+	 * targets the deployment gives to the root project.
+	 *
+	 * @return the time of the <code>prosa</code> goal, in seconds
+	 * @throws IOException
+	 *             if the Ant project couldn't be generated
+	 */
+	public double generateAntProject() throws IOException {
+		double seconds = run(getMavenCommand(Arrays.asList(PROSA_GOAL)), basedir, "maven-prosa");
+		if (seconds < 0) {
+			throw new IOException("The Ant project couldn't be generated, see " + logDirectory);
+		}
+
+		File common = new File(basedir, "common");
+		common.mkdirs();
+		FileUtils.fileWrite(new File(common, "commonProsa.xml").getAbsolutePath(), "<!-- common targets of the deployment -->\n");
+		File buildDir = getAntBuildDirectory();
+		for (File module : modules) {
+			FileUtils.copyDirectoryStructure(new File(module, "src"), new File(buildDir, module.getName() + "/src"));
+		}
+		return seconds;
+	}
+
+	/**
+	 * Time the cold, warm and no-op builds of Ant.
+	 *
+	 * @param result
+	 *            the result of the target
+	 * @throws IOException
+	 *             if any
+	 */
+	public void runAnt(Result result) throws IOException {
+		File antProject = new File(basedir, SyntheticReactor.ROOT_DIRECTORY);
+		cleanAnt();
+		result.antCold = run(getAntCommand(result.target), antProject, "ant-" + result.target + "-cold");
+		cleanAnt();
+		result.antWarm = run(getAntCommand(result.target), antProject, "ant-" + result.target + "-warm");
+		result.antNoop = run(getAntCommand(result.target), antProject, "ant-" + result.target + "-noop");
+	}
+
+	/**
+	 * Delete the outputs of the Ant builds, as <code>mvn clean</code> does.
+	 */
+	private void cleanAnt() throws IOException {
+		File antProject = new File(basedir, SyntheticReactor.ROOT_DIRECTORY);
+		for (File module : modules) {
+			FileUtils.deleteDirectory(new File(getAntBuildDirectory(), module.getName() + "/target"));
+		}
+		for (String output : new String[] { "dist", "javadocs" }) {
+			File directory = new File(antProject, output);
+			if (directory.isDirectory()) {
+				FileUtils.cleanDirectory(directory);
+			}
+		}
+	}
+
+	private File getAntBuildDirectory() {
+		return new File(basedir, SyntheticReactor.ROOT_DIRECTORY + "/build/root-1.0");
+	}
+
+	private List<String> getMavenCommand(List<String> goals) {
+		String userRepository = System.getProperty("maven.repo.local", System.getProperty("user.home") + "/.m2/repository");
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("maven.executable", "mvn"));
+		command.add("-B");
+		command.add("-o");
+		command.add("-Dmaven.repo.local=" + SyntheticReactor.getLocalRepository(basedir).getAbsolutePath());
+		command.add("-Dmaven.repo.local.tail=" + userRepository);
+		command.addAll(goals);
+		return command;
+	}
+
+	private static List<String> getAntCommand(String target) {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + "/bin/java");
+		command.add("-cp");
+		StringBuffer classpath = new StringBuffer();
+		for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			classpath.append(classpath.length() > 0 ? File.pathSeparator : "").append(new File(entry).getAbsolutePath());
+		}
+		command.add(classpath.toString());
+		command.add("org.apache.tools.ant.Main");
+		command.add("-f");
+		command.add("build.xml");
+		command.add(target);
+		return command;
+	}
+
+	/**
+	 * @return the wall time of the command, in seconds, or -1 if it failed
+	 */
+	private double run(List<String> command, File directory, String name) throws IOException {
+		logDirectory.mkdirs();
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(directory);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(logDirectory, name + ".log"));
+
+		long start = System.nanoTime();
+		Process process = builder.start();
+		int exitValue;
+		try {
+			exitValue = process.waitFor();
+		} catch (InterruptedException e) {
+			process.destroy();
+			throw new IOException("Interrupted running " + name);
+		}
+		double seconds = (System.nanoTime() - start) / 1000000000.0;
+		return exitValue == 0 ? seconds : -1;
+	}
+
+	private static void writeResults(List<Result> results, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.println("target,mavenCold,mavenWarm,mavenNoop,antCold,antWarm,antNoop");
+			for (Result result : results) {
+				writer.println(result.target + "," + result.mavenCold + "," + result.mavenWarm + "," + result.mavenNoop + "," + result.antCold + "," + result.antWarm + ","
+						+ result.antNoop);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * The times of the builds of a target, in seconds, -1 for the builds which
+	 * failed.
+	 */
+	public static class Result {
+
+		private final String target;
+
+		private double mavenCold;
+
+		private double mavenWarm;
+
+		private double mavenNoop;
+
+		private double antCold;
+
+		private double antWarm;
+
+		private double antNoop;
+
+		Result(String target) {
+			this.target = target;
+		}
+
+		static String getHeader() {
+			return String.format("%-14s %10s %10s %10s %10s %10s %10s %10s", "Target", "Maven cold", "warm", "no-op", "Ant cold", "warm", "no-op", "Ant/Maven");
+		}
+
+		static String format(double seconds) {
+			return seconds < 0 ? "failed" : String.format("%.2f", seconds);
+		}
+
+		@Override
+		public String toString() {
+			String ratio = mavenWarm > 0 && antWarm > 0 ? String.format("%.2f", antWarm / mavenWarm) : "-";
+			return String.format("%-14s %10s %10s %10s %10s %10s %10s %10s", target, format(mavenCold), format(mavenWarm), format(mavenNoop), format(antCold), format(antWarm),
+					format(antNoop), ratio);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.ArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.DefaultArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Reporting;
+import org.apache.maven.model.Resource;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * A reactor of a <code>pom</code> root and its <code>jar</code>,
+ * <code>war</code> and <code>ear</code> modules, as Maven would give them to
+ * the mojos, under a temporary directory. The models are read from the
+ * effective POMs in <code>benchmarks/</code> of the class path.
+ */
+public class BenchmarkProjects {
+
+	/**
+	 * Number of compile and test dependencies of each module.
+	 */
+	private static final int DEPENDENCY_COUNT = 40;
+
+	static final ArtifactHandler JAR_HANDLER = new ArtifactHandler() {
+		public String getExtension() {
+			return "jar";
+		}
+
+		public String getDirectory() {
+			return null;
+		}
+
+		public String getClassifier() {
+			return null;
+		}
+
+		public String getPackaging() {
+			return "jar";
+		}
+
+		public boolean isIncludesDependencies() {
+			return false;
+		}
+
+		public String getLanguage() {
+			return "java";
+		}
+
+		public boolean isAddedToClasspath() {
+			return true;
+		}
+	};
+
+	private final File basedir;
+
+	private final MavenProject root;
+
+	private final List<MavenProject> modules = new ArrayList<MavenProject>();
+
+	private final ArtifactResolverWrapper wrapper;
+
+	private final Settings settings = new Settings();
+
+	private final Properties executionProperties = new Properties();
+
+	/**
+	 * @throws IOException
+	 *             if the projects couldn't be read or written
+	 */
+	public BenchmarkProjects() throws IOException {
+		basedir = File.createTempFile("anzen-benchmarks", "");
+		basedir.delete();
+		basedir.mkdirs();
+
+		File localRepository = new File(basedir, "repository");
+		ArtifactRepository repository = new DefaultArtifactRepository("local", localRepository.toURI().toString(), new DefaultRepositoryLayout());
+		wrapper = ArtifactResolverWrapper.getInstance(null, null, repository, new ArrayList<String>());
+
+		executionProperties.setProperty("shared.dir", "/opt/shared");
+		executionProperties.setProperty("java.home", System.getProperty("java.home"));
+
+		root = readProject("root", basedir, null);
+		for (String packaging : new String[] { "jar", "war", "ear" }) {
+			File moduleDir = new File(basedir, "mod" + packaging);
+			MavenProject module = readProject(packaging, moduleDir, root);
+			// only the jar module declares the system dependency
+			module.setArtifacts(createArtifacts(localRepository, "jar".equals(packaging)));
+			modules.add(module);
+		}
+		new File(modules.get(1).getBasedir(), "src/main/webapp/WEB-INF").mkdirs();
+		new File(basedir, "src/main/scripts").mkdirs();
+		new File(basedir, "config").mkdirs();
+		FileUtils.fileWrite(new File(basedir, "config/app.properties").getAbsolutePath(), "name=value\n");
+	}
+
+	/**
+	 * @param packaging
+	 *            <code>pom</code>, <code>jar</code>, <code>war</code> or
+	 *            <code>ear</code>
+	 * @return the project with this packaging, not null
+	 */
+	public MavenProject getProject(String packaging) {
+		if ("pom".equals(packaging)) {
+			return root;
+		}
+		for (MavenProject module : modules) {
+			if (packaging.equals(module.getPackaging())) {
+				return module;
+			}
+		}
+		throw new IllegalArgumentException("No " + packaging + " project");
+	}
+
+	/**
+	 * @param project
+	 *            one of the projects, not null
+	 * @return a new writer of the Ant files of the project, as the mojos
+	 *         create it
+	 */
+	public AntBuildWriter createWriter(MavenProject project) {
+		return new AntBuildWriter(project, wrapper, settings, true, executionProperties, "prosa", "webapp/WEB-INF/lib");
+	}
+
+	/**
+	 * @return the files mappings of the root project, not null
+	 */
+	public List<FilesMapping> getFilesMappings() {
+		List<FilesMapping> filesMappings = new ArrayList<FilesMapping>();
+		String[][] mappings = { { "config", "cfg" }, { "config/app.properties", "cfg2/app.properties" }, { "src/main/scripts", "bin" } };
+		for (String[] mapping : mappings) {
+			FilesMapping fm = new FilesMapping();
+			fm.setSourceDirectory(mapping[0]);
+			fm.setDestinationDirectory(mapping[1]);
+			fm.setRestorable(true);
+			filesMappings.add(fm);
+		}
+		return filesMappings;
+	}
+
+	/**
+	 * @return the root directory of the projects
+	 */
+	public File getBasedir() {
+		return basedir;
+	}
+
+	/**
+	 * Delete the projects and everything written under them.
+	 *
+	 * @throws IOException
+	 *             if any
+	 */
+	public void delete() throws IOException {
+		FileUtils.deleteDirectory(basedir);
+	}
+
+	private MavenProject readProject(String name, File projectDir, MavenProject parent) throws IOException {
+		Model model;
+		InputStream in = BenchmarkProjects.class.getResourceAsStream("benchmarks/" + name + ".xml");
+		try {
+			model = new MavenXpp3Reader().read(new InputStreamReader(in, "UTF-8"));
+		} catch (XmlPullParserException e) {
+			throw new IOException("Exception occured: " + e.getMessage());
+		} finally {
+			IOUtil.close(in);
+		}
+
+		return createProject(model, projectDir, parent);
+	}
+
+	/**
+	 * Give a model the defaults of the super POM, and create its project with
+	 * the source roots created.
+	 *
+	 * @param model
+	 *            not null
+	 * @param projectDir
+	 *            the base directory of the project, not null
+	 * @param parent
+	 *            could be null
+	 * @return the project, not null
+	 */
+	static MavenProject createProject(Model model, File projectDir, MavenProject parent) {
+		// the defaults of the super POM
+		Build build = model.getBuild();
+		build.setDirectory(new File(projectDir, "target").getAbsolutePath());
+		build.setOutputDirectory(new File(projectDir, "target/classes").getAbsolutePath());
+		build.setTestOutputDirectory(new File(projectDir, "target/test-classes").getAbsolutePath());
+		build.setFinalName(model.getArtifactId() + "-" + model.getVersion());
+		build.addResource(createResource(new File(projectDir, "src/main/resources")));
+		build.addTestResource(createResource(new File(projectDir, "src/test/resources")));
+		model.setReporting(new Reporting());
+		model.getReporting().setOutputDirectory(new File(projectDir, "target/site").getAbsolutePath());
+
+		MavenProject project = new MavenProject(model);
+		project.setOriginalModel(model);
+		project.setFile(new File(projectDir, "pom.xml"));
+		project.setParent(parent);
+		if (!"pom".equals(model.getPackaging())) {
+			File sourceDir = new File(projectDir, "src/main/java");
+			File testSourceDir = new File(projectDir, "src/test/java");
+			sourceDir.mkdirs();
+			testSourceDir.mkdirs();
+			project.addCompileSourceRoot(sourceDir.getAbsolutePath());
+			project.addTestCompileSourceRoot(testSourceDir.getAbsolutePath());
+		}
+		return project;
+	}
+
+	private static Resource createResource(File directory) {
+		Resource resource = new Resource();
+		resource.setDirectory(directory.getAbsolutePath());
+		return resource;
+	}
+
+	private static Set<Artifact> createArtifacts(File localRepository, boolean systemScope) {
+		Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+		for (int i = 0; i < DEPENDENCY_COUNT; i++) {
+			String scope = i % 4 == 3 ? Artifact.SCOPE_TEST : Artifact.SCOPE_COMPILE;
+			Artifact artifact = new DefaultArtifact("org.example.lib" + i, "lib" + i, VersionRange.createFromVersion("1." + i), scope, "jar", null, JAR_HANDLER);
+			artifact.setFile(new File(localRepository, "org/example/lib" + i + "/lib" + i + "/1." + i + "/lib" + i + "-1." + i + ".jar"));
+			artifacts.add(artifact);
+		}
+		if (systemScope) {
+			Artifact servletApi = new DefaultArtifact("javax.servlet", "servlet-api", VersionRange.createFromVersion("2.5"), Artifact.SCOPE_SYSTEM, "jar", null, JAR_HANDLER);
+			servletApi.setFile(new File("/opt/shared/servlet-api.jar"));
+			artifacts.add(servletApi);
+		}
+		return artifacts;
+	}
+}
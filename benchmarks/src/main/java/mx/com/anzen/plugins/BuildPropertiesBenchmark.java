@@ -0,0 +1,72 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The <code>build.properties</code> of a <code>jar</code> module by number
+ * of project properties.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildPropertiesBenchmark {
+
+	@Param({ "10", "100", "1000" })
+	public int propertyCount;
+
+	private BenchmarkProjects projects;
+
+	private AntBuildWriter writer;
+
+	@Setup
+	public void setUp() throws IOException {
+		projects = new BenchmarkProjects();
+		MavenProject project = projects.getProject("jar");
+		Properties properties = project.getProperties();
+		for (int i = 0; i < propertyCount; i++) {
+			// names sorting differently as text and as numbers, and values
+			// with characters to escape
+			switch (i % 3) {
+			case 0:
+				properties.setProperty("module" + i + ".dir", new File(project.getBasedir(), "src/module" + i).getAbsolutePath());
+				break;
+			case 1:
+				properties.setProperty("module" + i + ".url", "http://localhost:8080/module" + i + "?a=b&c=d");
+				break;
+			default:
+				properties.setProperty("module" + i + ".message", "Módulo " + i + ": listo\tpara usarse");
+			}
+		}
+		writer = projects.createWriter(project);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		projects.delete();
+	}
+
+	@Benchmark
+	public void writeBuildProperties() throws IOException {
+		writer.writeBuildProperties();
+	}
+}
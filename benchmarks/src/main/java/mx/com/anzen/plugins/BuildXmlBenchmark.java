@@ -0,0 +1,60 @@
+package mx.com.anzen.plugins;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The <code>build.xml</code> of a module by packaging, from a new writer so
+ * the model of the Ant project is built each time. After the first invocation
+ * the file is up to date, so it is compared and not written again, as when the
+ * plugin runs on an unchanged project with <code>overwrite</code> set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildXmlBenchmark {
+
+	@Param({ "jar", "war", "ear", "pom" })
+	public String packaging;
+
+	private BenchmarkProjects projects;
+
+	private MavenProject project;
+
+	private List<FilesMapping> filesMappings;
+
+	@Setup
+	public void setUp() throws IOException {
+		projects = new BenchmarkProjects();
+		project = projects.getProject(packaging);
+		filesMappings = projects.getFilesMappings();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		projects.delete();
+	}
+
+	@Benchmark
+	public void writeBuildXml() throws IOException {
+		projects.createWriter(project).writeBuildXmls(filesMappings, "src/main/webapp");
+	}
+}
@@ -0,0 +1,431 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Compare JMH results, written with <code>-rf json</code>, with a baseline
+ * in the same format, and fail when the time or the allocation per operation
+ * of a benchmark grew beyond a tolerance. A table of the differences is
+ * printed for every benchmark run.
+ * <p>
+ * The time is only regressed when the lower bound of the confidence interval
+ * of the result is beyond the upper bound of the baseline's, grown by the
+ * tolerance, since it varies from a run to the other much more than the
+ * allocation does.
+ * <p>
+ * Usage:
+ * <code>PerformanceGate baseline.json result.json [timeTolerance [allocationTolerance [update]]]</code>
+ * where the tolerances are ratios, <code>0.25</code> for 25 %. With
+ * <code>update</code> set to <code>true</code>, the result becomes the new
+ * baseline instead.
+ */
+public class PerformanceGate {
+
+	/**
+	 * Name of the secondary metric of the allocation per operation, given by
+	 * the gc profiler.
+	 */
+	private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+	/**
+	 * Allocation growth, in bytes per operation, always tolerated since the
+	 * measure is not that precise.
+	 */
+	private static final double ALLOCATION_SLACK = 64;
+
+	private final double timeTolerance;
+
+	private final double allocationTolerance;
+
+	/**
+	 * @param timeTolerance
+	 *            the growth of the time per operation tolerated, as a ratio
+	 * @param allocationTolerance
+	 *            the growth of the allocation per operation tolerated, as a
+	 *            ratio
+	 */
+	public PerformanceGate(double timeTolerance, double allocationTolerance) {
+		this.timeTolerance = timeTolerance;
+		this.allocationTolerance = allocationTolerance;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: PerformanceGate baseline.json result.json [timeTolerance [allocationTolerance [update]]]");
+			System.exit(2);
+		}
+		File baseline = new File(args[0]);
+		File result = new File(args[1]);
+		double timeTolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.25;
+		double allocationTolerance = args.length > 3 ? Double.parseDouble(args[3]) : 0.10;
+
+		if (args.length > 4 && Boolean.parseBoolean(args[4])) {
+			FileUtils.copyFile(result, baseline);
+			System.out.println("Baseline " + baseline + " updated from " + result);
+			return;
+		}
+
+		PerformanceGate gate = new PerformanceGate(timeTolerance, allocationTolerance);
+		int regressions = gate.compare(read(baseline), read(result));
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmarks regressed beyond " + format(timeTolerance) + " of time or " + format(allocationTolerance) + " of allocation");
+			System.exit(1);
+		}
+		System.out.println("No benchmark regressed beyond " + format(timeTolerance) + " of time or " + format(allocationTolerance) + " of allocation");
+	}
+
+	/**
+	 * Print the table of the differences of each benchmark of the result.
+	 *
+	 * @param baseline
+	 *            the benchmarks of the baseline, by name and parameters
+	 * @param result
+	 *            the benchmarks run, by name and parameters
+	 * @return the number of benchmarks which regressed
+	 */
+	public int compare(Map<String, Benchmark> baseline, Map<String, Benchmark> result) {
+		int width = 9;
+		for (String key : result.keySet()) {
+			width = Math.max(width, key.length());
+		}
+		String row = "%-" + width + "s %12s %12s %8s %14s %14s %8s  %s%n";
+		System.out.printf(row, "Benchmark", "Base", "Time", "Diff", "Base (B/op)", "Alloc (B/op)", "Diff", "");
+
+		int regressions = 0;
+		for (Map.Entry<String, Benchmark> entry : result.entrySet()) {
+			Benchmark current = entry.getValue();
+			Benchmark base = baseline.get(entry.getKey());
+			if (base == null) {
+				System.out.printf(row, entry.getKey(), "-", format(current.score, current.unit), "-", "-", formatAllocation(current.allocation), "-", "new");
+				continue;
+			}
+			if (!base.unit.equals(current.unit)) {
+				System.out.printf(row, entry.getKey(), format(base.score, base.unit), format(current.score, current.unit), "-", "-", "-", "-", "unit changed");
+				continue;
+			}
+
+			double timeGrowth = getGrowth(base.score, current.score);
+			double allocationGrowth = getGrowth(base.allocation, current.allocation);
+			List<String> failures = new ArrayList<String>();
+			if (current.getLowerBound() > base.getUpperBound() * (1 + timeTolerance)) {
+				failures.add("time");
+			}
+			if (allocationGrowth > allocationTolerance && current.allocation - base.allocation > ALLOCATION_SLACK) {
+				failures.add("allocation");
+			}
+			String status;
+			if (!failures.isEmpty()) {
+				regressions++;
+				status = "REGRESSED " + failures;
+			} else if (timeGrowth > timeTolerance) {
+				status = "ok, within the error";
+			} else {
+				status = "ok";
+			}
+			System.out.printf(row, entry.getKey(), format(base.score, base.unit), format(current.score, current.unit), formatGrowth(timeGrowth), formatAllocation(base.allocation),
+					formatAllocation(current.allocation), formatGrowth(allocationGrowth), status);
+		}
+		for (String key : baseline.keySet()) {
+			if (!result.containsKey(key)) {
+				System.out.printf(row, key, "-", "-", "-", "-", "-", "-", "not run");
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Read the benchmarks of JMH results.
+	 *
+	 * @param file
+	 *            the results written with <code>-rf json</code>, not null
+	 * @return the benchmarks by name and parameters, in the order of the file
+	 * @throws IOException
+	 *             if the file couldn't be read or is not JMH results
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Benchmark> read(File file) throws IOException {
+		Object json;
+		try {
+			json = new JsonReader(FileUtils.fileRead(file, "UTF-8")).read();
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Exception occured reading " + file + ": " + e.getMessage());
+		}
+		if (!(json instanceof List)) {
+			throw new IOException("Not JMH results: " + file);
+		}
+
+		Map<String, Benchmark> benchmarks = new LinkedHashMap<String, Benchmark>();
+		for (Map<String, Object> run : (List<Map<String, Object>>) json) {
+			StringBuffer key = new StringBuffer((String) run.get("benchmark"));
+			key.delete(0, key.lastIndexOf(".", key.lastIndexOf(".") - 1) + 1);
+			Map<String, Object> params = (Map<String, Object>) run.get("params");
+			if (params != null) {
+				for (Map.Entry<String, Object> param : params.entrySet()) {
+					key.append(key.indexOf(":") < 0 ? ":" : ",").append(param.getKey()).append('=').append(param.getValue());
+				}
+			}
+
+			Map<String, Object> primary = (Map<String, Object>) run.get("primaryMetric");
+			Benchmark benchmark = new Benchmark();
+			benchmark.score = toDouble(primary.get("score"));
+			benchmark.scoreError = toDouble(primary.get("scoreError"));
+			benchmark.unit = (String) primary.get("scoreUnit");
+			benchmark.allocation = Double.NaN;
+			Map<String, Object> secondaries = (Map<String, Object>) run.get("secondaryMetrics");
+			if (secondaries != null && secondaries.get(ALLOCATION_METRIC) != null) {
+				benchmark.allocation = toDouble(((Map<String, Object>) secondaries.get(ALLOCATION_METRIC)).get("score"));
+			}
+			benchmarks.put(key.toString(), benchmark);
+		}
+		return benchmarks;
+	}
+
+	/**
+	 * @param value
+	 *            a JSON value
+	 * @return the number, or NaN if the value is not a number, as the
+	 *         <code>"NaN"</code> JMH writes for the scores it couldn't measure
+	 */
+	private static double toDouble(Object value) {
+		return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+	}
+
+	private static double getGrowth(double base, double current) {
+		if (Double.isNaN(base) || Double.isNaN(current)) {
+			return Double.NaN;
+		}
+		if (base == 0) {
+			return current == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+		return (current - base) / base;
+	}
+
+	private static String format(double ratio) {
+		return String.format("%.1f %%", ratio * 100);
+	}
+
+	private static String formatGrowth(double growth) {
+		if (Double.isNaN(growth)) {
+			return "-";
+		}
+		return String.format("%+.1f%%", growth * 100);
+	}
+
+	private static String format(double score, String unit) {
+		return String.format("%.3f", score) + " " + unit.replace("/op", "");
+	}
+
+	private static String formatAllocation(double allocation) {
+		return Double.isNaN(allocation) ? "-" : String.format("%.1f", allocation);
+	}
+
+	/**
+	 * The scores of a benchmark run.
+	 */
+	public static class Benchmark {
+
+		/**
+		 * Time per operation.
+		 */
+		private double score;
+
+		/**
+		 * Half the width of the confidence interval of the time, NaN if not
+		 * measured.
+		 */
+		private double scoreError;
+
+		private String unit;
+
+		/**
+		 * Bytes allocated per operation, NaN if not measured.
+		 */
+		private double allocation;
+
+		double getLowerBound() {
+			return Double.isNaN(scoreError) ? score : score - scoreError;
+		}
+
+		double getUpperBound() {
+			return Double.isNaN(scoreError) ? score : score + scoreError;
+		}
+	}
+
+	/**
+	 * Read JSON text as maps, lists, strings, numbers, booleans and nulls.
+	 */
+	private static class JsonReader {
+
+		private final String text;
+
+		private int index;
+
+		JsonReader(String text) {
+			this.text = text;
+		}
+
+		Object read() {
+			Object value = readValue();
+			skipWhitespace();
+			if (index < text.length()) {
+				throw error("end of text");
+			}
+			return value;
+		}
+
+		private Object readValue() {
+			skipWhitespace();
+			if (index >= text.length()) {
+				throw error("a value");
+			}
+			char c = text.charAt(index);
+			switch (c) {
+			case '{':
+				return readObject();
+			case '[':
+				return readArray();
+			case '"':
+				return readString();
+			case 't':
+				return readLiteral("true", Boolean.TRUE);
+			case 'f':
+				return readLiteral("false", Boolean.FALSE);
+			case 'n':
+				return readLiteral("null", null);
+			default:
+				return readNumber();
+			}
+		}
+
+		private Map<String, Object> readObject() {
+			Map<String, Object> object = new LinkedHashMap<String, Object>();
+			index++;
+			skipWhitespace();
+			if (peek('}')) {
+				return object;
+			}
+			do {
+				skipWhitespace();
+				String name = readString();
+				skipWhitespace();
+				expect(':');
+				object.put(name, readValue());
+				skipWhitespace();
+			} while (peek(','));
+			expect('}');
+			return object;
+		}
+
+		private List<Object> readArray() {
+			List<Object> array = new ArrayList<Object>();
+			index++;
+			skipWhitespace();
+			if (peek(']')) {
+				return array;
+			}
+			do {
+				array.add(readValue());
+				skipWhitespace();
+			} while (peek(','));
+			expect(']');
+			return array;
+		}
+
+		private String readString() {
+			expect('"');
+			StringBuffer sb = new StringBuffer();
+			while (index < text.length()) {
+				char c = text.charAt(index++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (index >= text.length()) {
+					break;
+				}
+				c = text.charAt(index++);
+				switch (c) {
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'u':
+					if (index + 4 > text.length()) {
+						throw error("a unicode escape");
+					}
+					sb.append((char) Integer.parseInt(text.substring(index, index + 4), 16));
+					index += 4;
+					break;
+				default:
+					sb.append(c);
+				}
+			}
+			throw error("end of string");
+		}
+
+		private Object readLiteral(String literal, Object value) {
+			if (!text.startsWith(literal, index)) {
+				throw error(literal);
+			}
+			index += literal.length();
+			return value;
+		}
+
+		private Object readNumber() {
+			int start = index;
+			while (index < text.length() && "+-0123456789.eE".indexOf(text.charAt(index)) >= 0) {
+				index++;
+			}
+			try {
+				return Double.valueOf(text.substring(start, index));
+			} catch (NumberFormatException e) {
+				throw error("a number");
+			}
+		}
+
+		private void skipWhitespace() {
+			while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+				index++;
+			}
+		}
+
+		private boolean peek(char c) {
+			if (index < text.length() && text.charAt(index) == c) {
+				index++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!peek(c)) {
+				throw error("'" + c + "'");
+			}
+		}
+
+		private IllegalArgumentException error(String expected) {
+			return new IllegalArgumentException("expected " + expected + " at offset " + index);
+		}
+	}
+}
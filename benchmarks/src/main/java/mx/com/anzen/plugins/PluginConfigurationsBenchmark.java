@@ -0,0 +1,69 @@
+package mx.com.anzen.plugins;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plugin options read from the compiler and javadoc configurations of a
+ * module, once the index of the project is built, and when it is built again
+ * for the lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PluginConfigurationsBenchmark {
+
+	private BenchmarkProjects projects;
+
+	private MavenProject project;
+
+	@Setup
+	public void setUp() throws IOException {
+		projects = new BenchmarkProjects();
+		project = projects.getProject("jar");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		projects.delete();
+	}
+
+	@Benchmark
+	public String compilerOption() throws IOException {
+		return AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "encoding", null);
+	}
+
+	@Benchmark
+	public Map[] javadocOptions() throws IOException {
+		return AntBuildWriterUtil.getMavenJavadocPluginOptions(project, "groups", null);
+	}
+
+	@Benchmark
+	public String compilerOptionCold() throws IOException {
+		ReactorPluginConfigurationCache.getInstance().clear();
+		return AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "encoding", null);
+	}
+
+	@Benchmark
+	public Map[] javadocOptionsCold() throws IOException {
+		ReactorPluginConfigurationCache.getInstance().clear();
+		return AntBuildWriterUtil.getMavenJavadocPluginOptions(project, "groups", null);
+	}
+}
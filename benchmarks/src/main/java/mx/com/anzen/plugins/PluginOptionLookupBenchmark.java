@@ -0,0 +1,114 @@
+package mx.com.anzen.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.xpath.XPathAPI;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * A javadoc option looked up in the configuration of the <code>jar</code>
+ * module with {@link Xpp3DomPath}, and as it was looked up before with Xalan:
+ * the {@link Xpp3Dom} tree serialized and parsed to a DOM document, then
+ * queried with {@link XPathAPI}. The first lookup of a JVM, class loading
+ * included, is measured in fresh forks; the next ones in a warm JVM, on a
+ * document parsed once as the index kept it. The Xalan lookups are only a
+ * comparison, the perf-gate profile doesn't run them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PluginOptionLookupBenchmark {
+
+	@Param({ "show", "links", "groups//group//title" })
+	private String option;
+
+	private Xpp3Dom configuration;
+
+	private Document document;
+
+	@Setup
+	public void setUp() throws Exception {
+		configuration = readJavadocConfiguration();
+		document = parse(configuration);
+	}
+
+	@Benchmark
+	public Xpp3Dom xpp3DomPath() {
+		return Xpp3DomPath.compile(option).selectFirst(configuration);
+	}
+
+	@Benchmark
+	public Node xalan() throws Exception {
+		return XPathAPI.eval(document, "//configuration/" + option).nodelist().item(0);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(5)
+	public Xpp3Dom xpp3DomPathFirstLookup() {
+		return Xpp3DomPath.compile(option).selectFirst(configuration);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 0)
+	@Measurement(iterations = 1)
+	@Fork(5)
+	public Node xalanFirstLookup() throws Exception {
+		return XPathAPI.eval(parse(configuration), "//configuration/" + option).nodelist().item(0);
+	}
+
+	private static Document parse(Xpp3Dom configuration) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(configuration.toString().getBytes("UTF-8")));
+	}
+
+	private static Xpp3Dom readJavadocConfiguration() throws IOException {
+		Model model;
+		InputStream in = PluginOptionLookupBenchmark.class.getResourceAsStream("benchmarks/jar.xml");
+		try {
+			model = new MavenXpp3Reader().read(new InputStreamReader(in, "UTF-8"));
+		} catch (Exception e) {
+			throw new IOException("Exception occured: " + e.getMessage());
+		} finally {
+			IOUtil.close(in);
+		}
+
+		for (Object obj : model.getBuild().getPlugins()) {
+			Plugin plugin = (Plugin) obj;
+			if ("maven-javadoc-plugin".equals(plugin.getArtifactId())) {
+				return (Xpp3Dom) plugin.getConfiguration();
+			}
+		}
+		throw new IOException("No javadoc configuration in jar.xml");
+	}
+}
@@ -0,0 +1,211 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.DefaultArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.plugin.testing.SilentLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Settings;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Run the <code>prosa</code> goal on each project of generated reactors of 10,
+ * 100 and 1000 modules, or of the sizes given as arguments, and report for
+ * each size the wall time, the peak heap and the allocation rate.
+ * <p>
+ * The mojos are looked up and configured through the plugin testing harness
+ * from the configuration of the root POM, as Maven does for each module. A
+ * reactor of 10 modules is run first to warm up, and not reported. The
+ * results are also written to <code>target/reactor-benchmark.csv</code>.
+ */
+public class ReactorBenchmark extends AbstractMojoTestCase {
+
+	private static final String[] DEFAULT_SIZES = { "10", "100", "1000" };
+
+	private static final OutputStream NULL_OUTPUT = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		String[] sizes = args.length > 0 ? args : DEFAULT_SIZES;
+
+		ReactorBenchmark benchmark = new ReactorBenchmark();
+		benchmark.setUp();
+		try {
+			benchmark.run(10);
+
+			List<Result> results = new ArrayList<Result>();
+			System.out.println(Result.getHeader());
+			for (String size : sizes) {
+				Result result = benchmark.run(Integer.parseInt(size));
+				System.out.println(result);
+				results.add(result);
+			}
+			writeResults(results, new File("target/reactor-benchmark.csv"));
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * Generate a reactor and run the goal on each of its projects.
+	 *
+	 * @param moduleCount
+	 *            the number of modules
+	 * @return the measures of the run
+	 * @throws Exception
+	 *             if any
+	 */
+	public Result run(int moduleCount) throws Exception {
+		File basedir = File.createTempFile("anzen-reactor", "");
+		basedir.delete();
+		try {
+			SyntheticReactor reactor = new SyntheticReactor();
+			reactor.setModuleCount(moduleCount);
+			List<MavenProject> projects = reactor.generate(basedir);
+
+			ArtifactRepository localRepository = new DefaultArtifactRepository("local", SyntheticReactor.getLocalRepository(basedir).toURI().toString(),
+					new DefaultRepositoryLayout());
+			Settings settings = new Settings();
+			settings.setOffline(true);
+			settings.setLocalRepository(localRepository.getBasedir());
+			MavenSession session = new MavenSession(getContainer(), settings, localRepository, null, null, Collections.singletonList("prosa"), basedir.getAbsolutePath(),
+					new Properties(), new Date());
+			PlexusConfiguration configuration = extractPluginConfiguration("anzen-maven-plugin", projects.get(0).getFile());
+
+			System.gc();
+			List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					pool.resetPeakUsage();
+					heapPools.add(pool);
+				}
+			}
+			// the static loggers of the plugin write to the standard output
+			PrintStream out = System.out;
+			System.setOut(new PrintStream(NULL_OUTPUT));
+			long allocated = getAllocatedBytes();
+			long start = System.nanoTime();
+
+			try {
+				for (MavenProject project : projects) {
+					ProsaMojo mojo = (ProsaMojo) lookupMojo("mx.com.anzen.plugins", "anzen-maven-plugin", "1.0-SNAPSHOT", "prosa", configuration);
+					mojo.setLog(new SilentLog());
+					mojo.project = project;
+					mojo.localRepository = localRepository;
+					mojo.remoteRepositories = new ArrayList<String>();
+					mojo.settings = settings;
+					mojo.session = session;
+					mojo.execute();
+				}
+			} finally {
+				System.setOut(out);
+			}
+
+			long nanos = System.nanoTime() - start;
+			allocated = getAllocatedBytes() - allocated;
+			long peakHeap = 0;
+			for (MemoryPoolMXBean pool : heapPools) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+			return new Result(moduleCount, nanos, peakHeap, allocated);
+		} finally {
+			FileUtils.deleteDirectory(basedir);
+		}
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread, which runs the mojos,
+	 *         or -1 if the JVM doesn't tell
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static void writeResults(List<Result> results, File file) throws IOException {
+		file.getParentFile().mkdirs();
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writer.println("modules,wallMillis,millisPerModule,peakHeapBytes,allocatedBytes,allocationBytesPerSecond");
+			for (Result result : results) {
+				writer.println(result.modules + "," + result.getWallMillis() + "," + result.getWallMillis() / result.modules + "," + result.peakHeap + "," + result.allocated + ","
+						+ result.getAllocationRate());
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * The measures of a run.
+	 */
+	public static class Result {
+
+		private final int modules;
+
+		private final long nanos;
+
+		private final long peakHeap;
+
+		private final long allocated;
+
+		Result(int modules, long nanos, long peakHeap, long allocated) {
+			this.modules = modules;
+			this.nanos = nanos;
+			this.peakHeap = peakHeap;
+			this.allocated = allocated;
+		}
+
+		double getWallMillis() {
+			return nanos / 1000000.0;
+		}
+
+		/**
+		 * @return the bytes allocated by second of wall time
+		 */
+		double getAllocationRate() {
+			return allocated * 1000000000.0 / nanos;
+		}
+
+		static String getHeader() {
+			return String.format("%8s %12s %12s %14s %14s %14s", "Modules", "Wall (ms)", "ms/module", "Peak heap (MB)", "Alloc (MB)", "Alloc (MB/s)");
+		}
+
+		@Override
+		public String toString() {
+			double mb = 1024 * 1024;
+			return String.format("%8d %12.1f %12.2f %14.1f %14.1f %14.1f", modules, getWallMillis(), getWallMillis() / modules, peakHeap / mb, allocated / mb,
+					getAllocationRate() / mb);
+		}
+	}
+}
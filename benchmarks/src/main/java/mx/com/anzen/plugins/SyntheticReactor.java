@@ -0,0 +1,592 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Resource;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Generate a multi-module Maven project: the POMs, sources, resources, files
+ * mappings and dependency jars on disk, and the projects as Maven would give
+ * them to the mojos, root first.
+ * <p>
+ * The modules are children of the root. Each module depends on the jar
+ * modules just before it and on libraries of a shared pool, a quarter of
+ * them in test scope. The project builds with Maven: the sources compile,
+ * the tests pass, and the libraries are in a local repository with their
+ * POMs, to build with the user's repository chained after it with
+ * <code>-Dmaven.repo.local.tail</code>. The POMs also declare JUnit, which
+ * is left out of the projects given to the mojos since it's not in the
+ * generated repository.
+ */
+public class SyntheticReactor {
+
+	/**
+	 * Group of the generated projects.
+	 */
+	public static final String GROUP_ID = "mx.com.anzen.synthetic";
+
+	/**
+	 * Name of the Ant project directory, in the root directory.
+	 */
+	public static final String ROOT_DIRECTORY = "prosa";
+
+	private static final String VERSION = "1.0";
+
+	private static final String PACKAGE = "mx.com.anzen.synthetic";
+
+	private static final String[] PACKAGINGS = { "jar", "war", "ear", "pom" };
+
+	private int moduleCount = 10;
+
+	private int[] packagingMix = { 6, 2, 1, 1 };
+
+	private int dependencyFanOut = 5;
+
+	private int libraryCount = 50;
+
+	private int resourceRoots = 2;
+
+	private int testRoots = 1;
+
+	private int filesMappingCount = 2;
+
+	private int filesMappingDepth = 2;
+
+	private int filesPerDirectory = 5;
+
+	private int configurationSize = 10;
+
+	/**
+	 * @param moduleCount
+	 *            the number of modules of the root, 10 by default
+	 */
+	public void setModuleCount(int moduleCount) {
+		this.moduleCount = moduleCount;
+	}
+
+	/**
+	 * The packaging of the modules, given as how many modules of each
+	 * packaging there are in turn, 6 jar, 2 war, 1 ear and 1 pom by default.
+	 *
+	 * @param jar
+	 * @param war
+	 * @param ear
+	 * @param pom
+	 */
+	public void setPackagingMix(int jar, int war, int ear, int pom) {
+		this.packagingMix = new int[] { jar, war, ear, pom };
+	}
+
+	/**
+	 * @param dependencyFanOut
+	 *            the number of jar modules, and of libraries, each module
+	 *            depends on, 5 by default
+	 */
+	public void setDependencyFanOut(int dependencyFanOut) {
+		this.dependencyFanOut = dependencyFanOut;
+	}
+
+	/**
+	 * @param libraryCount
+	 *            the number of libraries the modules depend on, 50 by
+	 *            default
+	 */
+	public void setLibraryCount(int libraryCount) {
+		this.libraryCount = libraryCount;
+	}
+
+	/**
+	 * @param resourceRoots
+	 *            the number of resource directories of each module, 2 by
+	 *            default
+	 */
+	public void setResourceRoots(int resourceRoots) {
+		this.resourceRoots = resourceRoots;
+	}
+
+	/**
+	 * @param testRoots
+	 *            the number of test source and test resource directories of
+	 *            each module, 1 by default
+	 */
+	public void setTestRoots(int testRoots) {
+		this.testRoots = testRoots;
+	}
+
+	/**
+	 * The files mappings of the root, each one a tree of directories.
+	 *
+	 * @param count
+	 *            the number of mappings, 2 by default
+	 * @param depth
+	 *            the depth of each tree, 2 by default
+	 * @param filesPerDirectory
+	 *            the number of files and subdirectories of each directory, 5
+	 *            by default
+	 */
+	public void setFilesMappings(int count, int depth, int filesPerDirectory) {
+		this.filesMappingCount = count;
+		this.filesMappingDepth = depth;
+		this.filesPerDirectory = filesPerDirectory;
+	}
+
+	/**
+	 * @param configurationSize
+	 *            the number of links, groups and tags of the javadoc
+	 *            configurations, and of excludes of the compiler
+	 *            configurations, 10 by default
+	 */
+	public void setConfigurationSize(int configurationSize) {
+		this.configurationSize = configurationSize;
+	}
+
+	/**
+	 * Write the projects to the given directory.
+	 *
+	 * @param basedir
+	 *            the root directory, not null
+	 * @return the root project then its modules, not null
+	 * @throws IOException
+	 *             if any
+	 */
+	public List<MavenProject> generate(File basedir) throws IOException {
+		File localRepository = getLocalRepository(basedir);
+		List<Artifact> libraries = new ArrayList<Artifact>();
+		for (int i = 0; i < libraryCount; i++) {
+			String artifactId = "lib" + i;
+			Artifact library = createArtifact("org.example." + artifactId, artifactId, "1." + i);
+			library.setFile(new File(localRepository, "org/example/" + artifactId + "/" + artifactId + "/1." + i + "/" + artifactId + "-1." + i + ".jar"));
+			writeJar(library.getFile(), 4096 + i * 64);
+			writeLibraryModel(library);
+			libraries.add(library);
+		}
+
+		Model rootModel = createModel("root", "pom");
+		List<String> packagings = getPackagings();
+		for (int i = 0; i < moduleCount; i++) {
+			rootModel.addModule(getModuleName(i));
+		}
+		rootModel.getBuild().addPlugin(createProsaPlugin());
+		writeModel(rootModel, basedir);
+		for (int i = 0; i < filesMappingCount; i++) {
+			writeTree(new File(basedir, "mappings/tree" + i), filesMappingDepth);
+		}
+		// the javadoc links, on disk so javadoc runs offline
+		for (int i = 0; i < configurationSize; i++) {
+			writeFile(new File(getApidocs(basedir, i), "package-list"), "org.example.lib" + i + "\n", 0);
+			writeFile(new File(getApidocs(basedir, i), "element-list"), "org.example.lib" + i + "\n", 0);
+		}
+
+		List<MavenProject> projects = new ArrayList<MavenProject>();
+		MavenProject root = BenchmarkProjects.createProject(rootModel, basedir, null);
+		projects.add(root);
+
+		List<MavenProject> jarModules = new ArrayList<MavenProject>();
+		for (int i = 0; i < moduleCount; i++) {
+			String packaging = packagings.get(i % packagings.size());
+			File moduleDir = new File(basedir, getModuleName(i));
+
+			Model model = createModel(getModuleName(i), packaging);
+			Parent parent = new Parent();
+			parent.setGroupId(GROUP_ID);
+			parent.setArtifactId("root");
+			parent.setVersion(VERSION);
+			model.setParent(parent);
+
+			Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+			for (int j = 0; j < dependencyFanOut && j < jarModules.size(); j++) {
+				MavenProject dependency = jarModules.get(jarModules.size() - 1 - j);
+				Artifact artifact = createArtifact(GROUP_ID, dependency.getArtifactId(), VERSION);
+				artifact.setFile(new File(dependency.getBuild().getDirectory(), dependency.getBuild().getFinalName() + ".jar"));
+				artifacts.add(artifact);
+			}
+			for (int j = 0; j < dependencyFanOut && j < libraries.size(); j++) {
+				artifacts.add(libraries.get((i * 7 + j * 13) % libraries.size()));
+			}
+			artifacts = getArtifacts(artifacts);
+			for (Artifact artifact : artifacts) {
+				model.addDependency(createDependency(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getScope()));
+			}
+
+			if (!"pom".equals(packaging)) {
+				model.addDependency(createDependency("junit", "junit", "3.8.2", Artifact.SCOPE_TEST));
+				addPlugins(model.getBuild(), packaging, basedir);
+			}
+			writeModel(model, moduleDir);
+
+			MavenProject module = BenchmarkProjects.createProject(model, moduleDir, root);
+			module.setArtifacts(artifacts);
+			if (!"pom".equals(packaging)) {
+				writeSources(module, moduleDir, getCompileDependencies(artifacts));
+			}
+			if ("jar".equals(packaging)) {
+				writeJar(new File(module.getBuild().getDirectory(), module.getBuild().getFinalName() + ".jar"), 8192);
+				jarModules.add(module);
+			} else if ("war".equals(packaging)) {
+				writeFile(new File(moduleDir, "src/main/webapp/WEB-INF/web.xml"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+						+ "<web-app xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.5\">\n" + "  <display-name>" + model.getArtifactId() + "</display-name>\n"
+						+ "</web-app>\n", 256);
+			} else if ("ear".equals(packaging)) {
+				writeFile(new File(moduleDir, "src/main/application/META-INF/application.xml"), "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+						+ "<application xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"5\">\n" + "  <display-name>" + model.getArtifactId() + "</display-name>\n"
+						+ "</application>\n", 256);
+			}
+			projects.add(module);
+		}
+		return projects;
+	}
+
+	/**
+	 * @param basedir
+	 *            the root directory, not null
+	 * @return the local repository of the libraries
+	 */
+	public static File getLocalRepository(File basedir) {
+		return new File(basedir, "repository");
+	}
+
+	/**
+	 * @return the artifact ids of the modules among the artifacts, in compile
+	 *         scope
+	 */
+	private static List<String> getCompileDependencies(Set<Artifact> artifacts) {
+		List<String> dependencies = new ArrayList<String>();
+		for (Artifact artifact : artifacts) {
+			if (GROUP_ID.equals(artifact.getGroupId()) && Artifact.SCOPE_COMPILE.equals(artifact.getScope())) {
+				dependencies.add(artifact.getArtifactId());
+			}
+		}
+		return dependencies;
+	}
+
+	private static File getApidocs(File basedir, int library) {
+		return new File(basedir, "apidocs/library" + library);
+	}
+
+	private List<String> getPackagings() {
+		List<String> packagings = new ArrayList<String>();
+		for (int i = 0; i < PACKAGINGS.length; i++) {
+			for (int j = 0; j < packagingMix[i]; j++) {
+				packagings.add(PACKAGINGS[i]);
+			}
+		}
+		return packagings;
+	}
+
+	private static String getModuleName(int index) {
+		return "module" + String.format("%04d", index);
+	}
+
+	private static Model createModel(String artifactId, String packaging) {
+		Model model = new Model();
+		model.setModelVersion("4.0.0");
+		model.setGroupId(GROUP_ID);
+		model.setArtifactId(artifactId);
+		model.setVersion(VERSION);
+		model.setPackaging(packaging);
+		model.setName("Synthetic " + artifactId);
+		model.setBuild(new Build());
+		return model;
+	}
+
+	private static Artifact createArtifact(String groupId, String artifactId, String version) {
+		return new DefaultArtifact(groupId, artifactId, VersionRange.createFromVersion(version), Artifact.SCOPE_COMPILE, "jar", null, BenchmarkProjects.JAR_HANDLER);
+	}
+
+	private static Artifact createArtifact(Artifact artifact, String scope) {
+		Artifact copy = new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersionRange(), scope, "jar", null, BenchmarkProjects.JAR_HANDLER);
+		copy.setFile(artifact.getFile());
+		return copy;
+	}
+
+	/**
+	 * @return the artifacts, a quarter of them in test scope
+	 */
+	private static Set<Artifact> getArtifacts(Set<Artifact> artifacts) {
+		Set<Artifact> scoped = new LinkedHashSet<Artifact>();
+		int index = 0;
+		for (Artifact artifact : artifacts) {
+			scoped.add(index++ % 4 == 3 ? createArtifact(artifact, Artifact.SCOPE_TEST) : artifact);
+		}
+		return scoped;
+	}
+
+	private static Dependency createDependency(String groupId, String artifactId, String version, String scope) {
+		Dependency dependency = new Dependency();
+		dependency.setGroupId(groupId);
+		dependency.setArtifactId(artifactId);
+		dependency.setVersion(version);
+		dependency.setScope(scope);
+		return dependency;
+	}
+
+	private Plugin createProsaPlugin() {
+		Xpp3Dom configuration = new Xpp3Dom("configuration");
+		addChild(configuration, "rootDirectory", ROOT_DIRECTORY);
+		addChild(configuration, "libDirectory", "webapp/WEB-INF/lib");
+		addChild(configuration, "webappDirectory", "src/main/webapp");
+		addChild(configuration, "copyThreads", "4");
+		addChild(configuration, "incremental", "true");
+		Xpp3Dom filesMappings = addChild(configuration, "filesMappings", null);
+		for (int i = 0; i < filesMappingCount; i++) {
+			Xpp3Dom filesMapping = addChild(filesMappings, "filesMapping", null);
+			addChild(filesMapping, "sourceDirectory", "mappings/tree" + i);
+			addChild(filesMapping, "destinationDirectory", "cfg" + i);
+		}
+		return createPlugin("mx.com.anzen.plugins", "anzen-maven-plugin", configuration);
+	}
+
+	private void addPlugins(Build build, String packaging, File basedir) {
+		Xpp3Dom compiler = new Xpp3Dom("configuration");
+		addChild(compiler, "source", "1.7");
+		addChild(compiler, "target", "1.7");
+		addChild(compiler, "encoding", "UTF-8");
+		addChild(compiler, "debug", "true");
+		addChild(compiler, "showDeprecation", "true");
+		addChild(compiler, "fork", "true");
+		addChild(compiler, "maxmem", "512m");
+		addChild(addChild(compiler, "includes", null), "include", "**/*.java");
+		Xpp3Dom excludes = addChild(compiler, "excludes", null);
+		for (int i = 0; i < configurationSize; i++) {
+			addChild(excludes, "exclude", "**/generated" + i + "/**");
+		}
+		build.addPlugin(createPlugin("org.apache.maven.plugins", "maven-compiler-plugin", compiler));
+
+		Xpp3Dom javadoc = new Xpp3Dom("configuration");
+		addChild(javadoc, "show", "protected");
+		addChild(javadoc, "encoding", "UTF-8");
+		addChild(javadoc, "charset", "UTF-8");
+		addChild(javadoc, "windowtitle", "Synthetic API");
+		addChild(javadoc, "doctitle", "Synthetic API");
+		addChild(javadoc, "bottom", "Copyright Anzen. All Rights Reserved.");
+		addChild(javadoc, "author", "false");
+		addChild(javadoc, "linksource", "true");
+		Xpp3Dom links = addChild(javadoc, "links", null);
+		Xpp3Dom groups = addChild(javadoc, "groups", null);
+		Xpp3Dom tags = addChild(javadoc, "tags", null);
+		for (int i = 0; i < configurationSize; i++) {
+			addChild(links, "link", getApidocs(basedir, i).toURI().toString());
+			Xpp3Dom group = addChild(groups, "group", null);
+			addChild(group, "title", "Group " + i);
+			addChild(group, "packages", "mx.com.anzen.synthetic.group" + i + "*");
+			Xpp3Dom tag = addChild(tags, "tag", null);
+			addChild(tag, "name", "tag" + i);
+			addChild(tag, "placement", "a");
+			addChild(tag, "head", "Tag " + i + ":");
+		}
+		// not bound to the lifecycle, so without a default version
+		Plugin javadocPlugin = createPlugin("org.apache.maven.plugins", "maven-javadoc-plugin", javadoc);
+		javadocPlugin.setVersion("3.12.0");
+		build.addPlugin(javadocPlugin);
+
+		Xpp3Dom surefire = new Xpp3Dom("configuration");
+		addChild(addChild(surefire, "includes", null), "include", "**/*Test.java");
+		build.addPlugin(createPlugin("org.apache.maven.plugins", "maven-surefire-plugin", surefire));
+
+		Xpp3Dom archive = new Xpp3Dom("configuration");
+		addChild(addChild(archive, "archive", null), "compress", "true");
+		build.addPlugin(createPlugin("org.apache.maven.plugins", "maven-" + packaging + "-plugin", archive));
+	}
+
+	private static Plugin createPlugin(String groupId, String artifactId, Xpp3Dom configuration) {
+		Plugin plugin = new Plugin();
+		plugin.setGroupId(groupId);
+		plugin.setArtifactId(artifactId);
+		plugin.setConfiguration(configuration);
+		return plugin;
+	}
+
+	private static Xpp3Dom addChild(Xpp3Dom parent, String name, String value) {
+		Xpp3Dom child = new Xpp3Dom(name);
+		child.setValue(value);
+		parent.addChild(child);
+		return child;
+	}
+
+	private static void writeModel(Model model, File projectDir) throws IOException {
+		projectDir.mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(projectDir, "pom.xml")), "UTF-8");
+		try {
+			new MavenXpp3Writer().write(writer, model);
+		} finally {
+			IOUtil.close(writer);
+		}
+	}
+
+	private static void writeLibraryModel(Artifact library) throws IOException {
+		Model model = new Model();
+		model.setModelVersion("4.0.0");
+		model.setGroupId(library.getGroupId());
+		model.setArtifactId(library.getArtifactId());
+		model.setVersion(library.getVersion());
+		File file = new File(library.getFile().getParentFile(), library.getArtifactId() + "-" + library.getVersion() + ".pom");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			new MavenXpp3Writer().write(writer, model);
+		} finally {
+			IOUtil.close(writer);
+		}
+	}
+
+	/**
+	 * Write a class of the module calling the classes of the modules it
+	 * depends on in compile scope, and its test.
+	 */
+	private void writeSources(MavenProject module, File moduleDir, List<String> dependencies) throws IOException {
+		String packageName = PACKAGE + "." + module.getArtifactId();
+		String packagePath = packageName.replace('.', '/');
+		StringBuffer main = new StringBuffer();
+		main.append("package ").append(packageName).append(";\n\n");
+		main.append("public class Main {\n\n");
+		main.append("\tpublic static String getName() {\n");
+		main.append("\t\treturn \"").append(module.getArtifactId()).append("\";\n");
+		main.append("\t}\n\n");
+		main.append("\tpublic static int getDependencyCount() {\n");
+		main.append("\t\tint count = 0;\n");
+		for (String dependency : dependencies) {
+			main.append("\t\tcount += ").append(PACKAGE).append('.').append(dependency).append(".Main.getDependencyCount() + 1;\n");
+		}
+		main.append("\t\treturn count;\n");
+		main.append("\t}\n");
+		main.append("}\n");
+		writeFile(new File(moduleDir, "src/main/java/" + packagePath + "/Main.java"), main.toString(), 512);
+		writeFile(new File(moduleDir, "src/test/java/" + packagePath + "/MainTest.java"), getTest(packageName, "MainTest", module.getArtifactId()), 512);
+		writeFile(new File(moduleDir, "src/main/resources/application.properties"), 128);
+
+		for (int i = 1; i < resourceRoots; i++) {
+			File directory = new File(moduleDir, "src/main/resources" + i);
+			writeFile(new File(directory, "resource.properties"), 128);
+			module.getBuild().addResource(createResource(directory));
+		}
+		for (int i = 1; i < testRoots; i++) {
+			File sourceDir = new File(moduleDir, "src/test/java" + i);
+			writeFile(new File(sourceDir, packagePath + "/Main" + i + "Test.java"), getTest(packageName, "Main" + i + "Test", module.getArtifactId()), 512);
+			module.addTestCompileSourceRoot(sourceDir.getAbsolutePath());
+			File resourceDir = new File(moduleDir, "src/test/resources" + i);
+			writeFile(new File(resourceDir, "test.properties"), 128);
+			module.getBuild().addTestResource(createResource(resourceDir));
+		}
+	}
+
+	private static String getTest(String packageName, String className, String artifactId) {
+		StringBuffer test = new StringBuffer();
+		test.append("package ").append(packageName).append(";\n\n");
+		test.append("import junit.framework.TestCase;\n\n");
+		test.append("public class ").append(className).append(" extends TestCase {\n\n");
+		test.append("\tpublic void testGetName() {\n");
+		test.append("\t\tassertEquals(\"").append(artifactId).append("\", Main.getName());\n");
+		test.append("\t\tassertTrue(Main.getDependencyCount() >= 0);\n");
+		test.append("\t}\n");
+		test.append("}\n");
+		return test.toString();
+	}
+
+	private static Resource createResource(File directory) {
+		Resource resource = new Resource();
+		resource.setDirectory(directory.getAbsolutePath());
+		return resource;
+	}
+
+	private void writeTree(File directory, int depth) throws IOException {
+		for (int i = 0; i < filesPerDirectory; i++) {
+			writeFile(new File(directory, "file" + i + ".properties"), 256);
+			if (depth > 1) {
+				writeTree(new File(directory, "dir" + i), depth - 1);
+			}
+		}
+	}
+
+	private static void writeFile(File file, int size) throws IOException {
+		writeFile(file, "", size);
+	}
+
+	/**
+	 * Write a text file, padded to the given size with lines of letters, as a
+	 * comment if it's Java or XML.
+	 */
+	private static void writeFile(File file, String text, int size) throws IOException {
+		if (file.isFile()) {
+			return;
+		}
+		file.getParentFile().mkdirs();
+		String prefix = "";
+		String suffix = "";
+		if (file.getName().endsWith(".java")) {
+			prefix = "/*\n";
+			suffix = "\n*/\n";
+		} else if (file.getName().endsWith(".xml")) {
+			prefix = "<!--\n";
+			suffix = "\n-->\n";
+		}
+		byte[] content = text.getBytes("UTF-8");
+		int padding = Math.max(0, size - content.length - prefix.length() - suffix.length());
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+			if (padding > 0) {
+				out.write(prefix.getBytes("UTF-8"));
+				out.write(getPadding(padding));
+				out.write(suffix.getBytes("UTF-8"));
+			}
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	/**
+	 * Write a jar of the given size, a stored entry of letters.
+	 */
+	private static void writeJar(File file, int size) throws IOException {
+		if (file.isFile()) {
+			return;
+		}
+		file.getParentFile().mkdirs();
+		byte[] content = getPadding(size);
+		ZipEntry entry = new ZipEntry("data.txt");
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(content.length);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		entry.setCrc(crc.getValue());
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+		try {
+			out.putNextEntry(entry);
+			out.write(content);
+			out.closeEntry();
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	private static byte[] getPadding(int size) {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) (i % 64 == 63 ? '\n' : 'a' + i % 26);
+		}
+		return content;
+	}
+}
@@ -0,0 +1,53 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link AntBuildWriterUtil#toRelative(File, String)} for a path under the
+ * base directory, a path beside it and a path already relative.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToRelativeBenchmark {
+
+	@Param({ "child", "sibling", "relative" })
+	public String kind;
+
+	private File basedir;
+
+	private String path;
+
+	@Setup
+	public void setUp() {
+		basedir = new File(System.getProperty("java.io.tmpdir"), "reactor/modjar");
+		if ("child".equals(kind)) {
+			path = new File(basedir, "target/generated-sources/annotations").getAbsolutePath();
+		} else if ("sibling".equals(kind)) {
+			path = new File(basedir.getParentFile(), "modwar/src/main/webapp").getAbsolutePath();
+		} else {
+			path = "src/main/resources";
+		}
+	}
+
+	@Benchmark
+	public String toRelative() {
+		return AntBuildWriterUtil.toRelative(basedir, path);
+	}
+}
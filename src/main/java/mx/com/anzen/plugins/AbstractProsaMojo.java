@@ -1,17 +1,32 @@
 package mx.com.anzen.plugins;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Settings;
 
 public abstract class AbstractProsaMojo extends AbstractMojo{
 
+	/**
+	 * What is left to write at the end of each session not done yet, by
+	 * session key.
+	 */
+	private static final Map<String, SessionEnd> sessionEnds = new HashMap<String, SessionEnd>();
+
 	// ----------------------------------------------------------------------
 	// Mojo components
 	// ----------------------------------------------------------------------
@@ -70,7 +85,8 @@ public abstract class AbstractProsaMojo extends AbstractMojo{
 	public Settings settings;
 
 	/**
-	 * Whether or not to overwrite the <code>build.xml</code> file.
+	 * Whether or not to overwrite the <code>build.xml</code> file. Otherwise
+	 * the Ant files of a module are only written again when its inputs changed.
 	 *
 	 * @parameter property="overwrite" default-value="false"
 	 */
@@ -84,4 +100,372 @@ public abstract class AbstractProsaMojo extends AbstractMojo{
 	 */
 	public MavenSession session;
 
+	/**
+	 * A files mapping, meaning the origin file to target directory.
+	 *
+	 * @parameter
+	 */
+	protected List<FilesMapping> filesMappings;
+
+	/**
+	 * Directory name for the Ant project.
+	 *
+	 * @parameter
+	 */
+	protected String rootDirectory;
+	/**
+	 * Relative path for dependencies.
+	 *
+	 * @parameter default-value="webapp/WEB-INF/lib"
+	 */
+	protected String libDirectory;
+	/**
+	 * In web applications, set relative path to webapp directory.
+	 *
+	 * @parameter default-value="src/main/webapp"
+	 */
+	protected String webappDirectory;
+	/**
+	 * Number of files copied at the same time, for the files mappings and the
+	 * dependencies.
+	 *
+	 * @parameter property="copyThreads" default-value="4"
+	 */
+	protected int copyThreads;
+	/**
+	 * Whether the dependencies are stored once, by content, under
+	 * <code>.libstore</code> in the Ant project and linked from the lib
+	 * directories of the modules, instead of copied to each one.
+	 *
+	 * @parameter property="sharedLibraries" default-value="false"
+	 */
+	protected boolean sharedLibraries;
+	/**
+	 * Whether the files copied by a previous run, and not changed since, are
+	 * skipped. The files whose source is gone are removed. What was copied is
+	 * kept in <code>.prosa-manifest</code> in the Ant project.
+	 *
+	 * @parameter property="incremental" default-value="true"
+	 */
+	protected boolean incremental;
+	/**
+	 * Whether an incremental copy compares a source with a new last modified
+	 * time but the same size by content, before copying it again.
+	 *
+	 * @parameter property="incrementalHash" default-value="false"
+	 */
+	protected boolean incrementalHash;
+	/**
+	 * Whether, when offline, the artifacts already in the local repository
+	 * are found through an index of it instead of the resolver. The index is
+	 * kept in <code>.anzen-index</code> in the local repository, and only the
+	 * directories changed since the last run are listed again.
+	 *
+	 * @parameter property="localRepositoryIndex" default-value="false"
+	 */
+	protected boolean localRepositoryIndex;
+	/**
+	 * Whether the copies of the files mappings are only planned and logged,
+	 * with their sizes, and nothing is written.
+	 *
+	 * @parameter property="dryRun" default-value="false"
+	 */
+	protected boolean dryRun;
+
+	/**
+	 * The archive the Ant project is streamed to, null to write it to the
+	 * root directory.
+	 */
+	protected ProsaArchive prosaArchive;
+
+	/**
+	 * Makes the Ant project file structure. Only the root project makes it.
+	 *
+	 * @param module
+	 *            the project, not null
+	 * @throws MojoExecutionException
+	 *             if a file couldn't be added to the archive
+	 */
+	protected void makeFileStructure(MavenProject module) throws MojoExecutionException {
+		ProsaFileStructureBuilder directoryBuilder = new ProsaFileStructureBuilder(module, filesMappings, rootDirectory, libDirectory);
+		directoryBuilder.setCopyThreads(copyThreads);
+		directoryBuilder.setIncremental(incremental, incrementalHash);
+		directoryBuilder.setDryRun(dryRun);
+		directoryBuilder.setArchive(prosaArchive);
+
+		long start = System.nanoTime();
+		ProsaMetrics.Module metrics = ProsaMetrics.getInstance().getModule(module);
+		ProsaMetrics.setCurrent(metrics);
+		try {
+			directoryBuilder.makeFileStructure();
+		} catch (IOException e) {
+			if (prosaArchive != null) {
+				// the archive would miss the files
+				throw new MojoExecutionException("Error archiving the files of " + module.getArtifactId() + ": " + e.getMessage(), e);
+			}
+			getLog().error(e);
+		} finally {
+			ProsaMetrics.setCurrent(null);
+			metrics.addTime(start);
+		}
+	}
+
+	/**
+	 * @return the wrapper resolving the artifacts of the Ant scripts, with the
+	 *         local repository index when it is used
+	 */
+	protected ArtifactResolverWrapper getArtifactResolverWrapper() {
+		ArtifactResolverWrapper artifactResolverWrapper = ArtifactResolverWrapper.getInstance(resolver, factory, localRepository, remoteRepositories);
+		if (localRepositoryIndex && settings != null && settings.isOffline()) {
+			long start = System.currentTimeMillis();
+			try {
+				LocalRepositoryIndex index = LocalRepositoryIndex.getInstance(new File(localRepository.getBasedir()));
+				artifactResolverWrapper.setLocalRepositoryIndex(index);
+				if (getLog().isDebugEnabled()) {
+					getLog().debug("Local repository index: " + index.getDirectoryCount() + " directories, " + index.getListedCount() + " listed, " + index.getChangedCount() + " changed in "
+							+ (System.currentTimeMillis() - start) + " ms");
+				}
+			} catch (IOException e) {
+				getLog().warn("Local repository index not used: " + e.getMessage());
+			}
+		}
+		return artifactResolverWrapper;
+	}
+
+	/**
+	 * @return true if the current project is the last one of the reactor, or
+	 *         there is no reactor
+	 */
+	protected boolean isLastProject() {
+		if (session == null || session.getSortedProjects() == null || session.getSortedProjects().isEmpty()) {
+			return true;
+		}
+		List<?> projects = session.getSortedProjects();
+		return project.equals(projects.get(projects.size() - 1));
+	}
+
+	/**
+	 * Write the copy manifests changed by the goal, once all the projects are
+	 * copied.
+	 *
+	 * @throws MojoExecutionException
+	 *             if a manifest couldn't be written
+	 */
+	protected void saveManifests() throws MojoExecutionException {
+		try {
+			CopyManifest.saveAll();
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to write the copy manifest: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Write the metrics of the session in the root directory of the given
+	 * project.
+	 *
+	 * @param module
+	 *            not null
+	 */
+	protected void writeMetrics(MavenProject module) {
+		File root = new ProsaFileStructureBuilder(module, filesMappings, rootDirectory, libDirectory).getRootFile();
+		if (!root.isDirectory()) {
+			return;
+		}
+		try {
+			ProsaMetrics.getInstance().writeReport(new File(root, ProsaMetrics.DEFAULT_REPORT_FILENAME));
+		} catch (IOException e) {
+			getLog().warn("Metrics not written: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Save the copy manifests and write the metrics of the session once the
+	 * current project is done: right away if it is the last project of the
+	 * reactor, else when the JVM exits, unless the last project does it
+	 * before. So they are written even when the last project doesn't run the
+	 * goal, because the plugin isn't bound there or an earlier project failed.
+	 *
+	 * @throws MojoExecutionException
+	 *             if a manifest couldn't be written
+	 */
+	protected void endProject() throws MojoExecutionException {
+		SessionEnd end;
+		synchronized (sessionEnds) {
+			String key = SessionKey.of(session);
+			end = sessionEnds.get(key);
+			if (end == null) {
+				end = new SessionEnd(ProsaMetrics.getInstance());
+				sessionEnds.put(key, end);
+				Runtime.getRuntime().addShutdownHook(end.hook);
+			}
+			end.root = new ProsaFileStructureBuilder(project, filesMappings, rootDirectory, libDirectory).getRootFile();
+			if (!isLastProject()) {
+				return;
+			}
+			sessionEnds.remove(key);
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(end.hook);
+		} catch (IllegalStateException e) {
+			// already exiting
+		}
+		saveManifests();
+		writeMetrics(project);
+	}
+
+	/**
+	 * Resolve the artifacts the Ant scripts of the projects use besides their
+	 * dependencies, each one once, before any script is written.
+	 *
+	 * @param modules
+	 *            not null
+	 * @param artifactResolverWrapper
+	 *            not null
+	 * @throws MojoExecutionException
+	 *             if a plugin configuration couldn't be read
+	 */
+	protected void resolveExtraArtifacts(List<MavenProject> modules, ArtifactResolverWrapper artifactResolverWrapper) throws MojoExecutionException {
+		long start = System.currentTimeMillis();
+
+		Map<String, Map<String, String>> artifacts = new LinkedHashMap<String, Map<String, String>>();
+		for (MavenProject module : modules) {
+			try {
+				for (Map<String, String> artifact : AntBuildWriterUtil.getJavadocArtifacts(module)) {
+					artifacts.put(artifact.get("groupId") + ":" + artifact.get("artifactId") + ":" + artifact.get("version"), artifact);
+				}
+			} catch (IOException e) {
+				throw new MojoExecutionException("Error reading the javadoc configuration of " + module.getArtifactId() + ": " + e.getMessage(), e);
+			}
+		}
+		if (artifacts.isEmpty()) {
+			return;
+		}
+
+		ProsaMetrics.setCurrent(ProsaMetrics.getInstance().getReactor());
+		int failures;
+		try {
+			failures = artifactResolverWrapper.resolveAll(artifacts.values());
+		} finally {
+			ProsaMetrics.setCurrent(null);
+		}
+		if (getLog().isDebugEnabled()) {
+			getLog().debug("Resolved " + (artifacts.size() - failures) + " of " + artifacts.size() + " extra artifacts in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+
+	/**
+	 * Copies the dependencies of a project and writes its
+	 * <code>build.xml</code> and <code>build.properties</code>.
+	 *
+	 * @param module
+	 *            the project, not null
+	 * @param artifactResolverWrapper
+	 *            not null
+	 * @throws MojoExecutionException
+	 *             if the Ant script couldn't be written
+	 */
+	protected void writeModule(MavenProject module, ArtifactResolverWrapper artifactResolverWrapper) throws MojoExecutionException {
+		long start = System.nanoTime();
+		ProsaMetrics.Module metrics = ProsaMetrics.getInstance().getModule(module);
+		ProsaMetrics.setCurrent(metrics);
+		try {
+			writeModule(module, artifactResolverWrapper, metrics);
+		} finally {
+			ProsaMetrics.setCurrent(null);
+			metrics.addTime(start);
+		}
+	}
+
+	private void writeModule(MavenProject module, ArtifactResolverWrapper artifactResolverWrapper, ProsaMetrics.Module metrics) throws MojoExecutionException {
+		ProsaFileStructureBuilder directoryBuilder = new ProsaFileStructureBuilder(module, filesMappings, rootDirectory, libDirectory);
+
+		directoryBuilder.setCopyThreads(copyThreads);
+		directoryBuilder.setIncremental(incremental, incrementalHash);
+		directoryBuilder.setSharedLibraries(sharedLibraries);
+		directoryBuilder.setArchive(prosaArchive);
+
+		try {
+			directoryBuilder.copyDependencies();
+		} catch (IOException e) {
+			if (prosaArchive != null) {
+				// the archive would miss the dependencies
+				throw new MojoExecutionException("Error archiving the dependencies of " + module.getArtifactId() + ": " + e.getMessage(), e);
+			}
+			getLog().error(e);
+		}
+
+		Properties executionProperties = (session != null) ? session.getExecutionProperties() : null;
+
+		AntBuildWriter antBuildWriter = new AntBuildWriter(module, artifactResolverWrapper, settings, overwrite, executionProperties, rootDirectory, libDirectory);
+		antBuildWriter.setArchive(prosaArchive);
+
+		try {
+			if (prosaArchive != null) {
+				antBuildWriter.writeBuildXmls(filesMappings, webappDirectory);
+				antBuildWriter.writeBuildProperties();
+				getLog().info("Archived Ant project for " + module.getArtifactId());
+				return;
+			}
+
+			long start = System.nanoTime();
+			boolean upToDate = antBuildWriter.isUpToDate(filesMappings, webappDirectory);
+			ProsaMetrics.record(ProsaMetrics.Phase.FINGERPRINT, start, 1, 0);
+			ProsaMetrics.count(ProsaMetrics.Phase.FINGERPRINT, upToDate ? 1 : 0, upToDate ? 0 : 1);
+			metrics.setUpToDate(upToDate);
+			if (upToDate) {
+				getLog().info("Ant project for " + module.getArtifactId() + " is up to date");
+				return;
+			}
+
+			antBuildWriter.writeBuildXmls(filesMappings, webappDirectory);
+			antBuildWriter.writeBuildProperties();
+			antBuildWriter.writeFingerprint(filesMappings, webappDirectory);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Error building Ant script for " + module.getArtifactId() + ": " + e.getMessage(), e);
+		}
+
+		getLog().info("Wrote Ant project for " + module.getArtifactId() + " to " + module.getBasedir().getAbsolutePath());
+	}
+
+	/**
+	 * Saves the copy manifests and writes the metrics of a session when the
+	 * JVM exits.
+	 */
+	private static class SessionEnd implements Runnable {
+
+		private static Log log = new SystemStreamLog();
+
+		private final ProsaMetrics metrics;
+
+		private final Thread hook = new Thread(this, "prosa-session-end");
+
+		/**
+		 * The root directory of the last project done, the report is written
+		 * there.
+		 */
+		private volatile File root;
+
+		SessionEnd(ProsaMetrics metrics) {
+			this.metrics = metrics;
+			// the plugin realm is disposed when the hook runs, load the
+			// classes of the report now
+			metrics.toReport();
+		}
+
+		public void run() {
+			try {
+				CopyManifest.saveAll();
+			} catch (IOException e) {
+				log.warn("Copy manifests not written: " + e.getMessage());
+			}
+			if (root != null && root.isDirectory()) {
+				try {
+					metrics.writeReport(new File(root, ProsaMetrics.DEFAULT_REPORT_FILENAME));
+				} catch (IOException e) {
+					log.warn("Metrics not written: " + e.getMessage());
+				}
+			}
+		}
+	}
 }
@@ -1,20 +1,21 @@
 package mx.com.anzen.plugins;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Dependency;
@@ -83,6 +84,22 @@ public class AntBuildWriter {
 	protected static final String antBuildClasspathDir = "build.classpath.dir";
 	protected static final String antBaseDir = "base.dir";
 	protected static final String FS = File.separator;
+
+	/**
+	 * Mapping from "maven-compiler-plugin" options to the Ant javac task.
+	 */
+	private static final PluginOptionMapping[] JAVAC_OPTIONS = {
+			new PluginOptionMapping("encoding", "encoding", null, 3),
+			new PluginOptionMapping("showWarnings", "nowarn", "false", 3),
+			new PluginOptionMapping("debug", "debug", "true", 3),
+			new PluginOptionMapping("optimize", "optimize", "false", 3),
+			new PluginOptionMapping("showDeprecation", "deprecation", "true", 3),
+			new PluginOptionMapping("target", "target", "1.1", 3),
+			new PluginOptionMapping("verbose", "verbose", "false", 3),
+			new PluginOptionMapping("fork", "fork", "false", 3),
+			new PluginOptionMapping("meminitial", "memoryMaximumSize", null, 3),
+			new PluginOptionMapping("maxmem", "memoryInitialSize", null, 3),
+			new PluginOptionMapping("source", "source", "1.3", 3) };
 	/**
 	 * The pom.xml descriptor.
 	 */
@@ -115,6 +132,39 @@ public class AntBuildWriter {
 
 	private Properties executionProperties;
 
+	/**
+	 * Fingerprint of the inputs, once computed.
+	 */
+	private String fingerprint;
+
+	/**
+	 * The generated Ant project, once built.
+	 */
+	private AntNode antProject;
+
+	/**
+	 * System paths of the POM dependencies by management key, as declared,
+	 * once read.
+	 */
+	private Map<String, String> systemPaths;
+
+	/**
+	 * The execution properties the system paths use, by name, once computed.
+	 * They are written to <code>build.properties</code>.
+	 */
+	private Map<String, String> systemPathProperties;
+
+	/**
+	 * Property names by value, once indexed.
+	 */
+	private PropertyValueTrie propertyValues;
+
+	/**
+	 * The archive the Ant files are written to, null to write them to the
+	 * root directory.
+	 */
+	private ProsaArchive archive;
+
 	/**
 	 * @param project
 	 * @param artifactResolverWrapper
@@ -133,6 +183,15 @@ public class AntBuildWriter {
 		this.libDirectory = libDirectory;
 	}
 
+	/**
+	 * @param archive
+	 *            the archive the Ant files are written to, null to write them
+	 *            to the root directory
+	 */
+	public void setArchive(ProsaArchive archive) {
+		this.archive = archive;
+	}
+
 	/**
 	 * Generate Ant build XML files
 	 * 
@@ -156,11 +215,13 @@ public class AntBuildWriter {
 			return;
 		}
 
-		Properties properties = new Properties();
+		long start = System.nanoTime();
+		BuildPropertiesWriter properties = new BuildPropertiesWriter();
 
 		// ----------------------------------------------------------------------
 		// Build properties
 		// ----------------------------------------------------------------------
+		properties.setGroup("Build properties");
 
 		// build.finalName
 		addProperty(properties, antBuildFinalName, AntBuildWriterUtil.toRelative(project.getBasedir(), project.getBuild().getFinalName()));
@@ -181,6 +242,7 @@ public class AntBuildWriter {
 		addProperty(properties, antBuildOutputDir, "${" + antBaseDir + "}" + FS + AntBuildWriterUtil.toRelative(project.getBasedir(), project.getBuild().getOutputDirectory()));
 
 		// build.srcDir.
+		properties.setGroup("Source directories");
 		if (!project.getCompileSourceRoots().isEmpty()) {
 			String[] compileSourceRoots = (String[]) project.getCompileSourceRoots().toArray(new String[0]);
 			for (int i = 0; i < compileSourceRoots.length; i++) {
@@ -189,6 +251,7 @@ public class AntBuildWriter {
 		}
 
 		// build.resourceDir.
+		properties.setGroup("Resource directories");
 		if (project.getBuild().getResources() != null) {
 			Resource[] array = (Resource[]) project.getBuild().getResources().toArray(new Resource[0]);
 			for (int i = 0; i < array.length; i++) {
@@ -197,9 +260,11 @@ public class AntBuildWriter {
 		}
 
 		// ${build.dir}/test-classes
+		properties.setGroup("Build properties");
 		addProperty(properties, antBuildTestOutputDir, "${" + antBaseDir + "}" + FS + AntBuildWriterUtil.toRelative(project.getBasedir(), project.getBuild().getTestOutputDirectory()));
 
 		// src/test/java
+		properties.setGroup("Test source directories");
 		if (!project.getTestCompileSourceRoots().isEmpty()) {
 			String[] compileSourceRoots = (String[]) project.getTestCompileSourceRoots().toArray(new String[0]);
 			for (int i = 0; i < compileSourceRoots.length; i++) {
@@ -208,6 +273,7 @@ public class AntBuildWriter {
 		}
 
 		// build.testResourceDir.
+		properties.setGroup("Test resource directories");
 		if (project.getBuild().getTestResources() != null) {
 			Resource[] array = (Resource[]) project.getBuild().getTestResources().toArray(new Resource[0]);
 			for (int i = 0; i < array.length; i++) {
@@ -216,6 +282,7 @@ public class AntBuildWriter {
 		}
 
 		// test.reports
+		properties.setGroup("Build properties");
 		addProperty(properties, antTestReports, "${" + antParentDir + "}javadocs${" + antBuildModuleDir + "}" + FS + "test-reports");
 
 		// javadoc.dir
@@ -232,16 +299,23 @@ public class AntBuildWriter {
 		// build.classpath.dir
 		addProperty(properties, antBuildClasspathDir, "${" + antParentDir + "}" + libDirectory + "${" + antBuildModuleDir + "}");
 
+		// the system scope jars are used from where they are
+		properties.setGroup("System path properties");
+		for (Map.Entry<String, String> entry : getSystemPathProperties().entrySet()) {
+			addProperty(properties, entry.getKey(), entry.getValue());
+		}
+
 		// ----------------------------------------------------------------------
 		// Settings properties
 		// ----------------------------------------------------------------------
+		properties.setGroup("Settings properties");
 		addProperty(properties, antSettingsOffline, String.valueOf(settings.isOffline()));
 		addProperty(properties, antSettingsInteractiveMode, String.valueOf(settings.isInteractiveMode()));
 
 		// ----------------------------------------------------------------------
 		// Project properties
 		// ----------------------------------------------------------------------
-
+		properties.setGroup("Project properties");
 		if (project.getProperties() != null) {
 			Set<Entry<Object, Object>> set = project.getProperties().entrySet();
 			for (Entry<Object, Object> entry : set) {
@@ -249,12 +323,94 @@ public class AntBuildWriter {
 			}
 		}
 
-		FileOutputStream os = new FileOutputStream(getBulidFile(DEFAULT_MAVEN_PROPERTIES_FILENAME));
-		try {
-			properties.store(os, "Generated by Anzen Ant Plugin - DO NOT EDIT THIS FILE!");
-		} finally {
-			IOUtil.close(os);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		properties.store(new OutputStreamWriter(content, "ISO-8859-1"), "Generated by Anzen Ant Plugin - DO NOT EDIT THIS FILE!");
+
+		boolean written = write(getBulidFile(DEFAULT_MAVEN_PROPERTIES_FILENAME), content.toByteArray());
+		ProsaMetrics.record(ProsaMetrics.Phase.BUILD_PROPERTIES, start, 1, written ? content.size() : 0);
+		ProsaMetrics.count(ProsaMetrics.Phase.BUILD_PROPERTIES, written ? 0 : 1, written ? 1 : 0);
+	}
+
+	/**
+	 * Check if the Ant files of the project were generated from the same
+	 * inputs, so they don't have to be generated again. Never true when
+	 * <code>overwrite</code> is set.
+	 *
+	 * @param filesMappings
+	 * @param webappDirectory
+	 * @return true if the <code>build.xml</code> and
+	 *         <code>build.properties</code> are up to date
+	 * @throws IOException
+	 * @see ModuleFingerprint
+	 */
+	protected boolean isUpToDate(List<FilesMapping> filesMappings, String webappDirectory) throws IOException {
+		if (overwrite || !getBulidFile(DEFAULT_BUILD_FILENAME).isFile()) {
+			return false;
+		}
+		if (!AntBuildWriterUtil.isPomPackaging(project) && !getBulidFile(DEFAULT_MAVEN_PROPERTIES_FILENAME).isFile()) {
+			return false;
+		}
+
+		String fingerprint = ModuleFingerprint.read(getBulidFile(ModuleFingerprint.DEFAULT_FINGERPRINT_FILENAME));
+		return getFingerprint(filesMappings, webappDirectory).equals(fingerprint);
+	}
+
+	/**
+	 * Keep the fingerprint of the inputs of the Ant files, once they are
+	 * written.
+	 *
+	 * @param filesMappings
+	 * @param webappDirectory
+	 * @throws IOException
+	 */
+	protected void writeFingerprint(List<FilesMapping> filesMappings, String webappDirectory) throws IOException {
+		ModuleFingerprint.write(getBulidFile(ModuleFingerprint.DEFAULT_FINGERPRINT_FILENAME), getFingerprint(filesMappings, webappDirectory));
+	}
+
+	@SuppressWarnings("unchecked")
+	private String getFingerprint(List<FilesMapping> filesMappings, String webappDirectory) throws IOException {
+		if (fingerprint != null) {
+			return fingerprint;
+		}
+
+		ModuleFingerprint inputs = new ModuleFingerprint();
+		inputs.addModel("model", project.getModel());
+		inputs.addModel("originalModel", project.getOriginalModel());
+		inputs.add("basedir", project.getBasedir().getAbsolutePath());
+		inputs.add("file", project.getFile().getAbsolutePath());
+		if (project.hasParent()) {
+			inputs.add("parent.file", project.getParent().getFile().getAbsolutePath());
+			inputs.add("parent.finalName", project.getParent().getBuild().getFinalName());
+		}
+		inputs.add("compileSourceRoots", project.getCompileSourceRoots());
+		inputs.add("testCompileSourceRoots", project.getTestCompileSourceRoots());
+		boolean systemScope = false;
+		for (Artifact artifact : (Set<Artifact>) project.getArtifacts()) {
+			inputs.add("artifact", artifact.getId() + ":" + artifact.getScope() + ":" + artifact.getFile());
+			systemScope |= Artifact.SCOPE_SYSTEM.equals(artifact.getScope());
+		}
+		if (systemScope) {
+			// the system paths are written with these properties
+			for (Map.Entry<Object, Object> property : new TreeMap<Object, Object>(getExecutionProperties()).entrySet()) {
+				if (!"user.dir".equals(property.getKey())) {
+					inputs.add("executionProperty", property.getKey() + "=" + property.getValue());
+				}
+			}
+		}
+		if (filesMappings != null) {
+			for (FilesMapping fm : filesMappings) {
+				inputs.add("filesMapping", fm.getSourceDirectory() + ":" + fm.getDestinationDirectory() + ":" + fm.isRestorable() + ":" + fm.isConfigFile());
+			}
 		}
+		inputs.add("webappDirectory", webappDirectory);
+		inputs.add("rootDirectory", rootDirectory);
+		inputs.add("libDirectory", libDirectory);
+		inputs.add("localRepository", localRepository.getAbsolutePath());
+		inputs.add("settings.offline", String.valueOf(settings.isOffline()));
+		inputs.add("settings.interactiveMode", String.valueOf(settings.isInteractiveMode()));
+
+		fingerprint = inputs.getValue();
+		return fingerprint;
 	}
 
 	/**
@@ -264,19 +420,65 @@ public class AntBuildWriter {
 	 * @throws IOException
 	 */
 	private void writeGeneratedBuildXml() throws IOException {
+		long start = System.nanoTime();
 
 		String encoding = "UTF-8";
 		String doctype = getDoctype();
 		String lineIndenter = StringUtils.repeat(" ", DEFAULT_INDENTATION_SIZE);
 		File outputFile = getBulidFile(DEFAULT_BUILD_FILENAME);
 
-		OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(outputFile), encoding);
+		ByteArrayOutputStream content = new ByteArrayOutputStream(64 * 1024);
+		OutputStreamWriter osw = new OutputStreamWriter(content, encoding);
 
 		XMLWriter writer = new PrettyPrintXMLWriter(osw, lineIndenter, encoding, doctype);
 
-		writeAntTargets(writer);
+		getAntProject().write(writer);
 
 		IOUtil.close(osw);
+
+		boolean written = write(outputFile, content.toByteArray());
+		ProsaMetrics.record(ProsaMetrics.Phase.BUILD_XML, start, 1, written ? content.size() : 0);
+		ProsaMetrics.count(ProsaMetrics.Phase.BUILD_XML, written ? 0 : 1, written ? 1 : 0);
+	}
+
+	/**
+	 * Get the in-memory model of the generated <code>build.xml</code>, built
+	 * the first time only. Its targets are shared with the equal targets of
+	 * the other modules.
+	 *
+	 * @return the document of the Ant project, not null
+	 * @throws IOException
+	 *             if any
+	 * @see AntNode
+	 */
+	public AntNode getAntProject() throws IOException {
+		if (antProject == null) {
+			AntModelWriter writer = new AntModelWriter();
+			writeAntTargets(writer);
+			antProject = writer.getDocument();
+		}
+		return antProject;
+	}
+
+	/**
+	 * Write a file, to the archive when there is one.
+	 *
+	 * @return true if the file was written, false if it didn't change
+	 */
+	private boolean write(File file, byte[] content) throws IOException {
+		if (archive != null) {
+			archive.addFile(file, content);
+			return true;
+		}
+		return AntBuildWriterUtil.writeIfChanged(file, content);
+	}
+
+	private boolean isDirectory(File file) {
+		return archive != null ? archive.isDirectory(file) : file.isDirectory();
+	}
+
+	private boolean isFile(File file) {
+		return archive != null ? archive.isFile(file) : file.isFile();
 	}
 
 	private String getDoctype(){
@@ -297,7 +499,9 @@ public class AntBuildWriter {
 		} else {
 			f = new File(project.getBasedir(), rootDirectory);
 		}
-		f.mkdirs();
+		if (archive == null) {
+			f.mkdirs();
+		}
 		return new File(f, nameFile);
 	}
 
@@ -614,64 +818,157 @@ public class AntBuildWriter {
 		XmlWriterUtil.writeLineBreak(writer);
 	}
 
-	@SuppressWarnings("rawtypes")
+	@SuppressWarnings("unchecked")
 	private void writeBuildPathDefinition(XMLWriter writer, String id, List artifacts) {
 
 		writer.startElement("path");
 		writer.addAttribute("id", id);
+		// system scope jars are used where they are, their copy in the lib
+		// directory is only packaged
+		List<String> systemJars = new ArrayList<String>();
+		for (Artifact artifact : (List<Artifact>) artifacts) {
+			if (Artifact.SCOPE_SYSTEM.equals(artifact.getScope())) {
+				String systemPath = getSystemPath(artifact);
+				if (systemPath != null) {
+					writer.startElement("pathelement");
+					writer.addAttribute("location", systemPath);
+					writer.endElement(); // pathelement
+					systemJars.add(artifact.getFile().getName());
+				}
+			}
+		}
 		writer.startElement("fileset");
 		writer.addAttribute("dir", "${" + antBuildClasspathDir + "}");
 		writer.addAttribute("includes", "*.jar");
+		for (String systemJar : systemJars) {
+			writer.startElement("exclude");
+			writer.addAttribute("name", systemJar);
+			writer.endElement(); // exclude
+		}
 		writer.endElement();// fileset
 		writer.endElement();// path
 	}
 
-	@SuppressWarnings({ "unused", "rawtypes", "unchecked" })
-	private String getUninterpolatedSystemPath(Artifact artifact) {
-		String managementKey = artifact.getDependencyConflictId();
+	/**
+	 * Get the path of a system scope artifact as declared in the POM, or else
+	 * its file path starting with the property whose value is its longest
+	 * prefix: <code>base.dir</code> for the directory of the module, a project
+	 * property, or an execution property written to
+	 * <code>build.properties</code>.
+	 *
+	 * @param artifact
+	 *            not null
+	 * @return the path, null if the artifact has no file
+	 */
+	private String getSystemPath(Artifact artifact) {
+		String systemPath = getSystemPaths().get(artifact.getDependencyConflictId());
+		if (systemPath != null) {
+			return systemPath;
+		}
 
-		for (Iterator it = project.getOriginalModel().getDependencies().iterator(); it.hasNext();) {
-			Dependency dependency = (Dependency) it.next();
-			if (managementKey.equals(dependency.getManagementKey())) {
-				return dependency.getSystemPath();
-			}
+		if (artifact.getFile() == null) {
+			return null;
 		}
+		String path = artifact.getFile().getAbsolutePath();
+
+		PropertyValueTrie values = getPropertyValues();
+		String value = values.getLongestPrefix(path);
+		if (value == null) {
+			return path.replace('\\', '/');
+		}
+		return "${" + values.get(value) + "}" + path.substring(value.length()).replace('\\', '/');
+	}
 
-		for (Iterator itp = project.getOriginalModel().getProfiles().iterator(); itp.hasNext();) {
-			Profile profile = (Profile) itp.next();
-			for (Iterator it = profile.getDependencies().iterator(); it.hasNext();) {
-				Dependency dependency = (Dependency) it.next();
-				if (managementKey.equals(dependency.getManagementKey())) {
-					return dependency.getSystemPath();
+	/**
+	 * @return the system paths of the dependencies of the POM and its
+	 *         profiles, by management key, the module directory as
+	 *         <code>base.dir</code>
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, String> getSystemPaths() {
+		if (systemPaths == null) {
+			systemPaths = new HashMap<String, String>();
+			List<Dependency> dependencies = new ArrayList<Dependency>(project.getOriginalModel().getDependencies());
+			for (Profile profile : (List<Profile>) project.getOriginalModel().getProfiles()) {
+				dependencies.addAll(profile.getDependencies());
+			}
+			for (Dependency dependency : dependencies) {
+				// the first declaration wins
+				if (dependency.getSystemPath() != null && !systemPaths.containsKey(dependency.getManagementKey())) {
+					String systemPath = dependency.getSystemPath().replace('\\', '/');
+					// basedir is where the build.xml is in the Ant project
+					systemPath = StringUtils.replace(systemPath, "${project.basedir}", "${" + antBaseDir + "}");
+					systemPath = StringUtils.replace(systemPath, "${basedir}", "${" + antBaseDir + "}");
+					systemPaths.put(dependency.getManagementKey(), systemPath);
 				}
 			}
 		}
+		return systemPaths;
+	}
 
-		String path = artifact.getFile().getAbsolutePath();
-
-		Properties props = new Properties();
-		props.putAll(project.getProperties());
-		props.putAll(executionProperties);
-		props.remove("user.dir");
-		props.put("basedir", project.getBasedir().getAbsolutePath());
-
-		SortedMap candidateProperties = new TreeMap();
-		for (Iterator it = props.keySet().iterator(); it.hasNext();) {
-			String key = (String) it.next();
-			String value = new File(props.getProperty(key)).getPath();
-			if (path.startsWith(value) && value.length() > 0) {
-				candidateProperties.put(value, key);
+	/**
+	 * @return the execution properties the system paths use, by name, which
+	 *         Ant only knows from <code>build.properties</code>
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, String> getSystemPathProperties() {
+		if (systemPathProperties == null) {
+			systemPathProperties = new TreeMap<String, String>();
+			for (Artifact artifact : (Set<Artifact>) project.getArtifacts()) {
+				if (!Artifact.SCOPE_SYSTEM.equals(artifact.getScope())) {
+					continue;
+				}
+				String systemPath = getSystemPath(artifact);
+				if (systemPath == null) {
+					continue;
+				}
+				// the properties used, as ${name}
+				for (int start = systemPath.indexOf("${"); start >= 0; start = systemPath.indexOf("${", start + 2)) {
+					int end = systemPath.indexOf('}', start);
+					if (end < 0) {
+						break;
+					}
+					String name = systemPath.substring(start + 2, end);
+					String value = getExecutionProperties().getProperty(name);
+					if (value != null && !antBaseDir.equals(name) && (project.getProperties() == null || !project.getProperties().containsKey(name))) {
+						systemPathProperties.put(name, value);
+					}
+				}
 			}
 		}
-		if (!candidateProperties.isEmpty()) {
-			String value = candidateProperties.lastKey().toString();
-			String key = candidateProperties.get(value).toString();
-			path = path.substring(value.length());
-			path = path.replace('\\', '/');
-			return "${" + key + "}" + path;
+		return systemPathProperties;
+	}
+
+	/**
+	 * @return the project and execution properties by value, and the directory
+	 *         of the module as <code>base.dir</code>
+	 */
+	@SuppressWarnings("unchecked")
+	private PropertyValueTrie getPropertyValues() {
+		if (propertyValues == null) {
+			Properties props = new Properties();
+			props.putAll(getExecutionProperties());
+			if (project.getProperties() != null) {
+				props.putAll(project.getProperties());
+			}
+			props.remove("user.dir");
+			props.remove("basedir");
+
+			// sorted so the property kept for a value shared by several is
+			// always the same
+			propertyValues = new PropertyValueTrie();
+			for (String key : new TreeSet<String>((Set<String>) (Set<?>) props.keySet())) {
+				propertyValues.put(new File(props.getProperty(key)).getPath(), key);
+			}
+			// the module is base.dir in the Ant project, basedir is where its
+			// build.xml is
+			propertyValues.put(project.getBasedir().getAbsolutePath(), antBaseDir);
 		}
+		return propertyValues;
+	}
 
-		return path;
+	private Properties getExecutionProperties() {
+		return executionProperties != null ? executionProperties : new Properties();
 	}
 
 	/**
@@ -1020,7 +1317,7 @@ public class AntBuildWriter {
 			File origin = new File(project.getBasedir(), fm.getSourceDirectory());
 
 			writer.startElement("copy");
-			if (target.isDirectory() && origin.isDirectory()) {
+			if (isDirectory(target) && origin.isDirectory()) {
 				writer.addAttribute("todir",
 						"${" + antBuildDir + "}" + FS + "${" + antBuildFinalName + "}" + FS + fm.getSourceDirectory());
 				writer.startElement("fileset");
@@ -1030,12 +1327,12 @@ public class AntBuildWriter {
 				// writer.addAttribute("name", "**");
 				// writer.endElement();// include
 				writer.endElement();// fileset
-			} else if (target.isDirectory() && origin.isFile()) {
+			} else if (isDirectory(target) && origin.isFile()) {
 				writer.addAttribute("file", fm.getDestinationDirectory() + FS + origin.getName());
 				writer.addAttribute("toFile",
 						"${" + antBuildDir + "}" + FS + "${" + antBuildFinalName + "}" + FS + fm.getSourceDirectory());
 				writer.addAttribute("overwrite", "true");
-			} else if (target.isFile() && origin.isFile()) {
+			} else if (isFile(target) && origin.isFile()) {
 				writer.addAttribute("file", fm.getDestinationDirectory());
 				writer.addAttribute("toFile", "${" + antBuildDir + "}" + File.separator + "${" + antBuildFinalName
 						+ "}" + File.separator + fm.getSourceDirectory());
@@ -1235,28 +1532,8 @@ public class AntBuildWriter {
 			Map[] excludes = AntBuildWriterUtil.getMavenCompilerPluginOptions(project, "excludes", null);
 			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "excludes",
 					getCommaSeparatedList(excludes, "exclude"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "encoding",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "encoding", null), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "nowarn",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "showWarnings", "false"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "debug",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "debug", "true"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "optimize",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "optimize", "false"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "deprecation",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "showDeprecation", "true"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "target",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "target", "1.1"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "verbose",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "verbose", "false"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "fork",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "fork", "false"), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "memoryMaximumSize",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "meminitial", null), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "memoryInitialSize",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "maxmem", null), 3);
-			AntBuildWriterUtil.addWrapAttribute(writer, "javac", "source",
-					AntBuildWriterUtil.getMavenCompilerPluginBasicOption(project, "source", "1.3"), 3);
+			PluginOptionMapper.writeAttributes(writer, "javac", JAVAC_OPTIONS,
+					AntBuildWriterUtil.getMavenPluginMappedOptions(project, "maven-compiler-plugin", JAVAC_OPTIONS));
 
 			String[] compileSourceRootsArray = (String[]) compileSourceRoots.toArray(new String[0]);
 			for (int i = 0; i < compileSourceRootsArray.length; i++) {
@@ -1391,8 +1668,8 @@ public class AntBuildWriter {
 	 * @param value
 	 *            not null
 	 */
-	private static void addProperty(Properties properties, String name, String value) {
-		properties.put(name, StringUtils.isNotEmpty(value) ? value : "");
+	private static void addProperty(BuildPropertiesWriter properties, String name, String value) {
+		properties.setProperty(name, StringUtils.isNotEmpty(value) ? value : "");
 	}
 
 	/**
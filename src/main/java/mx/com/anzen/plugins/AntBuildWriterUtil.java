@@ -1,32 +1,109 @@
 package mx.com.anzen.plugins;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.apache.maven.model.Plugin;
-import org.apache.maven.model.ReportPlugin;
 import org.apache.maven.project.MavenProject;
-import org.apache.xpath.XPathAPI;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.PathTool;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.xml.XMLWriter;
 import org.codehaus.plexus.util.xml.XmlWriterUtil;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 
 public class AntBuildWriterUtil {
 
 	private static final String FS = File.separator;
 
+	/**
+	 * Mapping from "maven-javadoc-plugin" options to the Ant javadoc task.
+	 */
+	private static final PluginOptionMapping[] JAVADOC_OPTIONS = {
+			new PluginOptionMapping("sourcepath", null),
+			new PluginOptionMapping("destdir", "destdir", "${" + AntBuildWriter.antJavadocDir + "}", 3),
+			new PluginOptionMapping("extdirs", "extdirs", null, 3),
+			new PluginOptionMapping("overview", "overview", null, 3),
+			new PluginOptionMapping("show", "access", "protected", 3),
+			new PluginOptionMapping("old", "old", "false", 3),
+			new PluginOptionMapping("verbose", "verbose", "false", 3),
+			new PluginOptionMapping("locale", "locale", null, 3),
+			new PluginOptionMapping("encoding", "encoding", null, 3),
+			new PluginOptionMapping("version", "version", "true", 3),
+			new PluginOptionMapping("use", "use", "true", 3),
+			new PluginOptionMapping("author", "author", "true", 3),
+			new PluginOptionMapping("splitindex", "splitindex", "false", 3),
+			new PluginOptionMapping("windowtitle", "windowtitle", null, 3),
+			new PluginOptionMapping("nodeprecated", "nodeprecated", "false", 3),
+			new PluginOptionMapping("nodeprecatedlist", "nodeprecatedlist", "false", 3),
+			new PluginOptionMapping("notree", "notree", "false", 3),
+			new PluginOptionMapping("noindex", "noindex", "false", 3),
+			new PluginOptionMapping("nohelp", "nohelp", "false", 3),
+			new PluginOptionMapping("nonavbar", "nonavbar", "false", 3),
+			new PluginOptionMapping("serialwarn", "serialwarn", "false", 3),
+			new PluginOptionMapping("helpfile", "helpfile", null, 3),
+			new PluginOptionMapping("stylesheetfile", "stylesheetfile", null, 3),
+			new PluginOptionMapping("charset", "charset", "ISO-8859-1", 3),
+			new PluginOptionMapping("docencoding", "docencoding", null, 3),
+			new PluginOptionMapping("excludepackagenames", "excludepackagenames", null, 3),
+			new PluginOptionMapping("source", "source", null, 3),
+			new PluginOptionMapping("linksource", "linksource", "false", 3),
+			new PluginOptionMapping("breakiterator", "breakiterator", "false", 3),
+			new PluginOptionMapping("noqualifier", "noqualifier", null, 3),
+			// miscellaneous
+			new PluginOptionMapping("maxmemory", "maxmemory", null, 3),
+			new PluginOptionMapping("additionalparam", "additionalparam", null, 3),
+			// nested elements
+			new PluginOptionMapping("doctitle", null),
+			new PluginOptionMapping("header", null),
+			new PluginOptionMapping("footer", null),
+			new PluginOptionMapping("bottom", null),
+			new PluginOptionMapping("doclet", null),
+			new PluginOptionMapping("docletpath", null),
+			new PluginOptionMapping("taglet", null),
+			new PluginOptionMapping("tagletpath", null) };
+
+	/**
+	 * Mapping from "maven-jar-plugin" options to the Ant jar task.
+	 */
+	private static final PluginOptionMapping[] JAR_OPTIONS = {
+			new PluginOptionMapping("archive//compress", "compress", "true", 3),
+			new PluginOptionMapping("archive//index", "index", "false", 3),
+			new PluginOptionMapping("archive//manifestFile", "manifest", null, 3),
+			new PluginOptionMapping("archive//manifest", null),
+			new PluginOptionMapping("archive//manifest//mainClass", null) };
+
+	/**
+	 * Mapping from "maven-ear-plugin" options to the Ant ear task.
+	 */
+	private static final PluginOptionMapping[] EAR_OPTIONS = {
+			new PluginOptionMapping("archive//compress", "compress", "true", 3),
+			new PluginOptionMapping("includes", "includes ", null, 3),
+			new PluginOptionMapping("excludes", "excludes", null, 3),
+			// Generated appxml by default
+			new PluginOptionMapping("applicationXml", "appxml", "${" + AntBuildWriter.antBaseDir + "}" + FS + "src" + FS + "main" + FS + "application" + FS + "META-INF" + FS
+					+ "application.xml", 3),
+			new PluginOptionMapping("manifestFile", "manifest", null, 3) };
+
+	/**
+	 * Options of "maven-war-plugin" read for the Ant war task.
+	 */
+	private static final PluginOptionMapping[] WAR_OPTIONS = {
+			new PluginOptionMapping("webXml", null),
+			new PluginOptionMapping("archive//compress", "true"),
+			new PluginOptionMapping("failOnMissingWebXml", "true"),
+			new PluginOptionMapping("manifestFile", null) };
+
 	/**
 	 * @param compileSourceRoots
 	 * @return not null list
@@ -101,6 +178,41 @@ public class AntBuildWriterUtil {
 		writer.endElement(); // ant
 	}
 
+	/**
+	 * Return the artifacts {@link #writeJavadocTask(XMLWriter, MavenProject, ArtifactResolverWrapper)}
+	 * resolves for a project: the doclet and taglet artifacts used without a
+	 * path.
+	 * 
+	 * @param project
+	 *            not null
+	 * @return the <code>groupId</code>, <code>artifactId</code> and
+	 *         <code>version</code> of each artifact, not null
+	 * @throws IOException
+	 *             if any
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Map<String, String>> getJavadocArtifacts(MavenProject project) throws IOException {
+		List<Map<String, String>> artifacts = new ArrayList<Map<String, String>>();
+		if (isPomPackaging(project)) {
+			return artifacts;
+		}
+
+		Map<String, String> options = getMavenPluginMappedOptions(project, "maven-javadoc-plugin", JAVADOC_OPTIONS);
+		if (options.get("doclet") != null && StringUtils.isEmpty(options.get("docletpath"))) {
+			Map<String, String> docletArtifact = getMavenJavadocPluginOption(project, "docletArtifact", null);
+			if (docletArtifact != null) {
+				artifacts.add(docletArtifact);
+			}
+		}
+		if (options.get("taglet") != null && StringUtils.isEmpty(options.get("tagletpath"))) {
+			Map<String, String> tagletArtifact = getMavenJavadocPluginOption(project, "tagletArtifact", null);
+			if (tagletArtifact != null) {
+				artifacts.add(tagletArtifact);
+			}
+		}
+		return artifacts;
+	}
+
 	/**
 	 * Convenience method to write XML Ant javadoc task
 	 * 
@@ -123,8 +235,10 @@ public class AntBuildWriterUtil {
 			return;
 		}
 
+		Map<String, String> options = getMavenPluginMappedOptions(project, "maven-javadoc-plugin", JAVADOC_OPTIONS);
+
 		writer.startElement("javadoc");
-		String sourcepath = getMavenJavadocPluginBasicOption(project, "sourcepath", null);
+		String sourcepath = options.get("sourcepath");
 		if (sourcepath == null) {
 			StringBuffer sb = new StringBuffer();
 			String[] compileSourceRoots = (String[]) sources.toArray(new String[0]);
@@ -140,64 +254,17 @@ public class AntBuildWriterUtil {
 		} else {
 			writer.addAttribute("sourcepath", sourcepath);
 		}
-		addWrapAttribute(writer, "javadoc", "destdir", getMavenJavadocPluginBasicOption(project, "destdir", "${" + AntBuildWriter.antJavadocDir + "}"), 3);
-		addWrapAttribute(writer, "javadoc", "extdirs", getMavenJavadocPluginBasicOption(project, "extdirs", null), 3);
-
-		addWrapAttribute(writer, "javadoc", "overview", getMavenJavadocPluginBasicOption(project, "overview", null), 3);
-		addWrapAttribute(writer, "javadoc", "access", getMavenJavadocPluginBasicOption(project, "show", "protected"), 3);
-		addWrapAttribute(writer, "javadoc", "old", getMavenJavadocPluginBasicOption(project, "old", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "verbose", getMavenJavadocPluginBasicOption(project, "verbose", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "locale", getMavenJavadocPluginBasicOption(project, "locale", null), 3);
-		addWrapAttribute(writer, "javadoc", "encoding", getMavenJavadocPluginBasicOption(project, "encoding", null), 3);
-		addWrapAttribute(writer, "javadoc", "version", getMavenJavadocPluginBasicOption(project, "version", "true"), 3);
-		addWrapAttribute(writer, "javadoc", "use", getMavenJavadocPluginBasicOption(project, "use", "true"), 3);
-		addWrapAttribute(writer, "javadoc", "author", getMavenJavadocPluginBasicOption(project, "author", "true"), 3);
-		addWrapAttribute(writer, "javadoc", "splitindex", getMavenJavadocPluginBasicOption(project, "splitindex", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "windowtitle", getMavenJavadocPluginBasicOption(project, "windowtitle", null), 3);
-		addWrapAttribute(writer, "javadoc", "nodeprecated", getMavenJavadocPluginBasicOption(project, "nodeprecated", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "nodeprecatedlist", getMavenJavadocPluginBasicOption(project, "nodeprecatedlist", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "notree", getMavenJavadocPluginBasicOption(project, "notree", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "noindex", getMavenJavadocPluginBasicOption(project, "noindex", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "nohelp", getMavenJavadocPluginBasicOption(project, "nohelp", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "nonavbar", getMavenJavadocPluginBasicOption(project, "nonavbar", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "serialwarn", getMavenJavadocPluginBasicOption(project, "serialwarn", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "helpfile", getMavenJavadocPluginBasicOption(project, "helpfile", null), 3);
-		addWrapAttribute(writer, "javadoc", "stylesheetfile", getMavenJavadocPluginBasicOption(project, "stylesheetfile", null), 3);
-		addWrapAttribute(writer, "javadoc", "charset", getMavenJavadocPluginBasicOption(project, "charset", "ISO-8859-1"), 3);
-		addWrapAttribute(writer, "javadoc", "docencoding", getMavenJavadocPluginBasicOption(project, "docencoding", null), 3);
-		addWrapAttribute(writer, "javadoc", "excludepackagenames", getMavenJavadocPluginBasicOption(project, "excludepackagenames", null), 3);
-		addWrapAttribute(writer, "javadoc", "source", getMavenJavadocPluginBasicOption(project, "source", null), 3);
-		addWrapAttribute(writer, "javadoc", "linksource", getMavenJavadocPluginBasicOption(project, "linksource", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "breakiterator", getMavenJavadocPluginBasicOption(project, "breakiterator", "false"), 3);
-		addWrapAttribute(writer, "javadoc", "noqualifier", getMavenJavadocPluginBasicOption(project, "noqualifier", null), 3);
-		// miscellaneous
-		addWrapAttribute(writer, "javadoc", "maxmemory", getMavenJavadocPluginBasicOption(project, "maxmemory", null), 3);
-		addWrapAttribute(writer, "javadoc", "additionalparam", getMavenJavadocPluginBasicOption(project, "additionalparam", null), 3);
+		PluginOptionMapper.writeAttributes(writer, "javadoc", JAVADOC_OPTIONS, options);
 
 		// Nested arg
-		String doctitle = getMavenJavadocPluginBasicOption(project, "doctitle", null);
-		if (doctitle != null) {
-			writer.startElement("doctitle");
-			writer.writeText("<![CDATA[" + doctitle + "]]>");
-			writer.endElement(); // doctitle
-		}
-		String header = getMavenJavadocPluginBasicOption(project, "header", null);
-		if (header != null) {
-			writer.startElement("header");
-			writer.writeText("<![CDATA[" + header + "]]>");
-			writer.endElement(); // header
-		}
-		String footer = getMavenJavadocPluginBasicOption(project, "footer", null);
-		if (footer != null) {
-			writer.startElement("footer");
-			writer.writeText("<![CDATA[" + footer + "]]>");
-			writer.endElement(); // footer
-		}
-		String bottom = getMavenJavadocPluginBasicOption(project, "bottom", null);
-		if (bottom != null) {
-			writer.startElement("bottom");
-			writer.writeText("<![CDATA[" + bottom + "]]>");
-			writer.endElement(); // bottom
+		String[] nestedArgs = { "doctitle", "header", "footer", "bottom" };
+		for (String nestedArg : nestedArgs) {
+			String value = options.get(nestedArg);
+			if (value != null) {
+				writer.startElement(nestedArg);
+				writer.writeText("<![CDATA[" + value + "]]>");
+				writer.endElement(); // nestedArg
+			}
 		}
 
 		Map[] links = getMavenJavadocPluginOptions(project, "links", null);
@@ -231,9 +298,9 @@ public class AntBuildWriterUtil {
 		}
 
 		// TODO Handle docletArtifacts
-		String doclet = getMavenJavadocPluginBasicOption(project, "doclet", null);
+		String doclet = options.get("doclet");
 		if (doclet != null) {
-			String docletpath = getMavenJavadocPluginBasicOption(project, "docletpath", null);
+			String docletpath = options.get("docletpath");
 			if (StringUtils.isNotEmpty(docletpath)) {
 				writer.startElement("doclet");
 				writer.addAttribute("name", doclet);
@@ -252,9 +319,9 @@ public class AntBuildWriterUtil {
 		}
 
 		// TODO Handle taglets
-		String taglet = getMavenJavadocPluginBasicOption(project, "taglet", null);
+		String taglet = options.get("taglet");
 		if (taglet != null) {
-			String tagletpath = getMavenJavadocPluginBasicOption(project, "tagletpath", null);
+			String tagletpath = options.get("tagletpath");
 			if (StringUtils.isNotEmpty(tagletpath)) {
 				writer.startElement("taglet");
 				writer.addAttribute("name", taglet);
@@ -302,20 +369,18 @@ public class AntBuildWriterUtil {
 
 		String jarfile = "${" + AntBuildWriter.antParentDir + "}dist" + FS + "${" + AntBuildWriter.antBuildFinalName + "}.jar";
 
+		Map<String, String> options = getMavenPluginMappedOptions(project, "maven-jar-plugin", JAR_OPTIONS);
+
 		writer.startElement("jar");
 		writer.addAttribute("jarfile", jarfile);
-		addWrapAttribute(writer, "jar", "compress", getMavenJarPluginBasicOption(project, "archive//compress", "true"), 3);
-		addWrapAttribute(writer, "jar", "index", getMavenJarPluginBasicOption(project, "archive//index", "false"), 3);
-		if (getMavenJarPluginBasicOption(project, "archive//manifestFile", null) != null) {
-			addWrapAttribute(writer, "jar", "manifest", getMavenJarPluginBasicOption(project, "archive//manifestFile", null), 3);
-		}
+		PluginOptionMapper.writeAttributes(writer, "jar", JAR_OPTIONS, options);
 		addWrapAttribute(writer, "jar", "basedir", "${" + AntBuildWriter.antBuildOutputDir + "}", 3);
 		addWrapAttribute(writer, "jar", "excludes", "**" + FS + "package.html", 3);
-		if (getMavenPluginOption(project, "maven-jar-plugin", "archive//manifest", null) != null) {
+		if (options.get("archive//manifest") != null) {
 			writer.startElement("manifest");
 			writer.startElement("attribute");
 			writer.addAttribute("name", "Main-Class");
-			addWrapAttribute(writer, "attribute", "value", getMavenJarPluginBasicOption(project, "archive//manifest//mainClass", null), 5);
+			addWrapAttribute(writer, "attribute", "value", options.get("archive//manifest//mainClass"), 5);
 			writer.endElement(); // attribute
 			writer.endElement(); // manifest
 		}
@@ -338,7 +403,6 @@ public class AntBuildWriterUtil {
 		String outputLibDir = outputDir + FS + "lib";
 		String destfile = modulesDir + FS + "${" + AntBuildWriter.antBuildFinalName + "}.ear";
 		String appDir = "${" + AntBuildWriter.antBaseDir + "}" + FS + "src" + FS + "main" + FS + "application";
-		String appxml = appDir + FS + "META-INF" + FS + "application.xml";
 
 		writer.startElement("mkdir");
 		writer.addAttribute("dir", outputDir);
@@ -364,18 +428,7 @@ public class AntBuildWriterUtil {
 		writer.startElement("ear");
 		writer.addAttribute("destfile", destfile);
 		addWrapAttribute(writer, "ear", "basedir", outputDir, 3);
-		addWrapAttribute(writer, "ear", "compress", getMavenEarPluginBasicOption(project, "archive//compress", "true"), 3);
-		addWrapAttribute(writer, "ear", "includes ", getMavenEarPluginBasicOption(project, "includes", null), 3);
-		addWrapAttribute(writer, "ear", "excludes", getMavenEarPluginBasicOption(project, "excludes", null), 3);
-		if (getMavenEarPluginBasicOption(project, "applicationXml", null) != null) {
-			addWrapAttribute(writer, "ear", "appxml", getMavenEarPluginBasicOption(project, "applicationXml", null), 3);
-		} else {
-			// Generated appxml
-			addWrapAttribute(writer, "ear", "appxml", appxml, 3);
-		}
-		if (getMavenEarPluginBasicOption(project, "manifestFile", null) != null) {
-			addWrapAttribute(writer, "ear", "manifest", getMavenEarPluginBasicOption(project, "manifestFile", null), 3);
-		}
+		PluginOptionMapper.writeAttributes(writer, "ear", EAR_OPTIONS, getMavenPluginMappedOptions(project, "maven-ear-plugin", EAR_OPTIONS));
 		writer.endElement(); // ear
 	}
 
@@ -389,8 +442,12 @@ public class AntBuildWriterUtil {
 	 */
 	public static void writeWarTask(XMLWriter writer, MavenProject project, ArtifactResolverWrapper artifactResolverWrapper, String webappDirectory) throws IOException {
 
-		String webXml = "${basedir}" + FS + "${" + AntBuildWriter.antBaseDir + "}" + FS + webappDirectory + FS + "WEB-INF" + FS + "web.xml";
-		webXml = getMavenWarPluginBasicOption(project, "webXml", webXml);
+		Map<String, String> options = getMavenPluginMappedOptions(project, "maven-war-plugin", WAR_OPTIONS);
+
+		String webXml = options.get("webXml");
+		if (webXml == null) {
+			webXml = "${basedir}" + FS + "${" + AntBuildWriter.antBaseDir + "}" + FS + webappDirectory + FS + "WEB-INF" + FS + "web.xml";
+		}
 		if (webXml.startsWith("${basedir}" + FS)) {
 			webXml = webXml.substring(("${basedir}".length() + 1));
 		}
@@ -398,18 +455,16 @@ public class AntBuildWriterUtil {
 		String destfile = "${" + AntBuildWriter.antParentDir + "}dist" + FS + "${" + AntBuildWriter.antBuildFinalName + "}.war";
 		writer.startElement("war");
 		writer.addAttribute("destfile", destfile);
-		addWrapAttribute(writer, "war", "compress", getMavenWarPluginBasicOption(project, "archive//compress", "true"), 3);
+		addWrapAttribute(writer, "war", "compress", options.get("archive//compress"), 3);
 
-		String needxmlfile = getMavenWarPluginBasicOption(project, "failOnMissingWebXml", "true");
+		String needxmlfile = options.get("failOnMissingWebXml");
 		addWrapAttribute(writer, "war", "needxmlfile", needxmlfile, 3);
 
 		if (needxmlfile.equals("true")) {
 			addWrapAttribute(writer, "war", "webxml", webXml, 3);
 		}
 
-		if (getMavenWarPluginBasicOption(project, "manifestFile", null) != null) {
-			addWrapAttribute(writer, "war", "manifest", getMavenWarPluginBasicOption(project, "manifestFile", null), 3);
-		}
+		addWrapAttribute(writer, "war", "manifest", options.get("manifestFile"), 3);
 
 		writer.startElement("lib");
 		writer.addAttribute("dir", "${" + AntBuildWriter.antBuildClasspathDir + "}");
@@ -734,6 +789,29 @@ public class AntBuildWriterUtil {
 		return getMavenPluginBasicOption(project, "maven-war-plugin", optionName, defaultValue);
 	}
 
+	/**
+	 * Return the values of an option mapping table for the plugin with the
+	 * given <code>artifactId</code>. The plugin configurations are walked once
+	 * for the whole table.
+	 * 
+	 * @param project
+	 *            not null
+	 * @param pluginArtifactId
+	 *            not null
+	 * @param mappings
+	 *            the option mapping table
+	 * @return the value of each option by Maven option, or its default value
+	 *         if not found
+	 * @throws IOException
+	 *             if any
+	 */
+	public static Map<String, String> getMavenPluginMappedOptions(MavenProject project, String pluginArtifactId, PluginOptionMapping[] mappings) throws IOException {
+		long start = System.nanoTime();
+		Map<String, String> options = PluginConfigurationIndex.getInstance(project).getMappedOptions(pluginArtifactId, mappings);
+		ProsaMetrics.record(ProsaMetrics.Phase.PLUGIN_CONFIGURATIONS, start, 1, 0);
+		return options;
+	}
+
 	// ----------------------------------------------------------------------
 	// Convenience methods
 	// ----------------------------------------------------------------------
@@ -770,7 +848,7 @@ public class AntBuildWriterUtil {
 	 * @param pluginArtifactId
 	 *            not null
 	 * @param optionName
-	 *            an <code>Xpath</code> expression from the plugin
+	 *            a {@link Xpp3DomPath} expression from the plugin
 	 *            <code>&lt;configuration/&gt;</code>
 	 * @param defaultValue
 	 *            could be null
@@ -814,7 +892,7 @@ public class AntBuildWriterUtil {
 	 * @param pluginArtifactId
 	 *            not null
 	 * @param optionName
-	 *            an <code>Xpath</code> expression from the plugin
+	 *            a {@link Xpp3DomPath} expression from the plugin
 	 *            <code>&lt;configuration/&gt;</code>
 	 * @param defaultValue
 	 *            could be null
@@ -865,7 +943,7 @@ public class AntBuildWriterUtil {
 	 * @param pluginArtifactId
 	 *            not null
 	 * @param optionName
-	 *            an <code>Xpath</code> expression from the plugin
+	 *            a {@link Xpp3DomPath} expression from the plugin
 	 *            <code>&lt;configuration/&gt;</code>
 	 * @param defaultValue
 	 *            could be null
@@ -949,7 +1027,7 @@ public class AntBuildWriterUtil {
 	 * @param pluginArtifactId
 	 *            not null
 	 * @param optionName
-	 *            an <code>Xpath</code> expression from the plugin
+	 *            a {@link Xpp3DomPath} expression from the plugin
 	 *            <code>&lt;configuration/&gt;</code>
 	 * @param defaultValue
 	 *            could be null
@@ -958,139 +1036,115 @@ public class AntBuildWriterUtil {
 	 *             if any
 	 */
 	private static Map getMavenPluginConfigurationsImpl(MavenProject project, String pluginArtifactId, String optionName, String defaultValue) throws IOException {
-		List<Object> plugins = new ArrayList<Object>();
-
-		for (Object obj : project.getModel().getReporting().getPlugins()) {
-			plugins.add(obj);
+		long start = System.nanoTime();
+		PluginConfigurations plugin = PluginConfigurationIndex.getInstance(project).getPlugin(pluginArtifactId);
+
+		Map option = plugin.getOption(optionName);
+		ProsaMetrics.count(ProsaMetrics.Phase.PLUGIN_CONFIGURATIONS, option != null ? 1 : 0, option != null ? 0 : 1);
+		if (option == null) {
+			option = findMavenPluginOption(plugin.getConfigurations(), optionName);
+			plugin.putOption(optionName, option);
 		}
+		ProsaMetrics.record(ProsaMetrics.Phase.PLUGIN_CONFIGURATIONS, start, 1, 0);
 
-		for (Object obj : project.getModel().getBuild().getPlugins()) {
-			plugins.add(obj);
+		if (option != null && !PluginConfigurations.isNotFound(option)) {
+			return option;
 		}
 
-		if (project.getBuild().getPluginManagement() != null) {
-			for (Object obj : project.getBuild().getPluginManagement().getPlugins()) {
-				plugins.add(obj);
-			}
-		}
-
-		for (Object next : plugins) {
-
-			Object pluginConf = null;
+		Map properties = new HashMap();
+		properties.put(optionName, defaultValue);
 
-			if (next instanceof Plugin) {
-				Plugin plugin = (Plugin) next;
+		return properties;
+	}
 
-				// using out-of-box Maven plugins
-				if (!((plugin.getGroupId().equals("org.apache.maven.plugins")) && (plugin.getArtifactId().equals(pluginArtifactId)))) {
-					continue;
-				}
+	/**
+	 * Evaluate the option <code>optionName</code> in the given plugin
+	 * configurations. The first configuration defining the option wins.
+	 * 
+	 * @param configurations
+	 *            not null
+	 * @param optionName
+	 *            a {@link Xpp3DomPath} expression from the plugin
+	 *            <code>&lt;configuration/&gt;</code>
+	 * @return a map with the option found or null if not found
+	 * @throws IOException
+	 *             if any
+	 */
+	private static Map findMavenPluginOption(List<Xpp3Dom> configurations, String optionName) throws IOException {
+		Xpp3DomPath path;
+		try {
+			path = Xpp3DomPath.compile(optionName);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Exception occured: " + e.getMessage());
+		}
 
-				pluginConf = plugin.getConfiguration();
+		for (Xpp3Dom configuration : configurations) {
+			Xpp3Dom optionNode = path.selectFirst(configuration);
+			if (optionNode == null) {
+				continue;
 			}
 
-			if (next instanceof ReportPlugin) {
-				ReportPlugin reportPlugin = (ReportPlugin) next;
+			if (isList(optionNode)) {
+				/*
+				 * <optionNames> <optionName> <param1>value1</param1>
+				 * <param2>value2</param2> </optionName> </optionNames>
+				 */
+				Map options = new HashMap();
+
+				List optionNames = new ArrayList();
+				Xpp3Dom[] childs = optionNode.getChildren();
+				for (int i = 0; i < childs.length; i++) {
+					Xpp3Dom child = childs[i];
+					Map option = new HashMap();
+
+					if (isElementContent(child)) {
+						Map properties = new HashMap();
+						Xpp3Dom[] childs2 = child.getChildren();
+						for (int j = 0; j < childs2.length; j++) {
+							properties.put(childs2[j].getName(), getTextContent(childs2[j]));
+						}
+						option.put(child.getName(), properties);
+					} else {
+						option.put(child.getName(), getTextContent(child));
+					}
 
-				// using out-of-box Maven plugins
-				if (!((reportPlugin.getGroupId().equals("org.apache.maven.plugins")) && (reportPlugin.getArtifactId().equals(pluginArtifactId)))) {
-					continue;
+					optionNames.add(option);
 				}
 
-				pluginConf = reportPlugin.getConfiguration();
-			}
+				options.put(optionName, optionNames.toArray(new Map[0]));
 
-			if (pluginConf == null) {
-				continue;
+				return options;
 			}
 
-			try {
-				Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(pluginConf.toString().getBytes("UTF-8")));
-
-				NodeList nodeList = XPathAPI.eval(doc, "//configuration/" + optionName).nodelist();
-				if (nodeList.getLength() > 0) {
-					Node optionNode = nodeList.item(0);
-
-					if (isList(optionNode)) {
-						/*
-						 * <optionNames> <optionName> <param1>value1</param1>
-						 * <param2>value2</param2> </optionName> </optionNames>
-						 */
-						Map options = new HashMap();
-
-						List optionNames = new ArrayList();
-						NodeList childs = optionNode.getChildNodes();
-						for (int i = 0; i < childs.getLength(); i++) {
-							Node child = childs.item(i);
-							if (child.getNodeType() == Node.ELEMENT_NODE) {
-								Map option = new HashMap();
-
-								if (isElementContent(child)) {
-									Map properties = new HashMap();
-									NodeList childs2 = child.getChildNodes();
-									if (childs2.getLength() > 0) {
-										for (int j = 0; j < childs2.getLength(); j++) {
-											Node child2 = childs2.item(j);
-											if (child2.getNodeType() == Node.ELEMENT_NODE) {
-												properties.put(child2.getNodeName(), getTextContent(child2));
-											}
-										}
-										option.put(child.getNodeName(), properties);
-									}
-								} else {
-									option.put(child.getNodeName(), getTextContent(child));
-								}
-
-								optionNames.add(option);
-							}
-						}
-
-						options.put(optionName, optionNames.toArray(new Map[0]));
+			if (isElementContent(optionNode)) {
+				/*
+				 * <optionName> <param1>value1</param1>
+				 * <param2>value2</param2> </optionName>
+				 */
+				Map option = new HashMap();
+
+				Map parameters = new HashMap();
+				Xpp3Dom[] childs = optionNode.getChildren();
+				for (int i = 0; i < childs.length; i++) {
+					parameters.put(childs[i].getName(), getTextContent(childs[i]));
+				}
 
-						return options;
-					}
+				option.put(optionName, parameters);
 
-					if (isElementContent(optionNode)) {
-						/*
-						 * <optionName> <param1>value1</param1>
-						 * <param2>value2</param2> </optionName>
-						 */
-						Map option = new HashMap();
-
-						NodeList childs = optionNode.getChildNodes();
-						if (childs.getLength() > 1) {
-							Map parameters = new HashMap();
-
-							for (int i = 0; i < childs.getLength(); i++) {
-								Node child = childs.item(i);
-								if (child.getNodeType() == Node.ELEMENT_NODE) {
-									parameters.put(child.getNodeName(), getTextContent(child));
-								}
-							}
-
-							option.put(optionName, parameters);
-						}
-						return option;
-					} else {
-						/*
-						 * <optionName>value1</optionName>
-						 */
-						Map option = new HashMap();
+				return option;
+			} else {
+				/*
+				 * <optionName>value1</optionName>
+				 */
+				Map option = new HashMap();
 
-						option.put(optionName, getTextContent(optionNode));
+				option.put(optionName, getTextContent(optionNode));
 
-						return option;
-					}
-				}
-			} catch (Exception e) {
-				throw new IOException("Exception occured: " + e.getMessage());
+				return option;
 			}
 		}
 
-		Map properties = new HashMap();
-		properties.put(optionName, defaultValue);
-
-		return properties;
+		return null;
 	}
 
 	/**
@@ -1138,24 +1192,22 @@ public class AntBuildWriterUtil {
 	 *            a given node, may be <code>null</code>.
 	 * @return true if the node is a list, false otherwise.
 	 */
-	private static boolean isList(Node node) {
+	private static boolean isList(Xpp3Dom node) {
 		if (node == null) {
 			return false;
 		}
 
-		NodeList children = node.getChildNodes();
+		Xpp3Dom[] children = node.getChildren();
 
 		boolean isList = false;
 		String lastNodeName = null;
-		for (int i = 0; i < children.getLength(); i++) {
-			Node child = children.item(i);
-			if (child.getNodeType() == Node.ELEMENT_NODE) {
-				isList = isList || (child.getNodeName().equals(lastNodeName));
-				lastNodeName = child.getNodeName();
-			}
+		for (int i = 0; i < children.length; i++) {
+			Xpp3Dom child = children[i];
+			isList = isList || (child.getName().equals(lastNodeName));
+			lastNodeName = child.getName();
 		}
 		if (StringUtils.isNotEmpty(lastNodeName)) {
-			isList = isList || lastNodeName.equals(getSingularForm(node.getNodeName()));
+			isList = isList || lastNodeName.equals(getSingularForm(node.getName()));
 		}
 
 		return isList;
@@ -1170,18 +1222,11 @@ public class AntBuildWriterUtil {
 	 * @return <code>true</code> if any child node is an element,
 	 *         <code>false</code> otherwise.
 	 */
-	private static boolean isElementContent(Node node) {
+	private static boolean isElementContent(Xpp3Dom node) {
 		if (node == null) {
 			return false;
 		}
-		NodeList children = node.getChildNodes();
-		for (int i = 0; i < children.getLength(); i++) {
-			Node child = children.item(i);
-			if (child.getNodeType() == Node.ELEMENT_NODE) {
-				return true;
-			}
-		}
-		return false;
+		return node.getChildCount() > 0;
 	}
 
 	/**
@@ -1193,18 +1238,11 @@ public class AntBuildWriterUtil {
 	 * @return The text content of the node, can be empty but never
 	 *         <code>null</code>.
 	 */
-	private static String getTextContent(Node node) {
-		StringBuffer buffer = new StringBuffer();
-		if (node != null) {
-			NodeList children = node.getChildNodes();
-			for (int i = 0; i < children.getLength(); i++) {
-				Node child = children.item(i);
-				if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
-					buffer.append(child.getNodeValue());
-				}
-			}
+	private static String getTextContent(Xpp3Dom node) {
+		if (node == null || node.getValue() == null) {
+			return "";
 		}
-		return buffer.toString();
+		return node.getValue();
 	}
 
 	/**
@@ -1301,4 +1339,42 @@ public class AntBuildWriterUtil {
 		}
 		return result;
 	}
+
+	/**
+	 * Write a generated file only if its content changed, so its last modified
+	 * time is kept otherwise. The content is written to a temporary file
+	 * beside it and then renamed, so the file is never left half written.
+	 * 
+	 * @param file
+	 *            not null
+	 * @param content
+	 *            not null
+	 * @return true if the file was written, false if it was up to date
+	 * @throws IOException
+	 *             if any
+	 */
+	public static boolean writeIfChanged(File file, byte[] content) throws IOException {
+		if (file.isFile() && file.length() == content.length && Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+			return false;
+		}
+
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			OutputStream out = new FileOutputStream(temp);
+			try {
+				out.write(content);
+			} finally {
+				IOUtil.close(out);
+			}
+
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			temp.delete();
+		}
+		return true;
+	}
 }
@@ -0,0 +1,62 @@
+package mx.com.anzen.plugins;
+
+import java.util.LinkedList;
+
+import org.codehaus.plexus.util.xml.XMLWriter;
+
+/**
+ * {@link XMLWriter} filling an in-memory model of the written document instead
+ * of writing it.
+ *
+ * @see AntNode
+ */
+public class AntModelWriter implements XMLWriter {
+
+	private final AntNode document = new AntNode(AntNode.Kind.DOCUMENT, null);
+
+	/**
+	 * The elements started and not ended yet, the innermost first.
+	 */
+	private final LinkedList<AntNode> elements = new LinkedList<AntNode>();
+
+	public void startElement(String name) {
+		AntNode element = new AntNode(AntNode.Kind.ELEMENT, name);
+		getCurrent().addChild(element);
+		elements.addFirst(element);
+	}
+
+	public void addAttribute(String key, String value) {
+		getCurrent().addAttribute(key, value);
+	}
+
+	public void writeText(String text) {
+		getCurrent().addChild(new AntNode(AntNode.Kind.TEXT, text));
+	}
+
+	public void writeMarkup(String text) {
+		getCurrent().addChild(new AntNode(AntNode.Kind.MARKUP, text));
+	}
+
+	public void endElement() {
+		if (elements.isEmpty()) {
+			throw new IllegalStateException("No element to end");
+		}
+		elements.removeFirst();
+	}
+
+	/**
+	 * @return the written document, interned, not null
+	 * @throws IllegalStateException
+	 *             if an element wasn't ended
+	 */
+	public AntNode getDocument() {
+		if (!elements.isEmpty()) {
+			throw new IllegalStateException("Element " + elements.getFirst().getName() + " not ended");
+		}
+		return document.intern();
+	}
+
+	private AntNode getCurrent() {
+		return elements.isEmpty() ? document : elements.getFirst();
+	}
+}
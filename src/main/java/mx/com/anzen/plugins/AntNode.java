@@ -0,0 +1,241 @@
+package mx.com.anzen.plugins;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.plexus.util.xml.XMLWriter;
+
+/**
+ * A node of the in-memory model of a generated Ant project: the document, an
+ * element with its attributes and children, a text or some markup like a
+ * comment. The model is filled by an {@link AntModelWriter} and written out
+ * again with {@link #write(XMLWriter)}, giving the same calls, in the same
+ * order, as the ones it was filled with.
+ * <p>
+ * A node is changed only while the model is filled. Once {@link #intern()}ed
+ * it can't be changed any more, and the nodes equal to it, from the same
+ * module or another one, are the same instance: equal targets are kept once,
+ * and comparing two models mostly compares references.
+ */
+public final class AntNode {
+
+	/**
+	 * The kind of a node.
+	 */
+	public enum Kind {
+		DOCUMENT, ELEMENT, TEXT, MARKUP
+	}
+
+	/**
+	 * The interned nodes, shared by all the modules.
+	 */
+	private static final Map<AntNode, WeakReference<AntNode>> interned = new WeakHashMap<AntNode, WeakReference<AntNode>>();
+
+	private final Kind kind;
+
+	/**
+	 * The element name, or the text or markup.
+	 */
+	private final String value;
+
+	/**
+	 * The attribute names and values, one after the other.
+	 */
+	private List<String> attributes = Collections.emptyList();
+
+	private List<AntNode> children = Collections.emptyList();
+
+	private boolean frozen;
+
+	private int hash;
+
+	AntNode(Kind kind, String value) {
+		this.kind = kind;
+		this.value = value;
+	}
+
+	/**
+	 * @return the kind of this node, not null
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the element name, null for another kind of node
+	 */
+	public String getName() {
+		return kind == Kind.ELEMENT ? value : null;
+	}
+
+	/**
+	 * @return the text or markup, null for another kind of node
+	 */
+	public String getText() {
+		return kind == Kind.TEXT || kind == Kind.MARKUP ? value : null;
+	}
+
+	/**
+	 * @param name
+	 *            not null
+	 * @return the value of the attribute, null if the element doesn't have it
+	 */
+	public String getAttribute(String name) {
+		for (int i = 0; i < attributes.size(); i += 2) {
+			if (attributes.get(i).equals(name)) {
+				return attributes.get(i + 1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the children, in order, not null
+	 */
+	public List<AntNode> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	/**
+	 * @param name
+	 *            not null
+	 * @return the child elements with the given name, not null
+	 */
+	public List<AntNode> getChildren(String name) {
+		List<AntNode> elements = new ArrayList<AntNode>();
+		for (AntNode child : children) {
+			if (name.equals(child.getName())) {
+				elements.add(child);
+			}
+		}
+		return elements;
+	}
+
+	void addAttribute(String name, String value) {
+		checkNotFrozen();
+		if (kind != Kind.ELEMENT) {
+			throw new IllegalStateException("Attribute " + name + " outside of an element");
+		}
+		if (attributes.isEmpty()) {
+			attributes = new ArrayList<String>(4);
+		}
+		attributes.add(name);
+		attributes.add(value);
+	}
+
+	void addChild(AntNode child) {
+		checkNotFrozen();
+		if (children.isEmpty()) {
+			children = new ArrayList<AntNode>();
+		}
+		children.add(child);
+	}
+
+	/**
+	 * Write this node and its children.
+	 *
+	 * @param writer
+	 *            not null
+	 */
+	public void write(XMLWriter writer) {
+		switch (kind) {
+		case ELEMENT:
+			writer.startElement(value);
+			for (int i = 0; i < attributes.size(); i += 2) {
+				writer.addAttribute(attributes.get(i), attributes.get(i + 1));
+			}
+			writeChildren(writer);
+			writer.endElement();
+			break;
+		case TEXT:
+			writer.writeText(value);
+			break;
+		case MARKUP:
+			writer.writeMarkup(value);
+			break;
+		default:
+			writeChildren(writer);
+		}
+	}
+
+	private void writeChildren(XMLWriter writer) {
+		for (AntNode child : children) {
+			child.write(writer);
+		}
+	}
+
+	/**
+	 * Freeze this node and its children, and share them with the equal nodes
+	 * interned before.
+	 *
+	 * @return the interned node equal to this one, not null
+	 */
+	public AntNode intern() {
+		if (!frozen) {
+			for (int i = 0; i < children.size(); i++) {
+				children.set(i, children.get(i).intern());
+			}
+			if (attributes.size() > 0) {
+				attributes = Collections.unmodifiableList(attributes);
+			}
+			if (children.size() > 0) {
+				children = Collections.unmodifiableList(children);
+			}
+			frozen = true;
+			hash = computeHashCode();
+		}
+
+		synchronized (interned) {
+			WeakReference<AntNode> reference = interned.get(this);
+			AntNode node = reference != null ? reference.get() : null;
+			if (node == null) {
+				interned.put(this, new WeakReference<AntNode>(this));
+				node = this;
+			}
+			return node;
+		}
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("The node " + value + " can't be changed any more");
+		}
+	}
+
+	private int computeHashCode() {
+		int result = kind.hashCode();
+		result = 31 * result + (value != null ? value.hashCode() : 0);
+		result = 31 * result + attributes.hashCode();
+		result = 31 * result + children.hashCode();
+		return result;
+	}
+
+	@Override
+	public int hashCode() {
+		return frozen ? hash : computeHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof AntNode)) {
+			return false;
+		}
+		AntNode other = (AntNode) obj;
+		if (frozen && other.frozen && hash != other.hash) {
+			return false;
+		}
+		return kind == other.kind && (value != null ? value.equals(other.value) : other.value == null) && attributes.equals(other.attributes) && children.equals(other.children);
+	}
+
+	@Override
+	public String toString() {
+		return kind == Kind.ELEMENT ? "<" + value + ">" : kind + ": " + value;
+	}
+}
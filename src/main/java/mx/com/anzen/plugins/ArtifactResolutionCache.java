@@ -0,0 +1,170 @@
+package mx.com.anzen.plugins;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Artifacts resolved by {@link ArtifactResolverWrapper}, by
+ * <code>groupId:artifactId:version:type</code>: the path of the artifact in
+ * the local repository, or the error if it couldn't be resolved, so an
+ * artifact used by several modules is resolved once.
+ * <p>
+ * As the {@link ReactorPluginConfigurationCache}, the cache lives as long as
+ * the Maven session it is bound to.
+ */
+public class ArtifactResolutionCache {
+
+	private static ArtifactResolutionCache current;
+
+	/**
+	 * The build the cache is bound to, see {@link SessionKey}.
+	 */
+	private final String sessionKey;
+
+	private final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<String, Resolution>();
+
+	private final AtomicInteger hits = new AtomicInteger();
+
+	private final AtomicInteger misses = new AtomicInteger();
+
+	private ArtifactResolutionCache(MavenSession session) {
+		this.sessionKey = SessionKey.of(session);
+	}
+
+	/**
+	 * Return the cache of the build of the given session, dropping the cache
+	 * of any previous build. The copies of a session share the cache.
+	 *
+	 * @param session
+	 *            the current Maven session, could be null
+	 * @return the cache bound to the session
+	 */
+	public static synchronized ArtifactResolutionCache getInstance(MavenSession session) {
+		if (current == null || !current.sessionKey.equals(SessionKey.of(session))) {
+			current = new ArtifactResolutionCache(session);
+		}
+		return current;
+	}
+
+	/**
+	 * @return the cache of the current session, or a cache not bound to any
+	 *         session if none was given yet
+	 */
+	public static synchronized ArtifactResolutionCache getInstance() {
+		if (current == null) {
+			current = new ArtifactResolutionCache(null);
+		}
+		return current;
+	}
+
+	/**
+	 * @param key
+	 *            <code>groupId:artifactId:version:type</code>, not null
+	 * @return the resolution of the artifact, null if it wasn't resolved yet
+	 */
+	public Resolution get(String key) {
+		Resolution resolution = resolutions.get(key);
+		if (resolution != null) {
+			hits.incrementAndGet();
+		}
+		return resolution;
+	}
+
+	/**
+	 * Keep the resolution of an artifact, counting it as a miss.
+	 *
+	 * @param key
+	 *            <code>groupId:artifactId:version:type</code>, not null
+	 * @param resolution
+	 *            not null
+	 */
+	public void put(String key, Resolution resolution) {
+		misses.incrementAndGet();
+		resolutions.put(key, resolution);
+	}
+
+	/**
+	 * Drop every resolution, for instance when the local repository changed.
+	 */
+	public void clear() {
+		resolutions.clear();
+	}
+
+	/**
+	 * @return the number of artifacts found in the cache
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of artifacts resolved
+	 */
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Write the hit and miss counters to the debug log.
+	 *
+	 * @param log
+	 *            not null
+	 */
+	public void logStatistics(Log log) {
+		if (log.isDebugEnabled()) {
+			log.debug("Artifact resolution cache: " + getHitCount() + " hits, " + getMissCount() + " misses, " + resolutions.size() + " artifacts");
+		}
+	}
+
+	/**
+	 * The path of a resolved artifact, or why it couldn't be resolved.
+	 */
+	public static class Resolution {
+
+		private final String path;
+
+		private final String error;
+
+		private Resolution(String path, String error) {
+			this.path = path;
+			this.error = error;
+		}
+
+		/**
+		 * @param path
+		 *            the absolute path of the artifact, not null
+		 * @return a successful resolution
+		 */
+		public static Resolution resolved(String path) {
+			return new Resolution(path, null);
+		}
+
+		/**
+		 * @param error
+		 *            the error message, not null
+		 * @return a failed resolution
+		 */
+		public static Resolution failed(String error) {
+			return new Resolution(null, error);
+		}
+
+		/**
+		 * @return the absolute path of the artifact, null if it couldn't be
+		 *         resolved
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @return the error message, null if the artifact was resolved
+		 */
+		public String getError() {
+			return error;
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package mx.com.anzen.plugins;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.factory.ArtifactFactory;
@@ -31,6 +34,17 @@ public class ArtifactResolverWrapper {
 	 */
 	private List<String> remoteRepositories;
 
+	/**
+	 * The artifacts resolved in the session
+	 */
+	private final ArtifactResolutionCache cache;
+
+	/**
+	 * The index answering for the artifacts already in the local repository,
+	 * if any
+	 */
+	private LocalRepositoryIndex localRepositoryIndex;
+
 	/**
 	 * @param resolver
 	 * @param factory
@@ -42,6 +56,7 @@ public class ArtifactResolverWrapper {
 		this.factory = factory;
 		this.localRepository = localRepository;
 		this.remoteRepositories = remoteRepositories;
+		this.cache = ArtifactResolutionCache.getInstance();
 	}
 
 	/**
@@ -79,6 +94,19 @@ public class ArtifactResolverWrapper {
 		this.remoteRepositories = remoteRepositories;
 	}
 
+	protected LocalRepositoryIndex getLocalRepositoryIndex() {
+		return localRepositoryIndex;
+	}
+
+	/**
+	 * @param localRepositoryIndex
+	 *            the index finding the artifacts already in the local
+	 *            repository without the resolver, could be null
+	 */
+	protected void setLocalRepositoryIndex(LocalRepositoryIndex localRepositoryIndex) {
+		this.localRepositoryIndex = localRepositoryIndex;
+	}
+
 	protected ArtifactResolver getResolver() {
 		return resolver;
 	}
@@ -90,24 +118,78 @@ public class ArtifactResolverWrapper {
 	/**
 	 * Return the artifact path in the local repository for an artifact defined
 	 * by its <code>groupId</code>, its <code>artifactId</code> and its
-	 * <code>version</code>.
+	 * <code>version</code>. The artifact is resolved once in the session,
+	 * even if it couldn't be.
 	 * 
 	 * @param groupId
 	 * @param artifactId
 	 * @param version
 	 * @return the locale artifact path
 	 * @throws IOException
+	 * @see ArtifactResolutionCache
 	 */
 	public String getArtifactAbsolutePath(String groupId, String artifactId, String version) throws IOException {
+		long start = System.nanoTime();
+		String key = groupId + ":" + artifactId + ":" + version + ":jar";
+		ArtifactResolutionCache.Resolution resolution = cache.get(key);
+		ProsaMetrics.count(ProsaMetrics.Phase.RESOLUTION, resolution != null ? 1 : 0, resolution != null ? 0 : 1);
+		if (resolution == null) {
+			// the resolver is not meant to be used by several threads
+			synchronized (cache) {
+				resolution = cache.get(key);
+				if (resolution == null) {
+					resolution = resolve(groupId, artifactId, version);
+					cache.put(key, resolution);
+				}
+			}
+		}
+		ProsaMetrics.record(ProsaMetrics.Phase.RESOLUTION, start, 1, 0);
+
+		if (resolution.getError() != null) {
+			throw new IOException(resolution.getError());
+		}
+		return resolution.getPath();
+	}
+
+	/**
+	 * Resolve artifacts before they are used, so the Ant scripts are written
+	 * from the session cache. An artifact that couldn't be resolved is
+	 * reported when it is used only.
+	 * 
+	 * @param artifacts
+	 *            the <code>groupId</code>, <code>artifactId</code> and
+	 *            <code>version</code> of each artifact, not null
+	 * @return the number of artifacts that couldn't be resolved
+	 */
+	public int resolveAll(Collection<Map<String, String>> artifacts) {
+		int failures = 0;
+		for (Map<String, String> artifact : artifacts) {
+			try {
+				getArtifactAbsolutePath(artifact.get("groupId"), artifact.get("artifactId"), artifact.get("version"));
+			} catch (IOException e) {
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	private ArtifactResolutionCache.Resolution resolve(String groupId, String artifactId, String version) {
+		if (localRepositoryIndex != null) {
+			File file = localRepositoryIndex.find(groupId, artifactId, version, "jar");
+			if (file != null) {
+				return ArtifactResolutionCache.Resolution.resolved(file.getAbsolutePath());
+			}
+		}
+
 		Artifact artifact = factory.createArtifact(groupId, artifactId, version, "compile", "jar");
 		try {
 			resolver.resolve(artifact, remoteRepositories, localRepository);
 
-			return artifact.getFile().getAbsolutePath();
+			return ArtifactResolutionCache.Resolution.resolved(artifact.getFile().getAbsolutePath());
 		} catch (ArtifactResolutionException e) {
-			throw new IOException("Unable to resolve artifact: " + groupId + ":" + artifactId + ":" + version);
+			return ArtifactResolutionCache.Resolution.failed("Unable to resolve artifact: " + groupId + ":" + artifactId + ":" + version);
 		} catch (ArtifactNotFoundException e) {
-			throw new IOException("Unable to find artifact: " + groupId + ":" + artifactId + ":" + version);
+			return ArtifactResolutionCache.Resolution.failed("Unable to find artifact: " + groupId + ":" + artifactId + ":" + version);
 		}
 	}
 
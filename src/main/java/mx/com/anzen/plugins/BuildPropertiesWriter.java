@@ -0,0 +1,179 @@
+package mx.com.anzen.plugins;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a <code>build.properties</code> file in a stable order: the
+ * properties are kept in groups, written in the order the groups were first
+ * used, and sorted by key inside each group, numbered keys like
+ * <code>build.srcDir.10</code> by number. Keys and values are escaped the same
+ * way {@link java.util.Properties#store(Writer, String)} does, but no date is
+ * written, so the same properties always give the same file.
+ */
+public class BuildPropertiesWriter {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Orders keys by name, the numbers in them by value.
+	 */
+	private static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+		public int compare(String key1, String key2) {
+			int order = getSortKey(key1).compareTo(getSortKey(key2));
+			return order != 0 ? order : key1.compareTo(key2);
+		}
+	};
+
+	/**
+	 * Properties by key, by group comment.
+	 */
+	private final Map<String, Map<String, String>> groups = new LinkedHashMap<String, Map<String, String>>();
+
+	private Map<String, String> group;
+
+	/**
+	 * Put the next properties in the given group, the properties without
+	 * group otherwise.
+	 *
+	 * @param comment
+	 *            the comment written before the group, not null
+	 */
+	public void setGroup(String comment) {
+		group = groups.get(comment);
+		if (group == null) {
+			group = new TreeMap<String, String>(KEY_ORDER);
+			groups.put(comment, group);
+		}
+	}
+
+	/**
+	 * Set a property in the current group. As with
+	 * {@link java.util.Properties}, setting a key again replaces its value, and
+	 * the key moves to the current group.
+	 *
+	 * @param key
+	 *            not null
+	 * @param value
+	 *            not null
+	 */
+	public void setProperty(String key, String value) {
+		if (group == null) {
+			setGroup("");
+		}
+		for (Map<String, String> properties : groups.values()) {
+			properties.remove(key);
+		}
+		group.put(key, value);
+	}
+
+	/**
+	 * Write the properties, with an optional header comment.
+	 *
+	 * @param writer
+	 *            not null, encoded in ISO 8859-1 as for
+	 *            {@link java.util.Properties}
+	 * @param header
+	 *            could be null
+	 * @throws IOException
+	 *             if any
+	 */
+	public void store(Writer writer, String header) throws IOException {
+		String lineSeparator = System.getProperty("line.separator");
+		if (header != null) {
+			writer.write("#" + header + lineSeparator);
+		}
+
+		boolean first = true;
+		for (Map.Entry<String, Map<String, String>> entry : groups.entrySet()) {
+			if (entry.getValue().isEmpty()) {
+				continue;
+			}
+			if (!first) {
+				writer.write(lineSeparator);
+			}
+			first = false;
+
+			if (entry.getKey().length() > 0) {
+				writer.write("# " + entry.getKey() + lineSeparator);
+			}
+			for (Iterator<Map.Entry<String, String>> it = entry.getValue().entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, String> property = it.next();
+				writer.write(escape(property.getKey(), true) + "=" + escape(property.getValue(), false) + lineSeparator);
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Escape as {@link java.util.Properties#store(Writer, String)} does with
+	 * non ISO 8859-1 output.
+	 */
+	private static String escape(String text, boolean key) {
+		StringBuffer escaped = new StringBuffer(text.length() * 2);
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case ' ':
+				if (i == 0 || key) {
+					escaped.append('\\');
+				}
+				escaped.append(' ');
+				break;
+			case '\t':
+				escaped.append("\\t");
+				break;
+			case '\n':
+				escaped.append("\\n");
+				break;
+			case '\r':
+				escaped.append("\\r");
+				break;
+			case '\f':
+				escaped.append("\\f");
+				break;
+			case '=':
+			case ':':
+			case '#':
+			case '!':
+			case '\\':
+				escaped.append('\\').append(c);
+				break;
+			default:
+				if (c < 0x0020 || c > 0x007e) {
+					escaped.append("\\u").append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf]).append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+				} else {
+					escaped.append(c);
+				}
+			}
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * The key with each number preceded by its length, so a shorter number
+	 * sorts first.
+	 */
+	private static String getSortKey(String key) {
+		StringBuffer sortKey = new StringBuffer(key.length() + 4);
+		int i = 0;
+		while (i < key.length()) {
+			int end = i;
+			while (end < key.length() && key.charAt(end) >= '0' && key.charAt(end) <= '9') {
+				end++;
+			}
+			if (end > i) {
+				sortKey.append((char) ('0' + end - i)).append(key, i, end);
+				i = end;
+			} else {
+				sortKey.append(key.charAt(i++));
+			}
+		}
+		return sortKey.toString();
+	}
+}
@@ -0,0 +1,312 @@
+package mx.com.anzen.plugins;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * What was copied to an Ant project: for every target file, relative to the
+ * Ant project root directory, who copied it, the source it was copied from
+ * with its size, its last modified time and, when hashing is on, its CRC-32. A target whose
+ * source didn't change since it was copied is up to date and doesn't have to
+ * be copied again. SNAPSHOT jars downloaded again have a new last modified
+ * time, so they are copied again unless hashing finds the same content.
+ * <p>
+ * The manifest is kept in {@link #DEFAULT_MANIFEST_FILENAME} under the root
+ * directory, and in memory for the JVM lifetime, see
+ * {@link #getInstance(File)}. The copies are only recorded in memory, the
+ * manifests changed are written once the goal is done, see {@link #saveAll()}.
+ */
+public class CopyManifest {
+
+	/**
+	 * Name of the manifest file, under the Ant project root directory.
+	 */
+	public static final String DEFAULT_MANIFEST_FILENAME = ".prosa-manifest";
+
+	private static final String HEADER = "# Generated by Anzen Ant Plugin - DO NOT EDIT THIS FILE!";
+
+	/**
+	 * Manifests already loaded, by root directory.
+	 */
+	private static final Map<File, CopyManifest> manifests = new ConcurrentHashMap<File, CopyManifest>();
+
+	private final File root;
+
+	/**
+	 * Entries by target path relative to the root, sorted so the file is
+	 * stable.
+	 */
+	private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+	private boolean hashing;
+
+	/**
+	 * Whether the entries changed since the manifest file was written.
+	 */
+	private boolean dirty;
+
+	private CopyManifest(File root) {
+		this.root = root;
+	}
+
+	/**
+	 * Return the manifest of the given Ant project, loading it the first time.
+	 *
+	 * @param root
+	 *            the Ant project root directory, not null
+	 * @return the manifest, empty if there is no manifest file yet
+	 * @throws IOException
+	 *             if the manifest file couldn't be read
+	 */
+	public static CopyManifest getInstance(File root) throws IOException {
+		File key = root.getAbsoluteFile();
+		synchronized (manifests) {
+			CopyManifest manifest = manifests.get(key);
+			if (manifest == null) {
+				manifest = new CopyManifest(key);
+				manifest.load();
+				manifests.put(key, manifest);
+			}
+			return manifest;
+		}
+	}
+
+	/**
+	 * @param hashing
+	 *            whether a source with a new last modified time but the same
+	 *            size is compared by content before copying it again
+	 */
+	public void setHashing(boolean hashing) {
+		this.hashing = hashing;
+	}
+
+	/**
+	 * Check if a target was copied from the given source and neither of them
+	 * changed since.
+	 *
+	 * @param source
+	 *            not null
+	 * @param target
+	 *            not null
+	 * @return true if the target doesn't have to be copied again
+	 * @throws IOException
+	 *             if the source couldn't be hashed
+	 */
+	public boolean isUpToDate(File source, File target) throws IOException {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(getPath(target));
+		}
+		if (entry == null || !entry.source.equals(source.getAbsolutePath()) || !target.exists() || target.length() != entry.size) {
+			return false;
+		}
+		if (source.length() != entry.size) {
+			return false;
+		}
+		if (source.lastModified() == entry.lastModified) {
+			return true;
+		}
+		if (!hashing || entry.hash == null || !crc32(source).equals(entry.hash)) {
+			return false;
+		}
+
+		synchronized (this) {
+			entry.lastModified = source.lastModified();
+			dirty = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Record a copy.
+	 *
+	 * @param owner
+	 *            who copied the file, like the lib directory of a module
+	 * @param source
+	 *            not null
+	 * @param target
+	 *            not null, under the root directory
+	 * @throws IOException
+	 *             if the source couldn't be hashed
+	 */
+	public void record(String owner, File source, File target) throws IOException {
+		Entry entry = new Entry();
+		entry.owner = owner;
+		entry.source = source.getAbsolutePath();
+		entry.size = source.length();
+		entry.lastModified = source.lastModified();
+		entry.hash = hashing ? crc32(source) : null;
+
+		synchronized (this) {
+			entries.put(getPath(target), entry);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Remove the targets copied by the given owner which were not copied nor
+	 * found up to date this time, since their sources are gone.
+	 *
+	 * @param owner
+	 *            who copied the targets
+	 * @param kept
+	 *            the targets copied or found up to date this time
+	 * @return the number of targets removed
+	 */
+	public synchronized int removeStale(String owner, Set<File> kept) {
+		Set<String> keptPaths = new HashSet<String>();
+		synchronized (kept) {
+			for (File file : kept) {
+				keptPaths.add(getPath(file));
+			}
+		}
+
+		int removed = 0;
+		for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Entry> entry = it.next();
+			if (!owner.equals(entry.getValue().owner) || keptPaths.contains(entry.getKey())) {
+				continue;
+			}
+			new File(root, entry.getKey()).delete();
+			it.remove();
+			removed++;
+		}
+		if (removed > 0) {
+			dirty = true;
+		}
+		return removed;
+	}
+
+	/**
+	 * Forget a target, deleted since it is no longer copied.
+	 *
+	 * @param target
+	 *            not null
+	 */
+	public synchronized void remove(File target) {
+		if (entries.remove(getPath(target)) != null) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Write the file of every manifest changed since it was written.
+	 *
+	 * @throws IOException
+	 *             if any
+	 */
+	public static void saveAll() throws IOException {
+		for (CopyManifest manifest : manifests.values()) {
+			manifest.save();
+		}
+	}
+
+	/**
+	 * Write the manifest file, if it changed since it was written.
+	 *
+	 * @throws IOException
+	 *             if any
+	 */
+	public synchronized void save() throws IOException {
+		if (!dirty || !root.isDirectory()) {
+			return;
+		}
+
+		File temp = File.createTempFile(DEFAULT_MANIFEST_FILENAME, ".tmp", root);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+		try {
+			writer.write(HEADER);
+			writer.write('\n');
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				Entry value = entry.getValue();
+				writer.write(entry.getKey() + '\t' + value.owner + '\t' + value.source + '\t' + value.size + '\t' + value.lastModified + '\t' + (value.hash != null ? value.hash : "") + '\n');
+			}
+		} finally {
+			IOUtil.close(writer);
+		}
+		Files.move(temp.toPath(), new File(root, DEFAULT_MANIFEST_FILENAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		dirty = false;
+	}
+
+	private void load() throws IOException {
+		File file = new File(root, DEFAULT_MANIFEST_FILENAME);
+		if (!file.isFile()) {
+			return;
+		}
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t", -1);
+				if (fields.length != 6) {
+					continue;
+				}
+				try {
+					Entry entry = new Entry();
+					entry.owner = fields[1];
+					entry.source = fields[2];
+					entry.size = Long.parseLong(fields[3]);
+					entry.lastModified = Long.parseLong(fields[4]);
+					entry.hash = fields[5].length() > 0 ? fields[5] : null;
+					entries.put(fields[0], entry);
+				} catch (NumberFormatException e) {
+					// a damaged entry is only copied again
+				}
+			}
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	private String getPath(File target) {
+		Path path = root.toPath().normalize().relativize(target.getAbsoluteFile().toPath().normalize());
+		return path.toString().replace(File.separatorChar, '/');
+	}
+
+	private static String crc32(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, n);
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+		return Long.toHexString(crc.getValue());
+	}
+
+	private static class Entry {
+		String owner;
+		String source;
+		long size;
+		long lastModified;
+		String hash;
+	}
+}
@@ -0,0 +1,191 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies the files of the file trees planned by {@link FilesMappingPlanner}
+ * on a fork-join pool: the copies are split in ranges between the workers.
+ * The pool is kept until {@link #shutdown()}, so the copier can be used again
+ * for the next copies.
+ */
+public class FileTreeCopier {
+
+	/**
+	 * Maximum number of files copied by a single task.
+	 */
+	private static final int FILES_PER_TASK = 16;
+
+	private final ForkJoinPool pool;
+
+	private final AtomicLong files = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong skipped = new AtomicLong();
+
+	private CopyManifest manifest;
+
+	private String owner;
+
+	/**
+	 * The target files copied or found up to date.
+	 */
+	private final Set<File> targets = Collections.synchronizedSet(new HashSet<File>());
+
+	/**
+	 * @param workers
+	 *            the number of workers, zero or less means one
+	 */
+	public FileTreeCopier(int workers) {
+		this.pool = new ForkJoinPool(Math.max(1, workers));
+	}
+
+	/**
+	 * Skip the files the manifest finds up to date, and record the others.
+	 *
+	 * @param manifest
+	 *            could be null to copy every file
+	 * @param owner
+	 *            who the copies are recorded for
+	 */
+	public void setManifest(CopyManifest manifest, String owner) {
+		this.manifest = manifest;
+		this.owner = owner;
+	}
+
+	/**
+	 * Copy files at the same time.
+	 *
+	 * @param targets
+	 *            the source file by target file, not null. The parent
+	 *            directories of the targets must exist.
+	 * @throws IOException
+	 *             if any copy failed
+	 */
+	public void copy(Map<File, File> targets) throws IOException {
+		if (targets.isEmpty()) {
+			return;
+		}
+
+		List<Map.Entry<File, File>> copies = new ArrayList<Map.Entry<File, File>>(targets.entrySet());
+		try {
+			pool.invoke(new FilesTask(copies, 0, copies.size()));
+		} catch (CopyException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Stop the workers.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * @return the number of files copied so far
+	 */
+	public long getFileCount() {
+		return files.get();
+	}
+
+	/**
+	 * @return the number of files skipped so far because they were up to date
+	 */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return the target files copied or found up to date so far
+	 */
+	public Set<File> getTargets() {
+		return targets;
+	}
+
+	/**
+	 * @return the number of bytes copied so far
+	 */
+	public long getByteCount() {
+		return bytes.get();
+	}
+
+	private void copyFile(File source, File target) throws IOException {
+		targets.add(target);
+		if (manifest != null && manifest.isUpToDate(source, target)) {
+			skipped.incrementAndGet();
+			return;
+		}
+
+		bytes.addAndGet(ParallelFileCopier.copyFile(source, target));
+		files.incrementAndGet();
+		if (manifest != null) {
+			manifest.record(owner, source, target);
+		}
+	}
+
+	/**
+	 * Copies a range of the files, splitting it between workers.
+	 */
+	private class FilesTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Map.Entry<File, File>> copies;
+
+		private final int start;
+
+		private final int end;
+
+		FilesTask(List<Map.Entry<File, File>> copies, int start, int end) {
+			this.copies = copies;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > FILES_PER_TASK) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new FilesTask(copies, start, middle), new FilesTask(copies, middle, end));
+				return;
+			}
+
+			try {
+				for (int i = start; i < end; i++) {
+					Map.Entry<File, File> copy = copies.get(i);
+					copyFile(copy.getValue(), copy.getKey());
+				}
+			} catch (IOException e) {
+				throw new CopyException(e);
+			}
+		}
+	}
+
+	/**
+	 * Carries an {@link IOException} out of a task.
+	 */
+	private static class CopyException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		CopyException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
@@ -0,0 +1,427 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Plans the copies of the files mappings as single file copies, run by
+ * {@link FileTreeCopier}, with the same result as copying the mappings one
+ * after the other with {@link org.codehaus.plexus.util.FileUtils}, a tree like
+ * <code>copyDirectoryStructure</code> does:
+ * <ul>
+ * <li>a file copied again to the same target by a later mapping is only
+ * copied from the later source;</li>
+ * <li>a file read from the target of a previous mapping is copied from the
+ * source of that mapping, so the copies don't depend on each other and run at
+ * the same time;</li>
+ * <li>a directory already there, or made by the copy of a file or a directory
+ * inside it, is not made again, and the others are made parents first.</li>
+ * </ul>
+ * A plan made again from a previous one only walks the source trees holding a
+ * changed file, see {@link #FilesMappingPlanner(FilesMappingPlanner, Set)}.
+ */
+public class FilesMappingPlanner {
+
+	/**
+	 * The planned copies by absolute target path.
+	 */
+	private final TreeMap<String, Copy> copies = new TreeMap<String, Copy>();
+
+	/**
+	 * The absolute paths of the planned directories.
+	 */
+	private final TreeSet<String> directories = new TreeSet<String>();
+
+	private final List<FilesMapping> mappings = new ArrayList<FilesMapping>();
+
+	private int replaced;
+
+	/**
+	 * The source trees walked, by source and target path.
+	 */
+	private final Map<String, Tree> trees = new HashMap<String, Tree>();
+
+	/**
+	 * The source trees of a previous plan not changed since, by source and
+	 * target path.
+	 */
+	private final Map<String, Tree> unchangedTrees;
+
+	/**
+	 * The targets of a previous plan, left in the target directories until the
+	 * ones no longer planned are removed.
+	 */
+	private final Set<String> previousTargets;
+
+	public FilesMappingPlanner() {
+		this.unchangedTrees = Collections.emptyMap();
+		this.previousTargets = Collections.emptySet();
+	}
+
+	/**
+	 * Plan the mappings again, reusing the source trees the previous plan
+	 * walked but the ones holding a changed file.
+	 *
+	 * @param previous
+	 *            not null
+	 * @param changed
+	 *            the absolute files and directories changed, created or
+	 *            deleted, null to walk every tree again
+	 */
+	public FilesMappingPlanner(FilesMappingPlanner previous, Set<File> changed) {
+		this.unchangedTrees = new HashMap<String, Tree>();
+		this.previousTargets = previous.copies.keySet();
+		if (changed == null) {
+			return;
+		}
+		for (Map.Entry<String, Tree> entry : previous.trees.entrySet()) {
+			if (!entry.getValue().contains(changed)) {
+				unchangedTrees.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Plan a directory to make.
+	 *
+	 * @param directory
+	 *            not null
+	 */
+	public void addDirectory(File directory) {
+		directories.add(normalize(directory).getPath());
+	}
+
+	/**
+	 * Plan a mapping after the ones already added.
+	 *
+	 * @param fm
+	 *            the mapping, not null
+	 * @param origin
+	 *            the file or directory it copies, null if it only makes its
+	 *            target directory
+	 * @param target
+	 *            not null
+	 * @throws IOException
+	 *             if the origin doesn't exist or couldn't be listed
+	 */
+	public void add(FilesMapping fm, File origin, File target) throws IOException {
+		mappings.add(fm);
+		final File to = normalize(target);
+		if (origin == null) {
+			directories.add(to.getPath());
+			return;
+		}
+
+		final File from = normalize(origin);
+		boolean plannedDirectory = isPlannedDirectory(from);
+		if (from.isDirectory() || plannedDirectory) {
+			directories.add(to.getPath());
+			// what the previous mappings copy there is copied from their sources
+			List<Copy> planned = new ArrayList<Copy>(getPlannedUnder(from).values());
+			List<String> plannedDirectories = new ArrayList<String>(directories.subSet(from.getPath() + File.separator, from.getPath() + File.separator + Character.MAX_VALUE));
+			for (String directory : plannedDirectories) {
+				if (!isUnder(new File(directory), to)) {
+					directories.add(new File(to, relativize(from, new File(directory))).getPath());
+				}
+			}
+			for (Copy copy : planned) {
+				if (!isUnder(copy.target, to)) {
+					plan(fm, copy.source, new File(to, relativize(from, copy.target)));
+				}
+			}
+			if (from.isDirectory()) {
+				walk(fm, from, to, plannedDirectory);
+			}
+		} else if (from.isFile() || copies.containsKey(from.getPath())) {
+			boolean directory = to.isDirectory() || isPlannedDirectory(to);
+			plan(fm, resolve(from), directory ? new File(to, from.getName()) : to);
+		} else {
+			throw new IOException("File not found: " + origin.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * @return the source by target of the files to copy, not overlapping
+	 */
+	public Map<File, File> getCopies() {
+		Map<File, File> targets = new LinkedHashMap<File, File>();
+		for (Copy copy : copies.values()) {
+			targets.put(copy.target, copy.source);
+		}
+		return targets;
+	}
+
+	/**
+	 * @return the directories to make, parents first, without the ones
+	 *         already there or made by a directory or a file inside them
+	 */
+	public List<File> getDirectories() {
+		List<File> made = new ArrayList<File>();
+		for (File directory : getLeafDirectories()) {
+			if (!directory.isDirectory()) {
+				made.add(directory);
+			}
+		}
+		return made;
+	}
+
+	/**
+	 * @return the directories planned or holding a file, parents first,
+	 *         without the ones made by a directory inside them
+	 */
+	public List<File> getLeafDirectories() {
+		SortedSet<String> needed = new TreeSet<String>(directories);
+		for (Copy copy : copies.values()) {
+			needed.add(copy.target.getParent());
+		}
+
+		List<File> leaves = new ArrayList<File>();
+		for (String directory : needed) {
+			if (needed.subSet(directory + File.separator, directory + File.separator + Character.MAX_VALUE).isEmpty()) {
+				leaves.add(new File(directory));
+			}
+		}
+		return leaves;
+	}
+
+	/**
+	 * @return the number of files planned, each copied once
+	 */
+	public int getFileCount() {
+		return copies.size();
+	}
+
+	/**
+	 * @return the bytes of the files planned
+	 */
+	public long getByteCount() {
+		long bytes = 0;
+		for (Copy copy : copies.values()) {
+			bytes += copy.source.length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the number of copies dropped since a later mapping copies the
+	 *         same target
+	 */
+	public int getReplacedCount() {
+		return replaced;
+	}
+
+	/**
+	 * Log the plan: what each mapping copies, the directories made, and the
+	 * totals.
+	 *
+	 * @param log
+	 *            not null
+	 * @param manifest
+	 *            the manifest telling the files up to date, could be null
+	 * @throws IOException
+	 *             if a source couldn't be hashed
+	 */
+	public void log(Log log, CopyManifest manifest) throws IOException {
+		Map<FilesMapping, Counts> counts = new LinkedHashMap<FilesMapping, Counts>();
+		for (FilesMapping fm : mappings) {
+			counts.put(fm, new Counts());
+		}
+		for (Copy copy : copies.values()) {
+			Counts count = counts.get(copy.mapping);
+			count.files++;
+			count.bytes += copy.source.length();
+			if (manifest != null && manifest.isUpToDate(copy.source, copy.target)) {
+				count.unchanged++;
+			}
+		}
+
+		int unchanged = 0;
+		for (Map.Entry<FilesMapping, Counts> entry : counts.entrySet()) {
+			FilesMapping fm = entry.getKey();
+			Counts count = entry.getValue();
+			unchanged += count.unchanged;
+			if (fm.getSourceDirectory() == null || fm.getSourceDirectory().trim().isEmpty()) {
+				log.info("Plan: mkdir(s): " + fm.getDestinationDirectory());
+			} else {
+				log.info("Plan: " + fm.getSourceDirectory() + " => " + fm.getDestinationDirectory() + ": " + count.files + " files (" + count.bytes / 1024 + " KB), "
+						+ count.unchanged + " unchanged");
+			}
+		}
+		List<File> made = getDirectories();
+		if (log.isDebugEnabled()) {
+			for (File directory : made) {
+				log.debug("Plan: mkdir " + directory);
+			}
+			for (Copy copy : copies.values()) {
+				log.debug("Plan: copy " + copy.source + " => " + copy.target + " (" + copy.source.length() + " bytes)");
+			}
+		}
+		log.info("Plan: " + getFileCount() + " files (" + getByteCount() / 1024 + " KB), " + unchanged + " unchanged, " + replaced + " copies replaced by a later mapping, "
+				+ made.size() + " directories to make");
+	}
+
+	/**
+	 * Plan the copy of a source tree, walked again only if it changed or if
+	 * previous mappings copy files there.
+	 */
+	private void walk(FilesMapping fm, File from, File to, boolean planned) throws IOException {
+		String key = from.getPath() + File.pathSeparator + to.getPath();
+		Tree tree = planned ? null : unchangedTrees.get(key);
+		if (tree == null) {
+			tree = walk(from, to);
+		}
+		trees.put(key, tree);
+
+		for (String directory : tree.directories) {
+			directories.add(directory.length() > 0 ? new File(to, directory).getPath() : to.getPath());
+		}
+		for (String file : tree.files) {
+			File source = new File(from, file);
+			if (previousTargets.contains(source.getPath()) && !copies.containsKey(source.getPath())) {
+				// copied by the previous plan only, about to be removed
+				continue;
+			}
+			plan(fm, resolve(source), new File(to, file));
+		}
+	}
+
+	/**
+	 * Walk a source tree, but its target when it is inside.
+	 */
+	private static Tree walk(File from, File to) throws IOException {
+		final Path source = from.toPath();
+		final Path target = to.toPath();
+		final Tree tree = new Tree(source);
+		Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (dir.equals(target)) {
+					// the target is inside the source
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				tree.directories.add(source.relativize(dir).toString());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					tree.files.add(source.relativize(file).toString());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return tree;
+	}
+
+	private void plan(FilesMapping fm, File source, File target) {
+		Copy previous = copies.put(target.getPath(), new Copy(fm, source, target));
+		if (previous != null && previous.mapping != fm) {
+			replaced++;
+		}
+	}
+
+	/**
+	 * @return the source the given file is copied from when it is the target
+	 *         of a planned copy, else the file itself
+	 */
+	private File resolve(File file) {
+		Copy copy = copies.get(file.getPath());
+		return copy != null ? copy.source : file;
+	}
+
+	private SortedMap<String, Copy> getPlannedUnder(File directory) {
+		return copies.subMap(directory.getPath() + File.separator, directory.getPath() + File.separator + Character.MAX_VALUE);
+	}
+
+	private boolean isPlannedDirectory(File file) {
+		return directories.contains(file.getPath()) || !getPlannedUnder(file).isEmpty();
+	}
+
+	private static boolean isUnder(File file, File directory) {
+		return file.toPath().startsWith(directory.toPath());
+	}
+
+	private static String relativize(File directory, File file) {
+		return directory.toPath().relativize(file.toPath()).toString();
+	}
+
+	private static File normalize(File file) {
+		return file.getAbsoluteFile().toPath().normalize().toFile();
+	}
+
+	/**
+	 * A file copy and the mapping it comes from.
+	 */
+	private static class Copy {
+
+		private final FilesMapping mapping;
+
+		private final File source;
+
+		private final File target;
+
+		Copy(FilesMapping mapping, File source, File target) {
+			this.mapping = mapping;
+			this.source = source;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * The directories and files of a source tree, relative to its root.
+	 */
+	private static class Tree {
+
+		private final Path root;
+
+		private final List<String> directories = new ArrayList<String>();
+
+		private final List<String> files = new ArrayList<String>();
+
+		Tree(Path root) {
+			this.root = root;
+		}
+
+		boolean contains(Set<File> changed) {
+			for (File file : changed) {
+				if (file.toPath().startsWith(root)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The totals of a mapping.
+	 */
+	private static class Counts {
+
+		private int files;
+
+		private long bytes;
+
+		private int unchanged;
+	}
+}
@@ -0,0 +1,159 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Keeps a single copy of every library, named by the SHA-1 of its content, and
+ * fills the lib directories of the modules with links to it: a hard link when
+ * the file system supports it, a symbolic link otherwise and a plain copy as a
+ * last resort. Ant sees the links as the jars themselves.
+ */
+public class LibraryStore {
+
+	/**
+	 * Name of the store directory, under the Ant project root directory.
+	 */
+	public static final String DEFAULT_STORE_DIRECTORY = ".libstore";
+
+	/**
+	 * Hashes already computed, by source file path, size and last modified
+	 * time.
+	 */
+	private static final Map<String, String> hashes = new ConcurrentHashMap<String, String>();
+
+	private final File directory;
+
+	/**
+	 * @param directory
+	 *            the store directory, made if it doesn't exist
+	 */
+	public LibraryStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Put a library in the lib directory of a module, storing it first if its
+	 * content is not in the store yet.
+	 *
+	 * @param source
+	 *            the library, not null
+	 * @param target
+	 *            the file in the lib directory, replaced if it exists
+	 * @return the number of bytes written: the library size when it was
+	 *         stored or copied, zero when it was only linked
+	 * @throws IOException
+	 *             if any
+	 */
+	public long install(File source, File target) throws IOException {
+		if (!source.exists()) {
+			throw new IOException("File " + source + " does not exist");
+		}
+
+		long written = 0;
+		File stored = new File(directory, getHash(source));
+		if (!stored.exists()) {
+			written = store(source, stored);
+		}
+
+		Path link = target.toPath();
+		Files.deleteIfExists(link);
+		try {
+			Files.createLink(link, stored.toPath());
+			return written;
+		} catch (IOException e) {
+			// another file system or hard links not supported
+		} catch (UnsupportedOperationException e) {
+			// hard links not supported
+		}
+		try {
+			Files.createSymbolicLink(link, link.getParent().relativize(stored.getAbsoluteFile().toPath()));
+			return written;
+		} catch (IOException e) {
+			// symbolic links not supported
+		} catch (UnsupportedOperationException e) {
+			// symbolic links not supported
+		}
+		return written + ParallelFileCopier.copyFile(stored, target);
+	}
+
+	/**
+	 * @return the store directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Copy a library to the store. The copy is made aside and then moved, so
+	 * a module storing the same library at the same time finds it complete or
+	 * not at all.
+	 */
+	private long store(File source, File stored) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Unable to create directory: " + directory.getAbsolutePath());
+		}
+
+		File temp = File.createTempFile(stored.getName(), ".tmp", directory);
+		try {
+			long size = ParallelFileCopier.copyFile(source, temp);
+			try {
+				Files.move(temp.toPath(), stored.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (FileAlreadyExistsException e) {
+				// stored by another module meanwhile
+				return 0;
+			}
+			return size;
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private static String getHash(File file) throws IOException {
+		String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+		String hash = hashes.get(key);
+		if (hash == null) {
+			hash = sha1(file);
+			hashes.put(key, hash);
+		}
+		return hash;
+	}
+
+	private static String sha1(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Exception occured: " + e.getMessage());
+		}
+
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, n);
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+
+		StringBuffer hex = new StringBuffer();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
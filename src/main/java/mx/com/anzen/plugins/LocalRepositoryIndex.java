@@ -0,0 +1,514 @@
+package mx.com.anzen.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Index of the artifact files of a local repository: for every directory, its
+ * last modified time, its sub directories and the artifact files it holds
+ * with their size and last modified time. An artifact found in the index is
+ * in the repository, without asking the resolver.
+ * <p>
+ * The index is kept in {@link #DEFAULT_INDEX_FILENAME} at the repository root
+ * and read through a memory-mapped buffer: the directories are sorted by path,
+ * so a lookup is a binary search in the file. When the index is refreshed,
+ * only the directories whose last modified time changed are listed again; a
+ * file replaced in place is caught when it is looked up, by its size and last
+ * modified time. The symbolic links of the repository are not followed.
+ */
+public class LocalRepositoryIndex {
+
+	/**
+	 * Name of the index file, at the local repository root.
+	 */
+	public static final String DEFAULT_INDEX_FILENAME = ".anzen-index";
+
+	private static final int MAGIC = 0x414e5a49;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * Size of the magic number, version and directory count.
+	 */
+	private static final int HEADER_SIZE = 12;
+
+	/**
+	 * Indexes already loaded, by repository directory.
+	 */
+	private static final Map<File, LocalRepositoryIndex> indexes = new ConcurrentHashMap<File, LocalRepositoryIndex>();
+
+	private static final Comparator<Directory> PATH_ORDER = new Comparator<Directory>() {
+		public int compare(Directory directory1, Directory directory2) {
+			return compareBytes(directory1.pathBytes, directory2.pathBytes);
+		}
+	};
+
+	private final File repository;
+
+	/**
+	 * The index file content, null while there is no index.
+	 */
+	private volatile ByteBuffer buffer;
+
+	private int directoryCount;
+
+	private int listedCount;
+
+	private int changedCount;
+
+	private LocalRepositoryIndex(File repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Return the index of the given local repository, loading and refreshing
+	 * it the first time.
+	 *
+	 * @param repository
+	 *            the local repository directory, not null
+	 * @return the index
+	 * @throws IOException
+	 *             if the index couldn't be read or written
+	 */
+	public static LocalRepositoryIndex getInstance(File repository) throws IOException {
+		File key = repository.getAbsoluteFile();
+		synchronized (indexes) {
+			LocalRepositoryIndex index = indexes.get(key);
+			if (index == null) {
+				index = new LocalRepositoryIndex(key);
+				index.map();
+				index.refresh();
+				indexes.put(key, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Find an artifact file in the repository.
+	 *
+	 * @param groupId
+	 *            not null
+	 * @param artifactId
+	 *            not null
+	 * @param version
+	 *            not null
+	 * @param type
+	 *            the file extension, not null
+	 * @return the artifact file, null if the index doesn't have it or the file
+	 *         changed since it was indexed
+	 */
+	public File find(String groupId, String artifactId, String version, String type) {
+		ByteBuffer content = buffer;
+		if (content == null) {
+			return null;
+		}
+
+		String path = groupId.replace('.', '/') + "/" + artifactId + "/" + version;
+		String name = artifactId + "-" + version + "." + type;
+		int record = search(content, toBytes(path));
+		if (record < 0) {
+			return null;
+		}
+
+		byte[] nameBytes = toBytes(name);
+		int position = record;
+		position += 2 + (content.getShort(position) & 0xffff) + 8;
+		int subdirectories = content.getInt(position);
+		position += 4;
+		for (int i = 0; i < subdirectories; i++) {
+			position += 2 + (content.getShort(position) & 0xffff);
+		}
+		int files = content.getInt(position);
+		position += 4;
+		for (int i = 0; i < files; i++) {
+			int length = content.getShort(position) & 0xffff;
+			boolean found = compareBytes(content, position + 2, length, nameBytes) == 0;
+			position += 2 + length;
+			if (found) {
+				long size = content.getLong(position);
+				long lastModified = content.getLong(position + 8);
+				File file = new File(new File(repository, path), name);
+				if (file.length() == size && file.lastModified() == lastModified) {
+					return file;
+				}
+				return null;
+			}
+			position += 16;
+		}
+		return null;
+	}
+
+	/**
+	 * List again the directories changed since the index was written, and
+	 * write the index if any did.
+	 *
+	 * @throws IOException
+	 *             if the index couldn't be written
+	 */
+	public synchronized void refresh() throws IOException {
+		Map<String, Directory> previous = readDirectories();
+		List<Directory> directories = new ArrayList<Directory>(previous.size());
+		listedCount = 0;
+		changedCount = 0;
+		scan(previous, directories);
+		directoryCount = directories.size();
+
+		if (changedCount > 0 || directories.size() != previous.size()) {
+			write(directories);
+			map();
+		}
+	}
+
+	/**
+	 * @return the number of directories in the index
+	 */
+	public int getDirectoryCount() {
+		return directoryCount;
+	}
+
+	/**
+	 * @return the number of directories listed by the last refresh, because
+	 *         they were new or their last modified time changed
+	 */
+	public int getListedCount() {
+		return listedCount;
+	}
+
+	/**
+	 * @return the number of directories whose content changed at the last
+	 *         refresh
+	 */
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+	/**
+	 * Walk the directories of the repository, one status read each, listing
+	 * only the ones new or changed. The symbolic links are not followed, so a
+	 * link looping back into the repository is not walked forever.
+	 */
+	private void scan(Map<String, Directory> previous, List<Directory> directories) throws IOException {
+		Deque<String> paths = new ArrayDeque<String>();
+		Deque<BasicFileAttributes> attributes = new ArrayDeque<BasicFileAttributes>();
+		paths.push("");
+		attributes.push(Files.readAttributes(repository.toPath(), BasicFileAttributes.class));
+
+		while (!paths.isEmpty()) {
+			String path = paths.pop();
+			long lastModified = attributes.pop().lastModifiedTime().toMillis();
+			File dir = path.length() == 0 ? repository : new File(repository, path);
+
+			// the sub directories just listed are not read again
+			Map<String, BasicFileAttributes> listedAttributes = Collections.emptyMap();
+			Directory directory = previous.get(path);
+			if (directory == null || directory.lastModified != lastModified) {
+				listedAttributes = new HashMap<String, BasicFileAttributes>();
+				Directory listed = list(path, dir, lastModified, listedAttributes);
+				listedCount++;
+				// writing the index changes the repository directory only
+				if (directory == null || !listed.hasSameContent(directory)) {
+					changedCount++;
+				}
+				directory = listed;
+			}
+			directories.add(directory);
+
+			for (String subdirectory : directory.subdirectories) {
+				BasicFileAttributes attrs = listedAttributes.get(subdirectory);
+				if (attrs == null) {
+					attrs = readDirectoryAttributes(new File(dir, subdirectory));
+				}
+				if (attrs != null) {
+					paths.push(path.length() == 0 ? subdirectory : path + "/" + subdirectory);
+					attributes.push(attrs);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the attributes of the file if it is a directory, not a link to
+	 *         one, else null
+	 */
+	private static BasicFileAttributes readDirectoryAttributes(File file) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			return attrs.isDirectory() ? attrs : null;
+		} catch (IOException e) {
+			// gone since it was listed
+			return null;
+		}
+	}
+
+	private static Directory list(String path, File dir, long lastModified, Map<String, BasicFileAttributes> subdirectoryAttributes) {
+		Directory directory = new Directory(path, lastModified);
+		File[] children = dir.listFiles();
+		if (children == null) {
+			return directory;
+		}
+
+		// an artifact file is named after the artifact and version directories
+		String prefix = null;
+		int version = path.lastIndexOf('/');
+		if (version > 0) {
+			int artifact = path.lastIndexOf('/', version - 1);
+			prefix = path.substring(artifact + 1, version) + "-";
+		}
+
+		for (File child : children) {
+			String name = child.getName();
+			BasicFileAttributes attrs = readDirectoryAttributes(child);
+			if (attrs != null) {
+				directory.subdirectories.add(name);
+				subdirectoryAttributes.put(name, attrs);
+			} else if (prefix != null && name.startsWith(prefix) && !name.endsWith(".sha1") && !name.endsWith(".md5") && !name.endsWith(".asc") && !name.endsWith(".lastUpdated")) {
+				directory.files.add(new FileEntry(name, child.length(), child.lastModified()));
+			}
+		}
+		Collections.sort(directory.subdirectories);
+		Collections.sort(directory.files, new Comparator<FileEntry>() {
+			public int compare(FileEntry file1, FileEntry file2) {
+				return file1.name.compareTo(file2.name);
+			}
+		});
+		return directory;
+	}
+
+	private void map() throws IOException {
+		File file = new File(repository, DEFAULT_INDEX_FILENAME);
+		if (!file.isFile()) {
+			buffer = null;
+			return;
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			ByteBuffer content = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			if (content.limit() < HEADER_SIZE || content.getInt(0) != MAGIC || content.getInt(4) != VERSION) {
+				// written by another version: indexed again
+				buffer = null;
+				return;
+			}
+			buffer = content;
+			directoryCount = content.getInt(8);
+		} finally {
+			// the mapping stays valid once the file is closed
+			raf.close();
+		}
+	}
+
+	private Map<String, Directory> readDirectories() {
+		Map<String, Directory> directories = new HashMap<String, Directory>();
+		ByteBuffer content = buffer;
+		if (content == null) {
+			return directories;
+		}
+
+		int count = content.getInt(8);
+		for (int i = 0; i < count; i++) {
+			int position = content.getInt(HEADER_SIZE + 4 * i);
+			String path = readString(content, position);
+			position += 2 + (content.getShort(position) & 0xffff);
+			Directory directory = new Directory(path, content.getLong(position));
+			position += 8;
+
+			int subdirectories = content.getInt(position);
+			position += 4;
+			for (int j = 0; j < subdirectories; j++) {
+				directory.subdirectories.add(readString(content, position));
+				position += 2 + (content.getShort(position) & 0xffff);
+			}
+
+			int files = content.getInt(position);
+			position += 4;
+			for (int j = 0; j < files; j++) {
+				String name = readString(content, position);
+				position += 2 + (content.getShort(position) & 0xffff);
+				directory.files.add(new FileEntry(name, content.getLong(position), content.getLong(position + 8)));
+				position += 16;
+			}
+			directories.put(path, directory);
+		}
+		return directories;
+	}
+
+	private void write(List<Directory> directories) throws IOException {
+		Collections.sort(directories, PATH_ORDER);
+
+		List<byte[]> records = new ArrayList<byte[]>(directories.size());
+		for (Directory directory : directories) {
+			ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(record);
+			writeBytes(out, directory.pathBytes);
+			out.writeLong(directory.lastModified);
+			out.writeInt(directory.subdirectories.size());
+			for (String subdirectory : directory.subdirectories) {
+				writeBytes(out, toBytes(subdirectory));
+			}
+			out.writeInt(directory.files.size());
+			for (FileEntry file : directory.files) {
+				writeBytes(out, toBytes(file.name));
+				out.writeLong(file.size);
+				out.writeLong(file.lastModified);
+			}
+			out.flush();
+			records.add(record.toByteArray());
+		}
+
+		File temp = File.createTempFile(DEFAULT_INDEX_FILENAME, ".tmp", repository);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(records.size());
+			int position = HEADER_SIZE + 4 * records.size();
+			for (byte[] record : records) {
+				out.writeInt(position);
+				position += record.length;
+			}
+			for (byte[] record : records) {
+				out.write(record);
+			}
+		} finally {
+			IOUtil.close(out);
+		}
+		Files.move(temp.toPath(), new File(repository, DEFAULT_INDEX_FILENAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the position of the record of the directory, -1 if it isn't in
+	 *         the index
+	 */
+	private static int search(ByteBuffer content, byte[] path) {
+		int low = 0;
+		int high = content.getInt(8) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int position = content.getInt(HEADER_SIZE + 4 * middle);
+			int order = compareBytes(content, position + 2, content.getShort(position) & 0xffff, path);
+			if (order < 0) {
+				low = middle + 1;
+			} else if (order > 0) {
+				high = middle - 1;
+			} else {
+				return position;
+			}
+		}
+		return -1;
+	}
+
+	private static int compareBytes(ByteBuffer content, int position, int length, byte[] bytes) {
+		int common = Math.min(length, bytes.length);
+		for (int i = 0; i < common; i++) {
+			int order = (content.get(position + i) & 0xff) - (bytes[i] & 0xff);
+			if (order != 0) {
+				return order;
+			}
+		}
+		return length - bytes.length;
+	}
+
+	private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+		return compareBytes(ByteBuffer.wrap(bytes1), 0, bytes1.length, bytes2);
+	}
+
+	private static String readString(ByteBuffer content, int position) {
+		byte[] bytes = new byte[content.getShort(position) & 0xffff];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = content.get(position + 2 + i);
+		}
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] toBytes(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * A directory of the repository.
+	 */
+	private static class Directory {
+
+		private final byte[] pathBytes;
+
+		private final long lastModified;
+
+		private final List<String> subdirectories = new ArrayList<String>();
+
+		private final List<FileEntry> files = new ArrayList<FileEntry>();
+
+		Directory(String path, long lastModified) {
+			this.pathBytes = toBytes(path);
+			this.lastModified = lastModified;
+		}
+
+		boolean hasSameContent(Directory other) {
+			if (!subdirectories.equals(other.subdirectories) || files.size() != other.files.size()) {
+				return false;
+			}
+			for (int i = 0; i < files.size(); i++) {
+				FileEntry file = files.get(i);
+				FileEntry otherFile = other.files.get(i);
+				if (!file.name.equals(otherFile.name) || file.size != otherFile.size || file.lastModified != otherFile.lastModified) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * An artifact file of a directory.
+	 */
+	private static class FileEntry {
+
+		private final String name;
+
+		private final long size;
+
+		private final long lastModified;
+
+		FileEntry(String name, long size, long lastModified) {
+			this.name = name;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * SHA-1 of everything the Ant files of a module are generated from. The
+ * fingerprint of the last generation is kept beside the <code>build.xml</code>,
+ * in {@link #DEFAULT_FINGERPRINT_FILENAME}: when it matches, the module doesn't
+ * have to be generated again.
+ */
+public class ModuleFingerprint {
+
+	/**
+	 * Name of the file keeping the fingerprint, beside the
+	 * <code>build.xml</code>.
+	 */
+	public static final String DEFAULT_FINGERPRINT_FILENAME = "build.fingerprint";
+
+	private static final String POM_PROPERTIES = "/META-INF/maven/mx.com.anzen.plugins/anzen-maven-plugin/pom.properties";
+
+	/**
+	 * The plugin version and, for a plugin jar, its last modified time so a
+	 * SNAPSHOT plugin built again changes the fingerprints too.
+	 */
+	private static String pluginVersion;
+
+	private final MessageDigest digest;
+
+	public ModuleFingerprint() {
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+		add("plugin", getPluginVersion());
+	}
+
+	/**
+	 * Add a value to the fingerprint.
+	 *
+	 * @param name
+	 *            the input name, not null
+	 * @param value
+	 *            could be null
+	 * @return this fingerprint
+	 */
+	public ModuleFingerprint add(String name, Object value) {
+		update(name);
+		update("=");
+		update(String.valueOf(value));
+		update("\n");
+		return this;
+	}
+
+	/**
+	 * Add a model, as written in a <code>pom.xml</code>.
+	 *
+	 * @param name
+	 *            the input name, not null
+	 * @param model
+	 *            could be null
+	 * @return this fingerprint
+	 * @throws IOException
+	 *             if the model couldn't be written
+	 */
+	public ModuleFingerprint addModel(String name, Model model) throws IOException {
+		if (model == null) {
+			return add(name, null);
+		}
+
+		StringWriter pom = new StringWriter();
+		new MavenXpp3Writer().write(pom, model);
+		return add(name, pom);
+	}
+
+	/**
+	 * @return the fingerprint, in hexadecimal
+	 */
+	public String getValue() {
+		StringBuffer hex = new StringBuffer();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * @param file
+	 *            not null
+	 * @return the fingerprint kept in the file, null if the file doesn't exist
+	 * @throws IOException
+	 *             if any
+	 */
+	public static String read(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		InputStream in = new FileInputStream(file);
+		try {
+			return IOUtil.toString(in, "UTF-8").trim();
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	/**
+	 * @param file
+	 *            not null
+	 * @param value
+	 *            the fingerprint, not null
+	 * @throws IOException
+	 *             if any
+	 */
+	public static void write(File file, String value) throws IOException {
+		AntBuildWriterUtil.writeIfChanged(file, (value + "\n").getBytes("UTF-8"));
+	}
+
+	private void update(String text) {
+		try {
+			digest.update(text.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private static synchronized String getPluginVersion() {
+		if (pluginVersion != null) {
+			return pluginVersion;
+		}
+
+		String version = "unknown";
+		InputStream in = ModuleFingerprint.class.getResourceAsStream(POM_PROPERTIES);
+		if (in != null) {
+			try {
+				Properties properties = new Properties();
+				properties.load(in);
+				version = properties.getProperty("version", version);
+			} catch (IOException e) {
+				// only the version is missing
+			} finally {
+				IOUtil.close(in);
+			}
+		}
+
+		CodeSource codeSource = ModuleFingerprint.class.getProtectionDomain().getCodeSource();
+		if (codeSource != null) {
+			URL location = codeSource.getLocation();
+			if (location != null && "file".equals(location.getProtocol())) {
+				version += ":" + new File(location.getPath()).lastModified();
+			}
+		}
+
+		pluginVersion = version;
+		return pluginVersion;
+	}
+}
@@ -0,0 +1,259 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Copies files on a bounded number of workers. Every file is transferred with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * so the bytes don't go through the Java heap, and keeps the last modified
+ * time of its source.
+ */
+public class ParallelFileCopier {
+
+	private final int workers;
+
+	private LibraryStore store;
+
+	private CopyManifest manifest;
+
+	private String owner;
+
+	private final AtomicLong skipped = new AtomicLong();
+
+	/**
+	 * The targets copied or found up to date.
+	 */
+	private final Set<File> targets = Collections.synchronizedSet(new HashSet<File>());
+
+	private final AtomicLong files = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	/**
+	 * @param workers
+	 *            the maximum number of files copied at the same time, zero or
+	 *            less means one
+	 */
+	public ParallelFileCopier(int workers) {
+		this.workers = Math.max(1, workers);
+	}
+
+	/**
+	 * Install the files through a library store instead of copying them.
+	 *
+	 * @param store
+	 *            could be null to copy the files
+	 * @see LibraryStore#install(File, File)
+	 */
+	public void setLibraryStore(LibraryStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Skip the files the manifest finds up to date, and record the others.
+	 *
+	 * @param manifest
+	 *            could be null to copy every file
+	 * @param owner
+	 *            who the copies are recorded for
+	 */
+	public void setManifest(CopyManifest manifest, String owner) {
+		this.manifest = manifest;
+		this.owner = owner;
+	}
+
+	/**
+	 * Copy files to a directory, keeping their names. When several files have
+	 * the same name, the last one wins.
+	 *
+	 * @param sources
+	 *            the files to copy, not null
+	 * @param directory
+	 *            the target directory, made if it doesn't exist
+	 * @throws IOException
+	 *             if any file couldn't be copied
+	 */
+	public void copyToDirectory(List<File> sources, File directory) throws IOException {
+		if (sources.isEmpty()) {
+			return;
+		}
+
+		Map<File, File> targets = new LinkedHashMap<File, File>();
+		for (File source : sources) {
+			targets.put(new File(directory, source.getName()), source);
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create directory: " + directory.getAbsolutePath());
+		}
+
+		copy(targets);
+	}
+
+	/**
+	 * Copy files.
+	 *
+	 * @param targets
+	 *            the source file by target file, not null. The parent
+	 *            directories of the targets must exist.
+	 * @throws IOException
+	 *             if any file couldn't be copied
+	 */
+	public void copy(Map<File, File> targets) throws IOException {
+		if (targets.isEmpty()) {
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, targets.size()));
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (final Map.Entry<File, File> entry : targets.entrySet()) {
+				results.add(executor.submit(new Callable<Long>() {
+					public Long call() throws IOException {
+						return Long.valueOf(copyOrSkip(entry.getValue(), entry.getKey()));
+					}
+				}));
+			}
+
+			for (Future<Long> result : results) {
+				try {
+					long size = result.get().longValue();
+					if (size >= 0) {
+						bytes.addAndGet(size);
+						files.incrementAndGet();
+					}
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException("Exception occured: " + e.getCause().getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Exception occured: " + e.getMessage());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long copyOrSkip(File source, File target) throws IOException {
+		if (manifest != null && manifest.isUpToDate(source, target)) {
+			targets.add(target);
+			skipped.incrementAndGet();
+			return -1;
+		}
+
+		long size = (store != null) ? store.install(source, target) : copyFile(source, target);
+		if (manifest != null) {
+			manifest.record(owner, source, target);
+		}
+		targets.add(target);
+		return size;
+	}
+
+	/**
+	 * Copy a file with {@link FileChannel#transferTo}, keeping its last
+	 * modified time. The copy is written to a temporary file next to the
+	 * target then moved in its place, so a target which is a link, to a
+	 * {@link LibraryStore} for instance, is replaced and not written through.
+	 *
+	 * @param source
+	 *            not null
+	 * @param target
+	 *            not null, replaced if it exists. Nothing is copied if it is
+	 *            the source itself.
+	 * @return the number of bytes copied
+	 * @throws IOException
+	 *             if any
+	 */
+	public static long copyFile(File source, File target) throws IOException {
+		if (!source.exists()) {
+			throw new IOException("File " + source + " does not exist");
+		}
+		if (source.getCanonicalPath().equals(target.getCanonicalPath())) {
+			return 0;
+		}
+
+		// one per thread, made with the default permissions of a new file
+		File temp = new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		FileInputStream in = null;
+		FileOutputStream out = null;
+		long size;
+		boolean moved = false;
+		try {
+			in = new FileInputStream(source);
+			out = new FileOutputStream(temp);
+			FileChannel inChannel = in.getChannel();
+			FileChannel outChannel = out.getChannel();
+
+			size = inChannel.size();
+			long position = 0;
+			while (position < size) {
+				position += inChannel.transferTo(position, size - position, outChannel);
+			}
+			out.close();
+
+			temp.setLastModified(source.lastModified());
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			IOUtil.close(out);
+			IOUtil.close(in);
+			if (!moved) {
+				temp.delete();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of files skipped so far because they were up to date
+	 */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return the targets copied or found up to date so far
+	 */
+	public Set<File> getTargets() {
+		return targets;
+	}
+
+	/**
+	 * @return the number of files copied so far
+	 */
+	public long getFileCount() {
+		return files.get();
+	}
+
+	/**
+	 * @return the number of bytes copied so far, not counting the files only
+	 *         linked to a library store
+	 */
+	public long getByteCount() {
+		return bytes.get();
+	}
+}
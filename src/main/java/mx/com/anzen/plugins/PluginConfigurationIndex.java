@@ -0,0 +1,355 @@
+package mx.com.anzen.plugins;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.model.BuildBase;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.ModelBase;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.ReportPlugin;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+/**
+ * Index of the out-of-box Maven plugin configurations of a project. The
+ * <code>&lt;configuration/&gt;</code> of every reporting plugin, build plugin
+ * and managed plugin is kept as a {@link Xpp3Dom} tree by plugin
+ * <code>artifactId</code>, in the same order the configurations are looked up.
+ * The options already evaluated are kept too, so a second lookup of the same
+ * option doesn't evaluate the configuration again.
+ * <p>
+ * The plugins a module inherits without configuring them itself share their
+ * {@link PluginConfigurations} with the index of the parent, so the options
+ * evaluated once for the parent are not evaluated again for every module. The
+ * plugins a module configures itself get the configuration of its own model
+ * merged onto the trees of the parent, as Maven merges them. Both only when
+ * no configuration on the way holds an expression, which Maven interpolates
+ * for each module. See {@link ReactorPluginConfigurationCache}.
+ */
+public class PluginConfigurationIndex {
+
+	private static final int REPORTING = 0;
+
+	private static final int BUILD = 1;
+
+	private static final int MANAGEMENT = 2;
+
+	private static final int SECTIONS = 3;
+
+	private static final PluginConfigurations NONE = new PluginConfigurations(Collections.<Xpp3Dom> emptyList());
+
+	/**
+	 * Configurations by plugin <code>artifactId</code>.
+	 */
+	private final Map<String, PluginConfigurations> plugins = new HashMap<String, PluginConfigurations>();
+
+	/**
+	 * Configuration trees by plugin <code>artifactId</code>: reporting
+	 * plugin, build plugin and managed plugin, null when not configured.
+	 */
+	private final Map<String, Xpp3Dom[]> sections = new HashMap<String, Xpp3Dom[]>();
+
+	/**
+	 * The <code>artifactId</code> of the plugins whose trees hold no
+	 * interpolated value, so they are the same for every module.
+	 */
+	private final Set<String> literal = new HashSet<String>();
+
+	/**
+	 * Number of plugins sharing their configurations with the parent index.
+	 */
+	private int inherited;
+
+	/**
+	 * Number of plugins whose configuration is merged onto the parent trees.
+	 */
+	private int merged;
+
+	private PluginConfigurationIndex() {
+	}
+
+	/**
+	 * Return the index for the given project, building it the first time.
+	 *
+	 * @param project
+	 *            not null
+	 * @return the index of the plugin configurations of the project
+	 * @throws IOException
+	 *             if any configuration couldn't be read
+	 */
+	public static PluginConfigurationIndex getInstance(MavenProject project) throws IOException {
+		return ReactorPluginConfigurationCache.getInstance().getIndex(project);
+	}
+
+	/**
+	 * Build the index of a project.
+	 *
+	 * @param project
+	 *            not null
+	 * @param parent
+	 *            the index of the parent project, could be null
+	 * @return the index of the plugin configurations of the project
+	 * @throws IOException
+	 *             if any configuration couldn't be read
+	 */
+	static PluginConfigurationIndex build(MavenProject project, PluginConfigurationIndex parent) throws IOException {
+		Map<String, Xpp3Dom[]> effective = getSections(project.getModel());
+
+		// the configurations the project declares itself
+		Model original = project.getOriginalModel();
+		Map<String, Xpp3Dom[]> own = null;
+		Set<String> inProfiles = null;
+		if (original != null) {
+			own = getSections(original);
+			inProfiles = new HashSet<String>();
+			for (Object obj : original.getProfiles()) {
+				Profile profile = (Profile) obj;
+				addDeclaredPlugins(inProfiles, profile, profile.getBuild());
+			}
+		}
+
+		PluginConfigurationIndex index = new PluginConfigurationIndex();
+		for (Map.Entry<String, Xpp3Dom[]> entry : effective.entrySet()) {
+			String artifactId = entry.getKey();
+			Xpp3Dom[] trees = entry.getValue();
+			Xpp3Dom[] ownTrees = (own != null) ? own.get(artifactId) : null;
+
+			// a profile could configure it, and an expression is
+			// interpolated for each module
+			boolean isLiteral = own != null && !inProfiles.contains(artifactId) && !hasExpression(ownTrees) && (parent == null || parent.isLiteral(artifactId));
+			PluginConfigurations plugin = null;
+			if (isLiteral && parent != null) {
+				Xpp3Dom[] parentTrees = parent.sections.get(artifactId);
+				if (ownTrees == null && parentTrees != null && isSameSections(trees, parentTrees)) {
+					plugin = parent.plugins.get(artifactId);
+					trees = parentTrees;
+					index.inherited++;
+				} else if (parentTrees != null) {
+					trees = merge(trees, ownTrees, parentTrees);
+					index.merged++;
+				}
+			}
+			if (plugin == null) {
+				plugin = new PluginConfigurations(toList(trees));
+			}
+
+			index.plugins.put(artifactId, plugin);
+			index.sections.put(artifactId, trees);
+			if (isLiteral) {
+				index.literal.add(artifactId);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Merge the configurations of a project onto the trees of its parent, the
+	 * ones of the project winning, for the sections the project has.
+	 */
+	private static Xpp3Dom[] merge(Xpp3Dom[] effective, Xpp3Dom[] own, Xpp3Dom[] parent) {
+		Xpp3Dom[] trees = new Xpp3Dom[SECTIONS];
+		for (int i = 0; i < SECTIONS; i++) {
+			if (effective[i] == null) {
+				continue;
+			}
+			Xpp3Dom ownTree = (own != null) ? own[i] : null;
+			if (ownTree != null && parent[i] != null) {
+				// the parent tree is left as is
+				trees[i] = Xpp3Dom.mergeXpp3Dom(new Xpp3Dom(ownTree), parent[i]);
+			} else if (ownTree != null) {
+				trees[i] = ownTree;
+			} else if (parent[i] != null) {
+				trees[i] = parent[i];
+			} else {
+				// from the managed plugin
+				trees[i] = effective[i];
+			}
+		}
+		return trees;
+	}
+
+	private static boolean isSameSections(Xpp3Dom[] trees, Xpp3Dom[] parentTrees) {
+		for (int i = 0; i < SECTIONS; i++) {
+			if ((trees[i] == null) != (parentTrees[i] == null)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasExpression(Xpp3Dom[] trees) {
+		if (trees != null) {
+			for (Xpp3Dom tree : trees) {
+				if (tree != null && tree.toString().indexOf("${") >= 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static List<Xpp3Dom> toList(Xpp3Dom[] trees) {
+		List<Xpp3Dom> list = new ArrayList<Xpp3Dom>(SECTIONS);
+		for (Xpp3Dom tree : trees) {
+			if (tree != null) {
+				list.add(tree);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * @return true if the trees of the plugin hold no interpolated value, or
+	 *         the plugin is not configured
+	 */
+	private boolean isLiteral(String artifactId) {
+		return !sections.containsKey(artifactId) || literal.contains(artifactId);
+	}
+
+	/**
+	 * Return the configurations of the given plugin.
+	 *
+	 * @param pluginArtifactId
+	 *            not null
+	 * @return the configurations, without trees if the plugin is not
+	 *         configured
+	 */
+	public PluginConfigurations getPlugin(String pluginArtifactId) {
+		PluginConfigurations plugin = plugins.get(pluginArtifactId);
+		return (plugin != null) ? plugin : NONE;
+	}
+
+	/**
+	 * Return the configuration trees of the given plugin, in lookup order:
+	 * reporting plugins, build plugins and then managed plugins.
+	 *
+	 * @param pluginArtifactId
+	 *            not null
+	 * @return not null list
+	 */
+	public List<Xpp3Dom> getConfigurations(String pluginArtifactId) {
+		return getPlugin(pluginArtifactId).getConfigurations();
+	}
+
+	/**
+	 * Return the values of an option mapping table for the given plugin,
+	 * evaluating the table the first time.
+	 *
+	 * @param pluginArtifactId
+	 *            not null
+	 * @param mappings
+	 *            the option mapping table, not null
+	 * @return the value of each option by Maven option
+	 * @see PluginOptionMapper#map(List, PluginOptionMapping[])
+	 */
+	public Map<String, String> getMappedOptions(String pluginArtifactId, PluginOptionMapping[] mappings) {
+		return getPlugin(pluginArtifactId).getMappedOptions(mappings);
+	}
+
+	/**
+	 * @return the number of plugins sharing their configurations with the
+	 *         parent index
+	 */
+	public int getInheritedCount() {
+		return inherited;
+	}
+
+	/**
+	 * @return the number of plugins whose configuration is merged onto the
+	 *         trees of the parent index
+	 */
+	public int getMergedCount() {
+		return merged;
+	}
+
+	/**
+	 * @return the number of plugins configured
+	 */
+	public int getPluginCount() {
+		return plugins.size();
+	}
+
+	/**
+	 * Return the configuration trees of the out-of-box plugins of a model,
+	 * without its profiles.
+	 */
+	private static Map<String, Xpp3Dom[]> getSections(Model model) throws IOException {
+		Map<String, Xpp3Dom[]> configurations = new HashMap<String, Xpp3Dom[]>();
+
+		if (model.getReporting() != null) {
+			for (Object obj : model.getReporting().getPlugins()) {
+				ReportPlugin reportPlugin = (ReportPlugin) obj;
+				add(configurations, REPORTING, reportPlugin.getGroupId(), reportPlugin.getArtifactId(), reportPlugin.getConfiguration());
+			}
+		}
+
+		if (model.getBuild() != null) {
+			for (Object obj : model.getBuild().getPlugins()) {
+				Plugin plugin = (Plugin) obj;
+				add(configurations, BUILD, plugin.getGroupId(), plugin.getArtifactId(), plugin.getConfiguration());
+			}
+
+			if (model.getBuild().getPluginManagement() != null) {
+				for (Object obj : model.getBuild().getPluginManagement().getPlugins()) {
+					Plugin plugin = (Plugin) obj;
+					add(configurations, MANAGEMENT, plugin.getGroupId(), plugin.getArtifactId(), plugin.getConfiguration());
+				}
+			}
+		}
+		return configurations;
+	}
+
+	private static void addDeclaredPlugins(Set<String> declared, ModelBase model, BuildBase build) {
+		if (model.getReporting() != null) {
+			for (Object obj : model.getReporting().getPlugins()) {
+				declared.add(((ReportPlugin) obj).getArtifactId());
+			}
+		}
+		if (build != null) {
+			for (Object obj : build.getPlugins()) {
+				declared.add(((Plugin) obj).getArtifactId());
+			}
+			if (build.getPluginManagement() != null) {
+				for (Object obj : build.getPluginManagement().getPlugins()) {
+					declared.add(((Plugin) obj).getArtifactId());
+				}
+			}
+		}
+	}
+
+	private static void add(Map<String, Xpp3Dom[]> configurations, int section, String groupId, String artifactId, Object pluginConf) throws IOException {
+		// using out-of-box Maven plugins
+		if (!"org.apache.maven.plugins".equals(groupId) || pluginConf == null) {
+			return;
+		}
+
+		Xpp3Dom dom;
+		if (pluginConf instanceof Xpp3Dom) {
+			dom = (Xpp3Dom) pluginConf;
+		} else {
+			// configuration loaded by another class loader
+			try {
+				dom = Xpp3DomBuilder.build(new StringReader(pluginConf.toString()));
+			} catch (Exception e) {
+				throw new IOException("Exception occured: " + e.getMessage());
+			}
+		}
+
+		Xpp3Dom[] doms = configurations.get(artifactId);
+		if (doms == null) {
+			doms = new Xpp3Dom[SECTIONS];
+			configurations.put(artifactId, doms);
+		}
+		doms[section] = dom;
+	}
+}
@@ -0,0 +1,99 @@
+package mx.com.anzen.plugins;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * The configurations of one out-of-box Maven plugin, in lookup order, with
+ * the options already evaluated on them. An instance may be shared by the
+ * indexes of several projects of the reactor when they inherit the same
+ * configurations.
+ *
+ * @see PluginConfigurationIndex
+ */
+public class PluginConfigurations {
+
+	/**
+	 * Marks an option looked up but not found in any configuration.
+	 */
+	private static final Map<String, Object> NOT_FOUND = Collections.emptyMap();
+
+	private final List<Xpp3Dom> configurations;
+
+	/**
+	 * Options already evaluated, by option name.
+	 */
+	private final Map<String, Map<?, ?>> options = Collections.synchronizedMap(new HashMap<String, Map<?, ?>>());
+
+	/**
+	 * Option mapping tables already evaluated.
+	 */
+	private final Map<PluginOptionMapping[], Map<String, String>> mappedOptions = new IdentityHashMap<PluginOptionMapping[], Map<String, String>>();
+
+	/**
+	 * @param configurations
+	 *            the configuration trees in lookup order, not null
+	 */
+	public PluginConfigurations(List<Xpp3Dom> configurations) {
+		this.configurations = Collections.unmodifiableList(configurations);
+	}
+
+	/**
+	 * @return the configuration trees in lookup order
+	 */
+	public List<Xpp3Dom> getConfigurations() {
+		return configurations;
+	}
+
+	/**
+	 * @param optionName
+	 *            not null
+	 * @return the evaluated option, an empty map if the option was not found
+	 *         or null if the option has not been evaluated yet
+	 */
+	public Map<?, ?> getOption(String optionName) {
+		return options.get(optionName);
+	}
+
+	/**
+	 * @param optionName
+	 *            not null
+	 * @param option
+	 *            the evaluated option or null if it was not found
+	 */
+	public void putOption(String optionName, Map<?, ?> option) {
+		options.put(optionName, option != null ? option : NOT_FOUND);
+	}
+
+	/**
+	 * @param option
+	 *            an option returned by {@link #getOption(String)}
+	 * @return true if the option was evaluated but not found
+	 */
+	public static boolean isNotFound(Map<?, ?> option) {
+		return option == NOT_FOUND;
+	}
+
+	/**
+	 * @param mappings
+	 *            the option mapping table, not null
+	 * @return the value of each option by Maven option
+	 * @see PluginOptionMapper#map(List, PluginOptionMapping[])
+	 */
+	public Map<String, String> getMappedOptions(PluginOptionMapping[] mappings) {
+		synchronized (mappedOptions) {
+			Map<String, String> values = mappedOptions.get(mappings);
+			ProsaMetrics.count(ProsaMetrics.Phase.PLUGIN_CONFIGURATIONS, values != null ? 1 : 0, values != null ? 0 : 1);
+			if (values == null) {
+				values = PluginOptionMapper.map(configurations, mappings);
+				mappedOptions.put(mappings, values);
+			}
+			return values;
+		}
+	}
+}
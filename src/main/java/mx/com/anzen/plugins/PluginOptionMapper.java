@@ -0,0 +1,122 @@
+package mx.com.anzen.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.xml.XMLWriter;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Evaluates an option mapping table against the configurations of a plugin.
+ * Each configuration tree is walked once and every row of the table is
+ * resolved in that single traversal, instead of one lookup per option.
+ * <p>
+ * As with {@link AntBuildWriterUtil} lookups, the first configuration
+ * defining an option wins, and inside a configuration the first node in
+ * document order.
+ */
+public class PluginOptionMapper {
+
+	private PluginOptionMapper() {
+	}
+
+	/**
+	 * Evaluate the given table.
+	 *
+	 * @param configurations
+	 *            the plugin configurations in lookup order, not null
+	 * @param mappings
+	 *            the option mapping table, not null
+	 * @return the value of each option, by Maven option, or its default value
+	 *         if not found. Values could be null.
+	 */
+	public static Map<String, String> map(List<Xpp3Dom> configurations, PluginOptionMapping[] mappings) {
+		Map<String, List<PluginOptionMapping>> byName = new HashMap<String, List<PluginOptionMapping>>();
+		for (PluginOptionMapping mapping : mappings) {
+			String name = mapping.getPath().getLastName();
+			List<PluginOptionMapping> list = byName.get(name);
+			if (list == null) {
+				list = new ArrayList<PluginOptionMapping>();
+				byName.put(name, list);
+			}
+			list.add(mapping);
+		}
+
+		int options = countOptions(mappings);
+		Map<String, String> values = new HashMap<String, String>();
+		Set<String> resolved = new HashSet<String>();
+		for (Xpp3Dom configuration : configurations) {
+			if (resolved.size() == options) {
+				break;
+			}
+			walk(configuration, new String[8], 0, byName, values, resolved);
+		}
+
+		for (PluginOptionMapping mapping : mappings) {
+			if (!resolved.contains(mapping.getMavenOption())) {
+				values.put(mapping.getMavenOption(), mapping.getDefaultValue());
+			}
+		}
+		return Collections.unmodifiableMap(values);
+	}
+
+	/**
+	 * Write the Ant attribute of every row of the table which has one, in the
+	 * order of the table.
+	 *
+	 * @param writer
+	 *            not null
+	 * @param tag
+	 *            the Ant task name, for wrapping
+	 * @param mappings
+	 *            the option mapping table
+	 * @param values
+	 *            the values returned by {@link #map(List, PluginOptionMapping[])}
+	 */
+	public static void writeAttributes(XMLWriter writer, String tag, PluginOptionMapping[] mappings, Map<String, String> values) {
+		for (PluginOptionMapping mapping : mappings) {
+			if (StringUtils.isNotEmpty(mapping.getAntAttribute())) {
+				AntBuildWriterUtil.addWrapAttribute(writer, tag, mapping.getAntAttribute(), values.get(mapping.getMavenOption()), mapping.getIndent());
+			}
+		}
+	}
+
+	private static int countOptions(PluginOptionMapping[] mappings) {
+		Set<String> options = new HashSet<String>();
+		for (PluginOptionMapping mapping : mappings) {
+			options.add(mapping.getMavenOption());
+		}
+		return options.size();
+	}
+
+	private static void walk(Xpp3Dom node, String[] names, int depth, Map<String, List<PluginOptionMapping>> byName, Map<String, String> values, Set<String> resolved) {
+		Xpp3Dom[] children = node.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			Xpp3Dom child = children[i];
+			if (depth == names.length) {
+				String[] grown = new String[names.length * 2];
+				System.arraycopy(names, 0, grown, 0, names.length);
+				names = grown;
+			}
+			names[depth] = child.getName();
+
+			List<PluginOptionMapping> candidates = byName.get(child.getName());
+			if (candidates != null) {
+				for (PluginOptionMapping mapping : candidates) {
+					if (!resolved.contains(mapping.getMavenOption()) && mapping.getPath().matches(names, depth + 1)) {
+						resolved.add(mapping.getMavenOption());
+						values.put(mapping.getMavenOption(), child.getValue() != null ? child.getValue() : "");
+					}
+				}
+			}
+
+			walk(child, names, depth + 1, byName, values, resolved);
+		}
+	}
+}
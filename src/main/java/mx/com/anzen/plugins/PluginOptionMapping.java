@@ -0,0 +1,70 @@
+package mx.com.anzen.plugins;
+
+/**
+ * A row of an option mapping table: a Maven plugin option, the Ant attribute
+ * it is written to, its default value and the wrap indent of the attribute.
+ * A row without Ant attribute only reads the option value, for the options
+ * written as nested elements or used to decide what to write.
+ *
+ * @see PluginOptionMapper
+ */
+public class PluginOptionMapping {
+
+	private final String mavenOption;
+	private final String antAttribute;
+	private final String defaultValue;
+	private final int indent;
+	private final Xpp3DomPath path;
+
+	/**
+	 * @param mavenOption
+	 *            a {@link Xpp3DomPath} expression from the plugin
+	 *            <code>&lt;configuration/&gt;</code>
+	 * @param antAttribute
+	 *            the Ant attribute name, could be null
+	 * @param defaultValue
+	 *            could be null
+	 * @param indent
+	 *            the wrap indent of the attribute
+	 */
+	public PluginOptionMapping(String mavenOption, String antAttribute, String defaultValue, int indent) {
+		this.mavenOption = mavenOption;
+		this.antAttribute = antAttribute;
+		this.defaultValue = defaultValue;
+		this.indent = indent;
+		this.path = Xpp3DomPath.compile(mavenOption);
+	}
+
+	/**
+	 * A row which only reads the option value.
+	 *
+	 * @param mavenOption
+	 *            a {@link Xpp3DomPath} expression from the plugin
+	 *            <code>&lt;configuration/&gt;</code>
+	 * @param defaultValue
+	 *            could be null
+	 */
+	public PluginOptionMapping(String mavenOption, String defaultValue) {
+		this(mavenOption, null, defaultValue, -1);
+	}
+
+	public String getMavenOption() {
+		return mavenOption;
+	}
+
+	public String getAntAttribute() {
+		return antAttribute;
+	}
+
+	public String getDefaultValue() {
+		return defaultValue;
+	}
+
+	public int getIndent() {
+		return indent;
+	}
+
+	public Xpp3DomPath getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,81 @@
+package mx.com.anzen.plugins;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Property names by value, to find the property whose value is the longest
+ * prefix of a path in one walk of the path, whatever the number of
+ * properties.
+ */
+public class PropertyValueTrie {
+
+	private final Node root = new Node();
+
+	/**
+	 * Add a property. A value given again is kept for the last property.
+	 *
+	 * @param value
+	 *            not null, an empty value is ignored
+	 * @param name
+	 *            the property name, not null
+	 */
+	public void put(String value, String name) {
+		if (value.length() == 0) {
+			return;
+		}
+
+		Node node = root;
+		for (int i = 0; i < value.length(); i++) {
+			Character c = Character.valueOf(value.charAt(i));
+			Node child = node.children.get(c);
+			if (child == null) {
+				child = new Node();
+				node.children.put(c, child);
+			}
+			node = child;
+		}
+		node.name = name;
+	}
+
+	/**
+	 * @param text
+	 *            not null
+	 * @return the longest value <code>text</code> starts with, null if there
+	 *         is none
+	 */
+	public String getLongestPrefix(String text) {
+		int length = 0;
+		Node node = root;
+		for (int i = 0; i < text.length(); i++) {
+			node = node.children.get(Character.valueOf(text.charAt(i)));
+			if (node == null) {
+				break;
+			}
+			if (node.name != null) {
+				length = i + 1;
+			}
+		}
+		return length > 0 ? text.substring(0, length) : null;
+	}
+
+	/**
+	 * @param value
+	 *            not null
+	 * @return the name of the property with this value, null if there is none
+	 */
+	public String get(String value) {
+		Node node = root;
+		for (int i = 0; i < value.length() && node != null; i++) {
+			node = node.children.get(Character.valueOf(value.charAt(i)));
+		}
+		return node != null ? node.name : null;
+	}
+
+	private static class Node {
+
+		private final Map<Character, Node> children = new HashMap<Character, Node>(4);
+
+		private String name;
+	}
+}
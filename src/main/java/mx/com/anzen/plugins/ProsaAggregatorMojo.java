@@ -0,0 +1,217 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.artifact.InvalidDependencyVersionException;
+
+/**
+ * Goal which translates every project of the reactor to Ant projects at once.
+ * It runs only on the execution root: the file structure is made first, then
+ * the <code>build.xml</code> and <code>build.properties</code> of every module
+ * are written on a bounded thread pool. Each module writes to its own
+ * <code>configFiles/&lt;module&gt;</code> and lib directories.
+ *
+ * @goal aggregate
+ * @aggregator
+ * @requiresDependencyResolution test
+ */
+public class ProsaAggregatorMojo extends AbstractProsaMojo {
+
+	/**
+	 * Used for resolving the dependencies of the modules.
+	 *
+	 * @component
+	 */
+	protected ArtifactMetadataSource metadataSource;
+
+	/**
+	 * Number of modules written at the same time. Zero or less means the
+	 * number of available processors.
+	 *
+	 * @parameter property="threads" default-value="0"
+	 */
+	private int threads;
+
+	/**
+	 * Archive the Ant project is streamed to instead of its root directory: a
+	 * zip file, or a tar.gz when its name ends with <code>.tar.gz</code> or
+	 * <code>.tgz</code>. Every file is written to it each time, without the
+	 * copy manifest, the fingerprints nor the shared libraries.
+	 *
+	 * @parameter property="archive"
+	 */
+	protected File archive;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		List<MavenProject> modules = getModules();
+		if (archive == null || dryRun) {
+			execute(modules);
+			return;
+		}
+
+		File root = new ProsaFileStructureBuilder(modules.get(0), filesMappings, rootDirectory, libDirectory).getRootFile();
+		try {
+			prosaArchive = new ProsaArchive(archive, root);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to create " + archive + ": " + e.getMessage(), e);
+		}
+		boolean written = false;
+		try {
+			execute(modules);
+			prosaArchive.close();
+			written = true;
+			getLog().info("Archived " + prosaArchive.getFileCount() + " files (" + prosaArchive.getByteCount() / 1024 + " KB) to " + archive);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to write " + archive + ": " + e.getMessage(), e);
+		} finally {
+			if (!written) {
+				try {
+					prosaArchive.close();
+				} catch (IOException e) {
+					// the archive is incomplete anyway
+				}
+				archive.delete();
+			}
+			prosaArchive = null;
+		}
+	}
+
+	private void execute(List<MavenProject> modules) throws MojoExecutionException {
+		long start = System.currentTimeMillis();
+
+		ReactorPluginConfigurationCache.getInstance(session);
+		ArtifactResolutionCache.getInstance(session);
+		ProsaMetrics metrics = ProsaMetrics.getInstance(session);
+
+		// made by the root projects only, before any module writes into it
+		for (MavenProject module : modules) {
+			makeFileStructure(module);
+		}
+		if (dryRun) {
+			return;
+		}
+
+		// the resolver is not meant to be used by several threads
+		for (MavenProject module : modules) {
+			resolveDependencies(module);
+		}
+
+		final ArtifactResolverWrapper artifactResolverWrapper = getArtifactResolverWrapper();
+		resolveExtraArtifacts(modules, artifactResolverWrapper);
+
+		int poolSize = Math.min(getThreadCount(), Math.max(1, modules.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+		try {
+			List<Future<MavenProject>> results = new ArrayList<Future<MavenProject>>();
+			for (final MavenProject module : modules) {
+				results.add(executor.submit(new Callable<MavenProject>() {
+					public MavenProject call() throws Exception {
+						writeModule(module, artifactResolverWrapper);
+						return module;
+					}
+				}));
+			}
+
+			for (Future<MavenProject> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof MojoExecutionException) {
+						throw (MojoExecutionException) e.getCause();
+					}
+					throw new MojoExecutionException("Error building Ant script: " + e.getCause().getMessage(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException("Interrupted building Ant scripts", e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		saveManifests();
+		getLog().info("Wrote " + modules.size() + " Ant projects in " + (System.currentTimeMillis() - start) + " ms using " + poolSize + " threads");
+		ArtifactResolutionCache.getInstance().logStatistics(getLog());
+
+		metrics.logSummary(getLog());
+		writeMetrics(project);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected List<MavenProject> getModules() {
+		List<MavenProject> modules = new ArrayList<MavenProject>();
+		if (session != null && session.getSortedProjects() != null) {
+			modules.addAll(session.getSortedProjects());
+		}
+		if (modules.isEmpty()) {
+			modules.add(project);
+		}
+		return modules;
+	}
+
+	private int getThreadCount() {
+		if (threads > 0) {
+			return threads;
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Resolve the dependencies of a module when Maven didn't resolve them,
+	 * since only the dependencies of the aggregator project are resolved.
+	 *
+	 * @param module
+	 *            not null
+	 * @throws MojoExecutionException
+	 *             if the dependencies couldn't be resolved
+	 */
+	@SuppressWarnings("unchecked")
+	protected void resolveDependencies(MavenProject module) throws MojoExecutionException {
+		if (!module.getArtifacts().isEmpty() || module.getDependencies().isEmpty()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		ProsaMetrics.Module metrics = ProsaMetrics.getInstance().getModule(module);
+		ProsaMetrics.setCurrent(metrics);
+		try {
+			Set<Artifact> dependencyArtifacts = module.getDependencyArtifacts();
+			if (dependencyArtifacts == null) {
+				dependencyArtifacts = module.createArtifacts(factory, null, null);
+				module.setDependencyArtifacts(dependencyArtifacts);
+			}
+
+			ArtifactResolutionResult result = resolver.resolveTransitively(dependencyArtifacts, module.getArtifact(), module.getManagedVersionMap(), localRepository,
+					module.getRemoteArtifactRepositories(), metadataSource, new ScopeArtifactFilter(Artifact.SCOPE_TEST));
+			module.setArtifacts(result.getArtifacts());
+			ProsaMetrics.record(ProsaMetrics.Phase.RESOLUTION, start, result.getArtifacts().size(), 0);
+		} catch (InvalidDependencyVersionException e) {
+			throw new MojoExecutionException("Unable to resolve dependencies of " + module.getArtifactId() + ": " + e.getMessage(), e);
+		} catch (ArtifactResolutionException e) {
+			throw new MojoExecutionException("Unable to resolve dependencies of " + module.getArtifactId() + ": " + e.getMessage(), e);
+		} catch (ArtifactNotFoundException e) {
+			throw new MojoExecutionException("Unable to find dependencies of " + module.getArtifactId() + ": " + e.getMessage(), e);
+		} finally {
+			ProsaMetrics.setCurrent(null);
+			metrics.addTime(start);
+		}
+	}
+}
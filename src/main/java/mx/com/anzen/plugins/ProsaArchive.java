@@ -0,0 +1,351 @@
+package mx.com.anzen.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarOutputStream;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * An archive the Ant project is streamed to, instead of written to its root
+ * directory: a zip file, or a tar.gz when the file name ends with
+ * <code>.tar.gz</code> or <code>.tgz</code>. An entry is named by its path
+ * under the root directory, prefixed by the name of the root directory.
+ * <p>
+ * The jars and the other files already compressed are stored in a zip file
+ * without compressing them again, after reading them once for their CRC. The
+ * entries are added by any thread and written when the archive is closed, in
+ * the order they were first added, the directories first. A target added again
+ * replaces the previous one, as a later copy replaces the file in the root
+ * directory.
+ */
+public class ProsaArchive {
+
+	private static Log log = new SystemStreamLog();
+
+	/**
+	 * Extensions of the files stored in a zip without compressing them.
+	 */
+	private static final List<String> STORED_EXTENSIONS = Arrays.asList("jar", "war", "ear", "zip", "gz", "tgz");
+
+	private final File file;
+
+	private final Path root;
+
+	private final String prefix;
+
+	private final ZipOutputStream zip;
+
+	private final TarOutputStream tar;
+
+	private final Set<String> directories = new LinkedHashSet<String>();
+
+	/**
+	 * The files to write by entry name, the last one added for a name.
+	 */
+	private final Map<String, Entry> files = new LinkedHashMap<String, Entry>();
+
+	private final byte[] buffer = new byte[64 * 1024];
+
+	/**
+	 * @param file
+	 *            the archive, not null
+	 * @param root
+	 *            the root directory of the Ant project, not null
+	 * @throws IOException
+	 *             if the archive couldn't be created
+	 */
+	public ProsaArchive(File file, File root) throws IOException {
+		this.file = file;
+		this.root = root.getAbsoluteFile().toPath().normalize();
+		this.prefix = root.getName() + "/";
+
+		if (file.getAbsoluteFile().getParentFile() != null) {
+			file.getAbsoluteFile().getParentFile().mkdirs();
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+		if (isTar(file)) {
+			tar = new TarOutputStream(new GZIPOutputStream(out, 64 * 1024));
+			tar.setLongFileMode(TarOutputStream.LONGFILE_GNU);
+			zip = null;
+		} else {
+			zip = new ZipOutputStream(out);
+			tar = null;
+		}
+		addDirectory(root);
+	}
+
+	/**
+	 * @return the archive file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Add a directory and its parents.
+	 *
+	 * @param directory
+	 *            not null, under the root directory
+	 * @throws IOException
+	 *             if the directory is a file of the archive
+	 */
+	public synchronized void addDirectory(File directory) throws IOException {
+		String name = getName(directory);
+		if (directories.contains(name)) {
+			return;
+		}
+		if (files.containsKey(name)) {
+			throw new IOException("A file in the archive: " + name);
+		}
+		if (name.length() > prefix.length()) {
+			addDirectory(directory.getAbsoluteFile().getParentFile());
+		}
+		directories.add(name);
+	}
+
+	/**
+	 * Add a file copied from the given source, replacing the file added before
+	 * for the same target.
+	 *
+	 * @param source
+	 *            not null, read when the archive is closed
+	 * @param target
+	 *            not null, under the root directory
+	 * @return the bytes of the source, zero if the target is a directory
+	 * @throws IOException
+	 *             if the directories of the target couldn't be added
+	 */
+	public synchronized long addFile(File source, File target) throws IOException {
+		if (!startFile(target)) {
+			return 0;
+		}
+		files.put(getName(target), new Entry(source, null));
+		return source.length();
+	}
+
+	/**
+	 * Add a file with the given content, replacing the file added before for
+	 * the same target.
+	 *
+	 * @param target
+	 *            not null, under the root directory
+	 * @param content
+	 *            not null
+	 * @throws IOException
+	 *             if the directories of the target couldn't be added
+	 */
+	public synchronized void addFile(File target, byte[] content) throws IOException {
+		if (startFile(target)) {
+			files.put(getName(target), new Entry(null, content));
+		}
+	}
+
+	/**
+	 * @param file
+	 *            under the root directory
+	 * @return true if the file is a directory of the archive
+	 */
+	public synchronized boolean isDirectory(File file) {
+		return directories.contains(getName(file));
+	}
+
+	/**
+	 * @param file
+	 *            under the root directory
+	 * @return true if the file is a file of the archive
+	 */
+	public synchronized boolean isFile(File file) {
+		return files.containsKey(getName(file));
+	}
+
+	/**
+	 * @return the number of files added
+	 */
+	public synchronized int getFileCount() {
+		return files.size();
+	}
+
+	/**
+	 * @return the bytes of the files added, before compression
+	 */
+	public synchronized long getByteCount() {
+		long bytes = 0;
+		for (Entry entry : files.values()) {
+			bytes += entry.getSize();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Write the entries, the end of the archive and close it.
+	 *
+	 * @throws IOException
+	 *             if a source couldn't be read or an entry written
+	 */
+	public synchronized void close() throws IOException {
+		OutputStream out = (zip != null) ? zip : tar;
+		try {
+			for (String name : directories) {
+				writeDirectory(name);
+			}
+			for (Map.Entry<String, Entry> file : files.entrySet()) {
+				writeFile(file.getKey(), file.getValue());
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Check the target is not a directory, and add its directories.
+	 */
+	private boolean startFile(File target) throws IOException {
+		String name = getName(target);
+		if (directories.contains(name)) {
+			log.warn("A directory in the archive: " + name);
+			return false;
+		}
+		addDirectory(target.getAbsoluteFile().getParentFile());
+		return true;
+	}
+
+	private void writeDirectory(String name) throws IOException {
+		if (zip != null) {
+			ZipEntry entry = new ZipEntry(name + "/");
+			entry.setTime(System.currentTimeMillis());
+			zip.putNextEntry(entry);
+			zip.closeEntry();
+		} else {
+			TarEntry entry = new TarEntry(name + "/");
+			entry.setModTime(System.currentTimeMillis());
+			tar.putNextEntry(entry);
+			tar.closeEntry();
+		}
+	}
+
+	private void writeFile(String name, Entry file) throws IOException {
+		long size = file.getSize();
+		long time = (file.source != null) ? file.source.lastModified() : System.currentTimeMillis();
+		if (zip != null) {
+			ZipEntry entry = new ZipEntry(name);
+			entry.setTime(time);
+			if (file.source != null && isStored(name)) {
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(size);
+				entry.setCompressedSize(size);
+				entry.setCrc(crc32(file.source));
+			}
+			zip.putNextEntry(entry);
+			write(file, zip);
+			zip.closeEntry();
+		} else {
+			TarEntry entry = new TarEntry(name);
+			entry.setModTime(time);
+			entry.setSize(size);
+			tar.putNextEntry(entry);
+			write(file, tar);
+			tar.closeEntry();
+		}
+	}
+
+	private void write(Entry file, OutputStream out) throws IOException {
+		if (file.content != null) {
+			out.write(file.content);
+		} else {
+			copy(file.source, out);
+		}
+	}
+
+	private String getName(File file) {
+		Path path = file.getAbsoluteFile().toPath().normalize();
+		if (!path.startsWith(root)) {
+			throw new IllegalArgumentException("Not under " + root + ": " + file);
+		}
+		String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+		return relative.length() > 0 ? prefix + relative : prefix.substring(0, prefix.length() - 1);
+	}
+
+	private void copy(File source, OutputStream out) throws IOException {
+		if (!source.isFile()) {
+			throw new IOException("File not found: " + source.getAbsolutePath());
+		}
+		InputStream in = new FileInputStream(source);
+		try {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	private long crc32(File source) throws IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(source);
+		try {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				crc.update(buffer, 0, n);
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+		return crc.getValue();
+	}
+
+	private static boolean isStored(String name) {
+		int dot = name.lastIndexOf('.');
+		return dot > name.lastIndexOf('/') && STORED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * A file to write, copied from a source or with its content.
+	 */
+	private static class Entry {
+
+		private final File source;
+
+		private final byte[] content;
+
+		Entry(File source, byte[] content) {
+			this.source = source;
+			this.content = content;
+		}
+
+		long getSize() {
+			return (content != null) ? content.length : source.length();
+		}
+	}
+
+	/**
+	 * @param file
+	 *            not null
+	 * @return true if the file is a tar.gz archive, else a zip
+	 */
+	public static boolean isTar(File file) {
+		String name = file.getName().toLowerCase(Locale.ENGLISH);
+		return name.endsWith(".tar.gz") || name.endsWith(".tgz");
+	}
+}
@@ -4,13 +4,16 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.FileUtils;
 
 public class ProsaFileStructureBuilder {
 
@@ -18,7 +21,19 @@ public class ProsaFileStructureBuilder {
 	private List<FilesMapping> filesMapping;
 	private String rootDirectory;
 	private String libDirectory;
+	private int copyThreads = 1;
+	private boolean sharedLibraries;
+	private boolean incremental;
+	private boolean incrementalHash;
+	private boolean dryRun;
+	private ProsaArchive archive;
+	/**
+	 * The copier of {@link #syncFileStructure(FilesMappingPlanner, Set)}, kept
+	 * until {@link #shutdown()}.
+	 */
+	private FileTreeCopier syncCopier;
 	private static Log log = new SystemStreamLog();
+	static final String FILES_OWNER = "files";
 	private static final List<String> prosaFileStructure = new ArrayList<String>(Arrays.asList("build", "configFiles", "dist", "javadocs", "ldap", "src", "webapp/jsp", "webapp/css", "webapp/html",
 			"webapp/imagenes", "webapp/js", "webapp/jasper", "webapp/META-INF", "webapp/WEB-INF/cfg", "webapp/WEB-INF/lib"));
 
@@ -42,64 +57,336 @@ public class ProsaFileStructureBuilder {
 			return;
 		}
 
-		makeDefaultFileStructure();
-
+		long start = System.nanoTime();
 		File base = new File(project.getBasedir(), rootDirectory);
 		log.info("Base directory: " + base.getAbsolutePath());
-		for (FilesMapping fm : filesMapping) {
+		log.info("Making file system");
 
-			File target = new File(base, fm.getDestinationDirectory());
+		FilesMappingPlanner planner = plan();
 
-			// just creates a directory and this directory is not considered for
-			// restoring.
-			if (fm.getSourceDirectory() == null || fm.getSourceDirectory().trim().isEmpty()) {
-				target.mkdirs();
-				log.info("mkdir(s): " + fm.getDestinationDirectory());
-				continue;
+		CopyManifest manifest = getManifest();
+		if (dryRun) {
+			planner.log(log, manifest);
+			return;
+		}
+
+		if (archive != null) {
+			for (File directory : planner.getLeafDirectories()) {
+				archive.addDirectory(directory);
 			}
+			long bytes = 0;
+			for (Map.Entry<File, File> copy : planner.getCopies().entrySet()) {
+				bytes += archive.addFile(copy.getValue(), copy.getKey());
+			}
+			log.info("Archived " + planner.getFileCount() + " files (" + bytes / 1024 + " KB), " + planner.getReplacedCount() + " copies replaced by a later mapping");
+			ProsaMetrics.record(ProsaMetrics.Phase.FILES, start, planner.getFileCount(), bytes);
+			return;
+		}
 
-			File origin = new File(project.getBasedir(), fm.getSourceDirectory());
-			if (origin.isDirectory()) {
-				target.mkdirs();
-				FileUtils.copyDirectoryStructure(origin, target);
-			} else if (target.isDirectory()) {
-				FileUtils.copyFileToDirectory(origin, target);
+		for (File directory : planner.getDirectories()) {
+			if (!directory.mkdirs() && !directory.isDirectory()) {
+				throw new IOException("Could not create destination directory '" + directory.getAbsolutePath() + "'.");
+			}
+		}
+
+		Map<File, File> copies = planner.getCopies();
+		FileTreeCopier copier = new FileTreeCopier(copyThreads);
+		copier.setManifest(manifest, FILES_OWNER);
+		try {
+			copier.copy(copies);
+		} finally {
+			copier.shutdown();
+		}
+
+		for (FilesMapping fm : filesMapping) {
+			// just creates a directory and this directory is not
+			// considered for restoring.
+			if (getOrigin(fm) == null) {
+				log.info("mkdir(s): " + fm.getDestinationDirectory());
 			} else {
-				FileUtils.copyFile(origin, target);
+				log.info("Copy: " + fm.getSourceDirectory() + " => " + fm.getDestinationDirectory());
 			}
+		}
 
-			log.info("Copy: " + fm.getSourceDirectory() + " => " + fm.getDestinationDirectory());
+		int removed = 0;
+		if (manifest != null) {
+			removed = manifest.removeStale(FILES_OWNER, copies.keySet());
 		}
+		log.info("Copied " + copier.getFileCount() + " files (" + copier.getByteCount() / 1024 + " KB), " + copier.getSkippedCount() + " unchanged, " + removed + " removed, "
+				+ planner.getReplacedCount() + " copies replaced by a later mapping");
+		ProsaMetrics.record(ProsaMetrics.Phase.FILES, start, copier.getFileCount(), copier.getByteCount());
+		ProsaMetrics.count(ProsaMetrics.Phase.FILES, copier.getSkippedCount(), copier.getFileCount());
 	}
 
 	/**
-	 * Build the default file structure indicated by PROSA.
+	 * Plan the default file structure and the files mappings as single file
+	 * copies, each target copied once from its last source.
+	 *
+	 * @return the plan
+	 * @throws IOException
+	 *             if the source of a mapping doesn't exist
 	 */
-	private void makeDefaultFileStructure() {
-		log.info("Making file system");
+	FilesMappingPlanner plan() throws IOException {
+		return plan(new FilesMappingPlanner());
+	}
+
+	private FilesMappingPlanner plan(FilesMappingPlanner planner) throws IOException {
+		makeDefaultFileStructure(planner);
+		for (FilesMapping fm : filesMapping) {
+			planner.add(fm, getOrigin(fm), getTarget(fm));
+		}
+		return planner;
+	}
+
+	/**
+	 * Plan the files mappings again as {@link #makeFileStructure()} does, copy
+	 * the targets whose source changed or isn't the same as in the previous
+	 * plan, and remove the targets no longer planned. Only the source trees
+	 * holding a changed file are walked again, and only the directories new
+	 * to the plan are made.
+	 *
+	 * @param previous
+	 *            the previous plan, not null
+	 * @param changed
+	 *            the files and directories changed, created or deleted, null
+	 *            to walk every source tree again and copy every target not up
+	 *            to date
+	 * @return the new plan
+	 * @throws IOException
+	 *             if a mapping couldn't be planned or a file copied
+	 */
+	FilesMappingPlanner syncFileStructure(FilesMappingPlanner previous, Set<File> changed) throws IOException {
+		long start = System.currentTimeMillis();
+		FilesMappingPlanner planner = plan(new FilesMappingPlanner(previous, changed));
+		Map<File, File> copies = planner.getCopies();
+		Map<File, File> previousCopies = previous.getCopies();
+
+		Map<File, File> copied = new LinkedHashMap<File, File>();
+		for (Map.Entry<File, File> copy : copies.entrySet()) {
+			File source = copy.getValue();
+			if (changed == null || !source.equals(previousCopies.get(copy.getKey())) || isChanged(source, changed)) {
+				copied.put(copy.getKey(), source);
+			}
+		}
+
+		CopyManifest manifest = getManifest();
+		int removed = 0;
+		for (File target : previousCopies.keySet()) {
+			if (!copies.containsKey(target)) {
+				if (target.isFile() && !target.delete()) {
+					throw new IOException("Could not delete " + target.getAbsolutePath());
+				}
+				if (manifest != null) {
+					manifest.remove(target);
+				}
+				removed++;
+			}
+		}
+
+		Set<File> made = new HashSet<File>(previous.getLeafDirectories());
+		for (File directory : planner.getLeafDirectories()) {
+			if (!made.contains(directory) && !directory.mkdirs() && !directory.isDirectory()) {
+				throw new IOException("Could not create destination directory '" + directory.getAbsolutePath() + "'.");
+			}
+		}
+		for (File target : copied.keySet()) {
+			// the directory could have been deleted with the source
+			File directory = target.getParentFile();
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Could not create destination directory '" + directory.getAbsolutePath() + "'.");
+			}
+		}
+
+		if (syncCopier == null) {
+			syncCopier = new FileTreeCopier(copyThreads);
+		}
+		syncCopier.setManifest(manifest, FILES_OWNER);
+		long files = syncCopier.getFileCount();
+		syncCopier.copy(copied);
+		files = syncCopier.getFileCount() - files;
+
+		if (files > 0 || removed > 0) {
+			log.info("Synced " + files + " files, " + removed + " removed in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		return planner;
+	}
+
+	/**
+	 * Stop the workers kept for
+	 * {@link #syncFileStructure(FilesMappingPlanner, Set)}.
+	 */
+	void shutdown() {
+		if (syncCopier != null) {
+			syncCopier.shutdown();
+			syncCopier = null;
+		}
+	}
+
+	/**
+	 * Check if the file or one of its directories is one of the changed ones.
+	 */
+	private static boolean isChanged(File file, Set<File> changed) {
+		for (File parent = file; parent != null; parent = parent.getParentFile()) {
+			if (changed.contains(parent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the copy manifest of the Ant project or null if the copies are
+	 *         not incremental
+	 * @throws IOException
+	 *             if the manifest couldn't be read
+	 */
+	CopyManifest getManifest() throws IOException {
+		if (!incremental) {
+			return null;
+		}
+		CopyManifest manifest = CopyManifest.getInstance(getRootFile());
+		manifest.setHashing(incrementalHash);
+		return manifest;
+	}
+
+	/**
+	 * @return the file or directory copied by a mapping, null if the mapping
+	 *         only makes its destination directory
+	 */
+	File getOrigin(FilesMapping fm) {
+		if (fm.getSourceDirectory() == null || fm.getSourceDirectory().trim().isEmpty()) {
+			return null;
+		}
+		return new File(project.getBasedir(), fm.getSourceDirectory());
+	}
+
+	File getTarget(FilesMapping fm) {
+		return new File(new File(project.getBasedir(), rootDirectory), fm.getDestinationDirectory());
+	}
+
+	/**
+	 * Plan the default file structure indicated by PROSA, made with the
+	 * directories of the mappings.
+	 */
+	private void makeDefaultFileStructure(FilesMappingPlanner planner) {
 		File base = new File(project.getBasedir(), rootDirectory);
 		for (String path : prosaFileStructure) {
-			File f = new File(base, path);
-			f.mkdirs();
+			planner.addDirectory(new File(base, path));
 		}
 	}
 
 	/**
 	 * Copy from Maven local repository all dependencies and paste these on lib
-	 * directory.
+	 * directory, using {@link #setCopyThreads(int)} workers.
 	 *
 	 * @throws IOException
 	 */
 	public void copyDependencies() throws IOException {
 		@SuppressWarnings("unchecked")
 		List<Artifact> artifactsList = new ArrayList<Artifact>(project.getArtifacts());
-		File f = getLibFile();
-		log.info("Coping dependencies (" + artifactsList.size() + "):");
+		List<File> files = new ArrayList<File>();
 		for (Artifact artifact : artifactsList) {
-			FileUtils.copyFileToDirectory(artifact.getFile(), f);
-			log.info("Copied: " + artifact.getFile().getAbsolutePath());
+			if (artifact.getFile() == null) {
+				log.warn("Not resolved: " + artifact.getId());
+				continue;
+			}
+			files.add(artifact.getFile());
+		}
+
+		long start = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+		if (archive != null) {
+			File lib = getLibFile();
+			archive.addDirectory(lib);
+			long bytes = 0;
+			for (File file : files) {
+				bytes += archive.addFile(file, new File(lib, file.getName()));
+			}
+			log.info("Archived " + files.size() + " dependencies of " + project.getArtifactId() + " (" + bytes / 1024 + " KB) in " + (System.currentTimeMillis() - start) + " ms");
+			ProsaMetrics.record(ProsaMetrics.Phase.DEPENDENCIES, startNanos, files.size(), bytes);
+			return;
+		}
+
+		String owner = "lib:" + project.getGroupId() + ":" + project.getArtifactId();
+		CopyManifest manifest = getManifest();
+		ParallelFileCopier copier = new ParallelFileCopier(copyThreads);
+		copier.setManifest(manifest, owner);
+		if (sharedLibraries) {
+			copier.setLibraryStore(new LibraryStore(new File(getRootFile(), LibraryStore.DEFAULT_STORE_DIRECTORY)));
+		}
+		copier.copyToDirectory(files, getLibFile());
+
+		int removed = 0;
+		if (manifest != null) {
+			removed = manifest.removeStale(owner, copier.getTargets());
+		}
+		long time = Math.max(1, System.currentTimeMillis() - start);
+
+		log.info("Copied " + copier.getFileCount() + " dependencies of " + project.getArtifactId() + " (" + copier.getByteCount() / 1024 + " KB) in " + time + " ms, "
+				+ (copier.getByteCount() * 1000 / time) / (1024 * 1024) + " MB/s, " + copier.getSkippedCount() + " unchanged, " + removed + " removed");
+		ProsaMetrics.record(ProsaMetrics.Phase.DEPENDENCIES, startNanos, copier.getFileCount(), copier.getByteCount());
+		ProsaMetrics.count(ProsaMetrics.Phase.DEPENDENCIES, copier.getSkippedCount(), copier.getFileCount());
+	}
+
+	/**
+	 * @param copyThreads
+	 *            the maximum number of files copied at the same time
+	 */
+	public void setCopyThreads(int copyThreads) {
+		this.copyThreads = copyThreads;
+	}
+
+	/**
+	 * @param incremental
+	 *            whether the files already copied and not changed since are
+	 *            skipped, and the ones whose source is gone removed
+	 * @param incrementalHash
+	 *            whether a source with a new last modified time is compared by
+	 *            content before copying it again
+	 * @see CopyManifest
+	 */
+	public void setIncremental(boolean incremental, boolean incrementalHash) {
+		this.incremental = incremental;
+		this.incrementalHash = incrementalHash;
+	}
+
+	/**
+	 * @param dryRun
+	 *            whether the copies of the files mappings are only planned and
+	 *            logged
+	 * @see FilesMappingPlanner
+	 */
+	public void setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * @param archive
+	 *            the archive the files are streamed to instead of copied, null
+	 *            to copy them
+	 */
+	public void setArchive(ProsaArchive archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * @param sharedLibraries
+	 *            whether the dependencies are linked to a {@link LibraryStore}
+	 *            instead of copied
+	 */
+	public void setSharedLibraries(boolean sharedLibraries) {
+		this.sharedLibraries = sharedLibraries;
+	}
+
+	/**
+	 * @return the root directory of the Ant project, the one of the parent
+	 *         project for a module
+	 */
+	public File getRootFile() {
+		if (project.hasParent()) {
+			return new File(project.getParent().getFile().getParentFile(), rootDirectory);
 		}
-		log.info("Ok");
+		return new File(project.getBasedir(), rootDirectory);
 	}
 
 	/**
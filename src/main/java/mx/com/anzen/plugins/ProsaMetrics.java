@@ -0,0 +1,431 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Time, operations, bytes and cache hits of each phase of the Ant projects
+ * generation, for every module and for the work done once for the reactor.
+ * <p>
+ * The phases are recorded for the module the current thread works on, see
+ * {@link #setCurrent(Module)}; nothing is recorded when there is none. The
+ * plugin configuration lookups and the artifact resolutions are made while
+ * writing the Ant files, so their time is counted in those phases too.
+ * <p>
+ * As the other caches, the metrics live as long as the Maven session they
+ * are bound to. They are written as JSON in {@link #DEFAULT_REPORT_FILENAME}
+ * under the root directory.
+ */
+public class ProsaMetrics {
+
+	/**
+	 * Name of the report, under the Ant project root directory.
+	 */
+	public static final String DEFAULT_REPORT_FILENAME = ".prosa-metrics.json";
+
+	/**
+	 * Number of modules in the slowest modules list.
+	 */
+	private static final int SLOWEST_MODULES = 5;
+
+	/**
+	 * A measured phase.
+	 */
+	public enum Phase {
+		FILES("files", false), DEPENDENCIES("dependencies", false), RESOLUTION("resolution", true), FINGERPRINT("fingerprint", false), PLUGIN_CONFIGURATIONS("pluginConfigurations", true), BUILD_XML(
+				"buildXml", false), BUILD_PROPERTIES("buildProperties", false);
+
+		private final String id;
+
+		private final boolean nested;
+
+		private Phase(String id, boolean nested) {
+			this.id = id;
+			this.nested = nested;
+		}
+
+		/**
+		 * @return the phase name in the report
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return true if the phase is mostly run inside another one
+		 */
+		public boolean isNested() {
+			return nested;
+		}
+	}
+
+	private static ProsaMetrics current;
+
+	private static final ThreadLocal<Module> currentModule = new ThreadLocal<Module>();
+
+	/**
+	 * The build the metrics are bound to, see {@link SessionKey}.
+	 */
+	private final String sessionKey;
+
+	private final long start = System.currentTimeMillis();
+
+	/**
+	 * The work done once for all the modules.
+	 */
+	private final Module reactor = new Module("reactor");
+
+	private final Map<String, Module> modules = new LinkedHashMap<String, Module>();
+
+	private ProsaMetrics(MavenSession session) {
+		this.sessionKey = SessionKey.of(session);
+	}
+
+	/**
+	 * Return the metrics of the build of the given session, dropping the metrics
+	 * of any previous build. The copies of a session share the metrics.
+	 *
+	 * @param session
+	 *            the current Maven session, could be null
+	 * @return the metrics bound to the session
+	 */
+	public static synchronized ProsaMetrics getInstance(MavenSession session) {
+		if (current == null || !current.sessionKey.equals(SessionKey.of(session))) {
+			current = new ProsaMetrics(session);
+		}
+		return current;
+	}
+
+	/**
+	 * @return the metrics of the current session, or metrics not bound to any
+	 *         session if none was given yet
+	 */
+	public static synchronized ProsaMetrics getInstance() {
+		if (current == null) {
+			current = new ProsaMetrics(null);
+		}
+		return current;
+	}
+
+	/**
+	 * @param project
+	 *            not null
+	 * @return the metrics of the project, created the first time
+	 */
+	public synchronized Module getModule(MavenProject project) {
+		String key = project.getGroupId() + ":" + project.getArtifactId();
+		Module module = modules.get(key);
+		if (module == null) {
+			module = new Module(project.getArtifactId());
+			modules.put(key, module);
+		}
+		return module;
+	}
+
+	/**
+	 * @return the metrics of the work done once for the reactor
+	 */
+	public Module getReactor() {
+		return reactor;
+	}
+
+	/**
+	 * Record the phases run by the current thread for the given module.
+	 *
+	 * @param module
+	 *            could be null to stop recording
+	 */
+	public static void setCurrent(Module module) {
+		if (module == null) {
+			currentModule.remove();
+		} else {
+			currentModule.set(module);
+		}
+	}
+
+	/**
+	 * Record a run of a phase for the current module, if any.
+	 *
+	 * @param phase
+	 *            not null
+	 * @param startNanos
+	 *            the {@link System#nanoTime()} when the phase started
+	 * @param operations
+	 *            the number of operations made
+	 * @param bytes
+	 *            the number of bytes written
+	 */
+	public static void record(Phase phase, long startNanos, long operations, long bytes) {
+		Module module = currentModule.get();
+		if (module != null) {
+			PhaseMetrics metrics = module.getPhase(phase);
+			metrics.nanos.addAndGet(System.nanoTime() - startNanos);
+			metrics.operations.addAndGet(operations);
+			metrics.bytes.addAndGet(bytes);
+		}
+	}
+
+	/**
+	 * Record cache hits and misses of a phase for the current module, if any.
+	 *
+	 * @param phase
+	 *            not null
+	 * @param hits
+	 *            the number of results found in a cache or up to date
+	 * @param misses
+	 *            the number of results computed again
+	 */
+	public static void count(Phase phase, long hits, long misses) {
+		Module module = currentModule.get();
+		if (module != null) {
+			PhaseMetrics metrics = module.getPhase(phase);
+			metrics.hits.addAndGet(hits);
+			metrics.misses.addAndGet(misses);
+		}
+	}
+
+	/**
+	 * Write the JSON report.
+	 *
+	 * @param file
+	 *            not null
+	 * @throws IOException
+	 *             if any
+	 */
+	public void writeReport(File file) throws IOException {
+		AntBuildWriterUtil.writeIfChanged(file, toReport().getBytes("UTF-8"));
+	}
+
+	/**
+	 * @return the JSON report
+	 */
+	String toReport() {
+		StringBuffer json = new StringBuffer(4096);
+		json.append("{\n");
+		json.append("  \"wallTimeMs\": ").append(System.currentTimeMillis() - start).append(",\n");
+		json.append("  \"phases\": ");
+		appendPhases(json, getTotals(), "  ");
+		json.append(",\n  \"reactor\": ");
+		appendPhases(json, reactor, "  ");
+		json.append(",\n  \"modules\": [");
+		List<Module> moduleList = getModules();
+		for (int i = 0; i < moduleList.size(); i++) {
+			Module module = moduleList.get(i);
+			json.append(i > 0 ? ",\n" : "\n");
+			json.append("    {\"artifactId\": ").append(quote(module.name));
+			json.append(", \"timeMs\": ").append(toMillis(module.nanos.get()));
+			json.append(", \"upToDate\": ").append(module.upToDate);
+			json.append(", \"phases\": ");
+			appendPhases(json, module, "    ");
+			json.append("}");
+		}
+		json.append(moduleList.isEmpty() ? "],\n" : "\n  ],\n");
+		json.append("  \"slowestModules\": [");
+		List<Module> slowest = getSlowestModules();
+		for (int i = 0; i < slowest.size(); i++) {
+			json.append(i > 0 ? ", " : "").append(quote(slowest.get(i).name));
+		}
+		json.append("]\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * Log the phases of a module.
+	 *
+	 * @param log
+	 *            not null
+	 * @param module
+	 *            not null
+	 */
+	public void logSummary(Log log, Module module) {
+		logPhases(log, module.name + " in " + toMillis(module.nanos.get()) + " ms", module);
+	}
+
+	/**
+	 * Log the phases of all the modules, the time of each module and the
+	 * slowest ones.
+	 *
+	 * @param log
+	 *            not null
+	 */
+	public void logSummary(Log log) {
+		logPhases(log, "All modules", getTotals());
+
+		List<Module> moduleList = getModules();
+		if (moduleList.isEmpty()) {
+			return;
+		}
+		log.info(String.format(Locale.ENGLISH, "%-30s %10s %10s %10s %10s  %s", "Module", "Time (ms)", "Deps (ms)", "Xml (ms)", "Copied", "Up to date"));
+		for (Module module : moduleList) {
+			log.info(String.format(Locale.ENGLISH, "%-30s %10.1f %10.1f %10.1f %10d  %s", module.name, toMillis(module.nanos.get()), toMillis(module.getPhase(Phase.DEPENDENCIES).nanos.get()),
+					toMillis(module.getPhase(Phase.BUILD_XML).nanos.get()), module.getPhase(Phase.DEPENDENCIES).operations.get(), module.upToDate ? "yes" : "no"));
+		}
+
+		StringBuffer slowest = new StringBuffer("Slowest modules:");
+		for (Module module : getSlowestModules()) {
+			slowest.append(" ").append(module.name).append(" (").append(toMillis(module.nanos.get())).append(" ms)");
+		}
+		log.info(slowest.toString());
+	}
+
+	private void logPhases(Log log, String title, Module module) {
+		log.info(String.format(Locale.ENGLISH, "%-30s %10s %10s %10s %10s", title, "Time (ms)", "Ops", "KB", "Hit rate"));
+		for (Phase phase : Phase.values()) {
+			PhaseMetrics metrics = module.getPhase(phase);
+			if (metrics.operations.get() == 0 && metrics.nanos.get() == 0) {
+				continue;
+			}
+			String hitRate = metrics.hits.get() + metrics.misses.get() > 0 ? Math.round(metrics.getHitRate() * 100) + "%" : "-";
+			log.info(String.format(Locale.ENGLISH, "%-30s %10.1f %10d %10d %10s", (phase.isNested() ? "  " : "") + phase.getId(), toMillis(metrics.nanos.get()), metrics.operations.get(),
+					metrics.bytes.get() / 1024, hitRate));
+		}
+	}
+
+	private synchronized List<Module> getModules() {
+		return new ArrayList<Module>(modules.values());
+	}
+
+	private List<Module> getSlowestModules() {
+		List<Module> slowest = getModules();
+		Collections.sort(slowest, new Comparator<Module>() {
+			public int compare(Module module1, Module module2) {
+				return Long.valueOf(module2.nanos.get()).compareTo(Long.valueOf(module1.nanos.get()));
+			}
+		});
+		return slowest.subList(0, Math.min(SLOWEST_MODULES, slowest.size()));
+	}
+
+	/**
+	 * @return the phases of the reactor and of all the modules together
+	 */
+	private Module getTotals() {
+		Module totals = new Module("total");
+		List<Module> all = getModules();
+		all.add(reactor);
+		for (Module module : all) {
+			for (Phase phase : Phase.values()) {
+				PhaseMetrics metrics = module.getPhase(phase);
+				PhaseMetrics total = totals.getPhase(phase);
+				total.nanos.addAndGet(metrics.nanos.get());
+				total.operations.addAndGet(metrics.operations.get());
+				total.bytes.addAndGet(metrics.bytes.get());
+				total.hits.addAndGet(metrics.hits.get());
+				total.misses.addAndGet(metrics.misses.get());
+			}
+		}
+		return totals;
+	}
+
+	private static void appendPhases(StringBuffer json, Module module, String indent) {
+		json.append("{");
+		Phase[] phases = Phase.values();
+		for (int i = 0; i < phases.length; i++) {
+			PhaseMetrics metrics = module.getPhase(phases[i]);
+			json.append(i > 0 ? "," : "").append("\n").append(indent).append("  ").append(quote(phases[i].getId())).append(": {");
+			json.append("\"timeMs\": ").append(toMillis(metrics.nanos.get()));
+			json.append(", \"operations\": ").append(metrics.operations.get());
+			json.append(", \"bytes\": ").append(metrics.bytes.get());
+			json.append(", \"hits\": ").append(metrics.hits.get());
+			json.append(", \"misses\": ").append(metrics.misses.get());
+			json.append(", \"hitRate\": ").append(String.format(Locale.ENGLISH, "%.3f", metrics.getHitRate()));
+			json.append("}");
+		}
+		json.append("\n").append(indent).append("}");
+	}
+
+	private static String quote(String text) {
+		StringBuffer quoted = new StringBuffer(text.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static double toMillis(long nanos) {
+		return Math.round(nanos / 100000.0) / 10.0;
+	}
+
+	/**
+	 * The phases of a module.
+	 */
+	public static class Module {
+
+		private final String name;
+
+		private final PhaseMetrics[] phases = new PhaseMetrics[Phase.values().length];
+
+		private final AtomicLong nanos = new AtomicLong();
+
+		private volatile boolean upToDate;
+
+		Module(String name) {
+			this.name = name;
+			for (int i = 0; i < phases.length; i++) {
+				phases[i] = new PhaseMetrics();
+			}
+		}
+
+		PhaseMetrics getPhase(Phase phase) {
+			return phases[phase.ordinal()];
+		}
+
+		/**
+		 * Add to the wall time of the module.
+		 *
+		 * @param startNanos
+		 *            the {@link System#nanoTime()} when the work started
+		 */
+		public void addTime(long startNanos) {
+			nanos.addAndGet(System.nanoTime() - startNanos);
+		}
+
+		/**
+		 * @param upToDate
+		 *            whether the Ant files of the module were up to date
+		 */
+		public void setUpToDate(boolean upToDate) {
+			this.upToDate = upToDate;
+		}
+	}
+
+	/**
+	 * The counters of a phase.
+	 */
+	static class PhaseMetrics {
+
+		private final AtomicLong nanos = new AtomicLong();
+
+		private final AtomicLong operations = new AtomicLong();
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final AtomicLong misses = new AtomicLong();
+
+		double getHitRate() {
+			long total = hits.get() + misses.get();
+			return total > 0 ? (double) hits.get() / total : 0;
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package mx.com.anzen.plugins;
 
-import java.io.IOException;
-import java.util.List;
-import java.util.Properties;
+import java.util.Collections;
 
 import org.apache.maven.plugin.MojoExecutionException;
 
@@ -14,61 +12,28 @@ import org.apache.maven.plugin.MojoExecutionException;
  */
 public class ProsaMojo extends AbstractProsaMojo {
 
-	/**
-	 * A files mapping, meaning the origin file to target directory.
-	 *
-	 * @parameter
-	 */
-	private List<FilesMapping> filesMappings;
-
-	/**
-	 * Directory name for the Ant project.
-	 *
-	 * @parameter
-	 */
-	private String rootDirectory;
-	/**
-	 * Relative path for dependencies.
-	 *
-	 * @parameter default-value="webapp/WEB-INF/lib"
-	 */
-	private String libDirectory;
-	/**
-	 * In web applications, set relative path to webapp directory.
-	 *
-	 * @parameter default-value="src/main/webapp"
-	 */
-	private String webappDirectory;
-
-
-
-
-
 	@Override
 	public void execute() throws MojoExecutionException {
 
-		ProsaFileStructureBuilder directoryBuilder = new ProsaFileStructureBuilder(project, filesMappings, rootDirectory, libDirectory);
+		ReactorPluginConfigurationCache.getInstance(session);
+		ArtifactResolutionCache.getInstance(session);
+		ProsaMetrics metrics = ProsaMetrics.getInstance(session);
 
-		try {
-			directoryBuilder.makeFileStructure();
-			directoryBuilder.copyDependencies();
-		} catch (IOException e) {
-			getLog().error(e);
+		makeFileStructure(project);
+		if (dryRun) {
+			return;
 		}
 
-		ArtifactResolverWrapper artifactResolverWrapper = ArtifactResolverWrapper.getInstance(resolver, factory, localRepository, remoteRepositories);
+		ArtifactResolverWrapper artifactResolverWrapper = getArtifactResolverWrapper();
 
-		Properties executionProperties = (session != null) ? session.getExecutionProperties() : null;
+		resolveExtraArtifacts(Collections.singletonList(project), artifactResolverWrapper);
 
-		AntBuildWriter antBuildWriter = new AntBuildWriter(project, artifactResolverWrapper, settings, overwrite, executionProperties, rootDirectory, libDirectory);
+		writeModule(project, artifactResolverWrapper);
 
-		try {
-			antBuildWriter.writeBuildXmls(filesMappings, webappDirectory);
-			antBuildWriter.writeBuildProperties();
-		} catch (IOException e) {
-			throw new MojoExecutionException("Error building Ant script: " + e.getMessage(), e);
-		}
+		ArtifactResolutionCache.getInstance().logStatistics(getLog());
 
-		getLog().info("Wrote Ant project for " + project.getArtifactId() + " to " + project.getBasedir().getAbsolutePath());
+		metrics.logSummary(getLog(), metrics.getModule(project));
+		// the report holds the whole reactor, written once it is done
+		endProject();
 	}
 }
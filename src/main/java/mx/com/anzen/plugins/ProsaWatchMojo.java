@@ -0,0 +1,195 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
+
+/**
+ * Goal which keeps the Ant project in sync with the sources of the reactor
+ * until it is stopped. The Ant projects are written first as the
+ * <code>aggregate</code> goal does, then the sources of the files mappings and
+ * the POMs are watched. Once no other change came for
+ * <code>watchDebounce</code> milliseconds, the files mappings are planned
+ * again with {@link FilesMappingPlanner}, the targets of the changed sources
+ * copied and the targets no longer planned removed, so a later mapping still
+ * wins. The <code>build.xml</code> and <code>build.properties</code> of a
+ * module are only written again when its POM, or the POM of a parent,
+ * changed.
+ * <p>
+ * The configuration of this plugin is read once: a change to the files
+ * mappings needs a new run of the goal.
+ *
+ * @goal watch
+ * @aggregator
+ * @requiresDependencyResolution test
+ */
+public class ProsaWatchMojo extends ProsaAggregatorMojo {
+
+	/**
+	 * Used for building again the projects whose POM changed.
+	 *
+	 * @component
+	 */
+	protected MavenProjectBuilder projectBuilder;
+
+	/**
+	 * Milliseconds without any change before the changes are copied.
+	 *
+	 * @parameter property="watchDebounce" default-value="100"
+	 */
+	private long watchDebounce;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		if (archive != null) {
+			throw new MojoExecutionException("The watch goal keeps the root directory in sync, it can't write to an archive");
+		}
+		super.execute();
+		if (dryRun) {
+			return;
+		}
+
+		List<MavenProject> modules = getModules();
+		ArtifactResolverWrapper artifactResolverWrapper = getArtifactResolverWrapper();
+
+		ProsaWatcher watcher;
+		try {
+			watcher = new ProsaWatcher();
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to watch the sources: " + e.getMessage(), e);
+		}
+		watcher.setDebounce(watchDebounce);
+
+		Map<ProsaFileStructureBuilder, FilesMappingPlanner> plans = new LinkedHashMap<ProsaFileStructureBuilder, FilesMappingPlanner>();
+		try {
+			watch(watcher, modules, plans);
+			getLog().info("Watching " + watcher.getDirectoryCount() + " directories, press Ctrl-C to stop");
+
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					ProsaWatcher.Changes changes = watcher.take();
+					if (changes.isSourceChanged()) {
+						sync(plans, changes.getSources());
+					}
+					if (!changes.getPoms().isEmpty()) {
+						modules = rebuild(modules, changes.getPoms(), artifactResolverWrapper);
+					}
+				} catch (IOException e) {
+					getLog().error("Error syncing the Ant project: " + e.getMessage());
+				} catch (MojoExecutionException e) {
+					// the POM could be saved half edited, the next change is
+					// tried again
+					getLog().error(e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Unable to watch the sources: " + e.getMessage(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			getLog().info("Stopped watching");
+		} finally {
+			watcher.close();
+			for (ProsaFileStructureBuilder directoryBuilder : plans.keySet()) {
+				directoryBuilder.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Watch the files mappings of the root projects and the POMs of every
+	 * module.
+	 *
+	 * @param plans
+	 *            filled with the plans of the root projects, by builder
+	 */
+	private void watch(ProsaWatcher watcher, List<MavenProject> modules, Map<ProsaFileStructureBuilder, FilesMappingPlanner> plans) throws IOException {
+		for (MavenProject module : modules) {
+			if (!module.hasParent() && filesMappings != null) {
+				ProsaFileStructureBuilder directoryBuilder = new ProsaFileStructureBuilder(module, filesMappings, rootDirectory, libDirectory);
+				directoryBuilder.setCopyThreads(copyThreads);
+				directoryBuilder.setIncremental(incremental, incrementalHash);
+				for (FilesMapping fm : filesMappings) {
+					File origin = directoryBuilder.getOrigin(fm);
+					if (origin != null) {
+						watcher.watch(origin, directoryBuilder.getTarget(fm));
+					}
+				}
+				plans.put(directoryBuilder, directoryBuilder.plan());
+			}
+			watcher.watchPom(module.getFile());
+		}
+	}
+
+	/**
+	 * Plan the files mappings again and copy the changes.
+	 *
+	 * @param changed
+	 *            the sources changed, null if any could have
+	 */
+	private void sync(Map<ProsaFileStructureBuilder, FilesMappingPlanner> plans, Set<File> changed) throws IOException, MojoExecutionException {
+		for (Map.Entry<ProsaFileStructureBuilder, FilesMappingPlanner> plan : plans.entrySet()) {
+			plan.setValue(plan.getKey().syncFileStructure(plan.getValue(), changed));
+		}
+		saveManifests();
+	}
+
+	/**
+	 * Build again the modules whose POM, or the POM of a parent, changed, and
+	 * write their Ant files when their inputs changed.
+	 *
+	 * @return the modules, the ones built again replaced
+	 */
+	private List<MavenProject> rebuild(List<MavenProject> modules, Set<File> poms, ArtifactResolverWrapper artifactResolverWrapper) throws MojoExecutionException {
+		long start = System.currentTimeMillis();
+
+		List<MavenProject> changed = new ArrayList<MavenProject>();
+		List<MavenProject> rebuilt = new ArrayList<MavenProject>();
+		for (MavenProject module : modules) {
+			if (!isChanged(module, poms)) {
+				rebuilt.add(module);
+				continue;
+			}
+			MavenProject project;
+			try {
+				project = projectBuilder.build(module.getFile(), localRepository, null);
+			} catch (ProjectBuildingException e) {
+				throw new MojoExecutionException("Unable to read " + module.getFile() + ": " + e.getMessage(), e);
+			}
+			resolveDependencies(project);
+			changed.add(project);
+			rebuilt.add(project);
+		}
+
+		// the plugin configurations of the changed POMs are indexed again
+		ReactorPluginConfigurationCache.getInstance().clear();
+		resolveExtraArtifacts(changed, artifactResolverWrapper);
+		for (MavenProject module : changed) {
+			writeModule(module, artifactResolverWrapper);
+		}
+		saveManifests();
+
+		getLog().info("Built " + changed.size() + " changed projects again in " + (System.currentTimeMillis() - start) + " ms");
+		return rebuilt;
+	}
+
+	/**
+	 * Check if the POM of the module or of a parent is one of the given ones.
+	 */
+	private static boolean isChanged(MavenProject module, Set<File> poms) {
+		for (MavenProject project = module; project != null; project = project.getParent()) {
+			if (project.getFile() != null && poms.contains(project.getFile().getAbsoluteFile())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,281 @@
+package mx.com.anzen.plugins;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Watches the sources copied to an Ant project with a {@link WatchService},
+ * and tells which ones changed. The events are gathered until none came for
+ * the debounce time, then the whole batch is returned: the files and
+ * directories created, modified or deleted, and the POM files changed. A new
+ * directory is watched as soon as it is seen. When events were lost, the
+ * batch only tells the sources could have changed.
+ * <p>
+ * Nothing is copied here: the caller plans the files mappings again with
+ * {@link FilesMappingPlanner} and copies what the batch changed, so the Ant
+ * project is the same as written by the other goals.
+ */
+public class ProsaWatcher {
+
+	private static Log log = new SystemStreamLog();
+
+	private final WatchService watchService;
+
+	/**
+	 * The watches of each registered directory.
+	 */
+	private final Map<WatchKey, List<Watch>> keys = new HashMap<WatchKey, List<Watch>>();
+
+	private long debounce = 100;
+
+	/**
+	 * @throws IOException
+	 *             if the file system can't be watched
+	 */
+	public ProsaWatcher() throws IOException {
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * @param debounce
+	 *            the milliseconds without any event before a batch is returned
+	 */
+	public void setDebounce(long debounce) {
+		this.debounce = Math.max(1, debounce);
+	}
+
+	/**
+	 * Watch a file or a directory tree. A source which doesn't exist is not
+	 * watched.
+	 *
+	 * @param source
+	 *            not null
+	 * @param target
+	 *            where the source is copied, not watched when it is inside
+	 *            the source, not null
+	 * @throws IOException
+	 *             if the source couldn't be watched
+	 */
+	public void watch(File source, File target) throws IOException {
+		if (source.isDirectory()) {
+			Watch watch = new Watch(source, target, true);
+			register(watch, watch.source);
+		} else if (source.isFile()) {
+			Watch watch = new Watch(source, target, false);
+			register(watch.source.getParent(), watch);
+		} else if (log.isDebugEnabled()) {
+			log.debug("Not watched, not found: " + source);
+		}
+	}
+
+	/**
+	 * Watch a POM, whose changes are returned apart.
+	 *
+	 * @param pom
+	 *            not null
+	 * @throws IOException
+	 *             if the POM couldn't be watched
+	 */
+	public void watchPom(File pom) throws IOException {
+		Watch watch = new Watch(pom, null, false);
+		register(watch.source.getParent(), watch);
+	}
+
+	/**
+	 * @return the number of directories watched
+	 */
+	public int getDirectoryCount() {
+		return keys.size();
+	}
+
+	/**
+	 * Wait for a batch of changes.
+	 *
+	 * @return the changes, not null
+	 * @throws IOException
+	 *             if a new directory couldn't be watched
+	 * @throws InterruptedException
+	 *             if interrupted waiting for the changes
+	 */
+	public Changes take() throws IOException, InterruptedException {
+		Changes changes = new Changes();
+		WatchKey key = watchService.take();
+		do {
+			collect(key, changes);
+			key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+		} while (key != null);
+		return changes;
+	}
+
+	/**
+	 * Stop watching.
+	 */
+	public void close() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			log.warn("Watch service not closed: " + e.getMessage());
+		}
+	}
+
+	private void collect(WatchKey key, Changes changes) throws IOException {
+		Path directory = (Path) key.watchable();
+		List<Watch> watches = keys.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (watches == null) {
+				continue;
+			}
+			if (event.kind() == OVERFLOW) {
+				for (Watch watch : watches) {
+					if (watch.targetPath == null) {
+						changes.poms.add(watch.source.toFile());
+					} else {
+						changes.overflow = true;
+						if (watch.tree && Files.isDirectory(watch.source)) {
+							register(watch, watch.source);
+						}
+					}
+				}
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			for (Watch watch : watches) {
+				if (!watch.matches(path)) {
+					continue;
+				}
+				if (watch.targetPath == null) {
+					changes.poms.add(path.toFile());
+					continue;
+				}
+				changes.sources.add(path.toFile());
+				if (watch.tree && event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+					register(watch, path);
+				}
+			}
+		}
+		if (!key.reset()) {
+			// the directory is gone
+			keys.remove(key);
+		}
+	}
+
+	/**
+	 * Register the directories of a tree, but the target when it is inside.
+	 */
+	private void register(final Watch watch, Path start) throws IOException {
+		Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (dir.equals(watch.targetPath)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				register(dir, watch);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				log.warn("Not watched: " + file + ": " + e.getMessage());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void register(Path directory, Watch watch) throws IOException {
+		WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+		List<Watch> watches = keys.get(key);
+		if (watches == null) {
+			watches = new ArrayList<Watch>();
+			keys.put(key, watches);
+		}
+		if (!watches.contains(watch)) {
+			watches.add(watch);
+		}
+	}
+
+	/**
+	 * A batch of changes.
+	 */
+	public static class Changes {
+
+		private final Set<File> sources = new LinkedHashSet<File>();
+
+		private final Set<File> poms = new LinkedHashSet<File>();
+
+		private boolean overflow;
+
+		/**
+		 * @return the absolute sources created, modified or deleted, null if
+		 *         events were lost and any could have changed
+		 */
+		public Set<File> getSources() {
+			return overflow ? null : sources;
+		}
+
+		/**
+		 * @return true if a source could have changed
+		 */
+		public boolean isSourceChanged() {
+			return overflow || !sources.isEmpty();
+		}
+
+		/**
+		 * @return the absolute POM files changed, empty if none
+		 */
+		public Set<File> getPoms() {
+			return poms;
+		}
+	}
+
+	/**
+	 * A file or a tree copied to a target, or a POM when there is no target.
+	 */
+	private static class Watch {
+
+		private final Path source;
+
+		private final Path targetPath;
+
+		private final boolean tree;
+
+		Watch(File source, File target, boolean tree) {
+			this.source = source.getAbsoluteFile().toPath().normalize();
+			this.targetPath = target != null ? target.getAbsoluteFile().toPath().normalize() : null;
+			this.tree = tree;
+		}
+
+		boolean matches(Path path) {
+			if (!tree) {
+				return path.equals(source);
+			}
+			// the target is skipped when it is inside the source
+			return path.startsWith(source) && !path.startsWith(targetPath);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package mx.com.anzen.plugins;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Plugin configuration indexes of every project of the reactor, by the
+ * identity of the model declaring them, so the parent projects shared by the
+ * modules are indexed once. The index of a module is built after the index of
+ * its parent: the configurations the module inherits are shared, and its own
+ * overrides are merged onto the trees of the parent instead of evaluated
+ * again for each module.
+ * <p>
+ * The cache lives as long as the Maven build it is bound to, see
+ * {@link SessionKey}: a new build in the same JVM starts with an empty cache.
+ */
+public class ReactorPluginConfigurationCache {
+
+	private static Log log = new SystemStreamLog();
+
+	private static ReactorPluginConfigurationCache current;
+
+	/**
+	 * The build the cache is bound to, see {@link SessionKey}.
+	 */
+	private final String sessionKey;
+
+	/**
+	 * Indexes by declaring model, compared by identity since a project built
+	 * again has a new model.
+	 */
+	private final Map<Model, PluginConfigurationIndex> indexes = new IdentityHashMap<Model, PluginConfigurationIndex>();
+
+	private ReactorPluginConfigurationCache(MavenSession session) {
+		this.sessionKey = SessionKey.of(session);
+	}
+
+	/**
+	 * Return the cache of the build of the given session, dropping the cache
+	 * of any previous build. The copies of a session share the cache.
+	 *
+	 * @param session
+	 *            the current Maven session, could be null
+	 * @return the cache bound to the session
+	 */
+	public static synchronized ReactorPluginConfigurationCache getInstance(MavenSession session) {
+		if (current == null || !current.sessionKey.equals(SessionKey.of(session))) {
+			current = new ReactorPluginConfigurationCache(session);
+		}
+		return current;
+	}
+
+	/**
+	 * @return the cache of the current session, or a cache not bound to any
+	 *         session if none was given yet
+	 */
+	public static synchronized ReactorPluginConfigurationCache getInstance() {
+		if (current == null) {
+			current = new ReactorPluginConfigurationCache(null);
+		}
+		return current;
+	}
+
+	/**
+	 * Drop every index, for instance when the projects have been built again.
+	 */
+	public void clear() {
+		synchronized (indexes) {
+			indexes.clear();
+		}
+	}
+
+	/**
+	 * Return the index of the given project, building it and the indexes of its
+	 * parents the first time.
+	 *
+	 * @param project
+	 *            not null
+	 * @return the index of the plugin configurations of the project
+	 * @throws IOException
+	 *             if any configuration couldn't be read
+	 */
+	public PluginConfigurationIndex getIndex(MavenProject project) throws IOException {
+		Model key = project.getModel();
+
+		PluginConfigurationIndex index;
+		synchronized (indexes) {
+			index = indexes.get(key);
+		}
+		if (index != null) {
+			return index;
+		}
+
+		PluginConfigurationIndex parent = null;
+		if (project.getParent() != null) {
+			parent = getIndex(project.getParent());
+		}
+
+		// built out of the lock, the first index put wins
+		index = PluginConfigurationIndex.build(project, parent);
+		synchronized (indexes) {
+			PluginConfigurationIndex previous = indexes.get(key);
+			if (previous != null) {
+				return previous;
+			}
+			indexes.put(key, index);
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Indexed " + index.getPluginCount() + " plugin configurations of " + project.getId() + ", " + index.getInheritedCount() + " shared with the parent, "
+					+ index.getMergedCount() + " merged onto it");
+		}
+		return index;
+	}
+}
@@ -0,0 +1,29 @@
+package mx.com.anzen.plugins;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Identifies the build a Maven session belongs to, so the caches of the
+ * plugin live for the whole build. Maven 3 gives each module of a parallel
+ * build (<code>-T</code>) its own copy of the session, but the copies share
+ * the execution root directory and the start time of the build.
+ */
+public final class SessionKey {
+
+	private SessionKey() {
+	}
+
+	/**
+	 * @param session
+	 *            could be null
+	 * @return the key of the build of the session, empty if there is no
+	 *         session
+	 */
+	public static String of(MavenSession session) {
+		if (session == null) {
+			return "";
+		}
+		long start = (session.getStartTime() != null) ? session.getStartTime().getTime() : 0;
+		return session.getExecutionRootDirectory() + "@" + start;
+	}
+}
@@ -0,0 +1,208 @@
+package mx.com.anzen.plugins;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * A compiled path over a {@link Xpp3Dom} tree. It supports the subset of
+ * <code>XPath</code> used to look up plugin options: element names separated
+ * by <code>/</code> (a child) or <code>//</code> (a descendant at any depth).
+ * For instance, <code>archive//manifest//mainClass</code> selects the first
+ * <code>mainClass</code> under a <code>manifest</code> under the
+ * <code>archive</code> child of the <code>&lt;configuration/&gt;</code>.
+ * <p>
+ * Expressions are compiled once and cached, see {@link #compile(String)}.
+ */
+public class Xpp3DomPath {
+
+	/**
+	 * Paths already compiled, by expression.
+	 */
+	private static final Map<String, Xpp3DomPath> compiled = new ConcurrentHashMap<String, Xpp3DomPath>();
+
+	private final String expression;
+
+	/**
+	 * The element name of each step.
+	 */
+	private final String[] names;
+
+	/**
+	 * Whether each step selects a descendant (<code>//</code>) instead of a
+	 * child (<code>/</code>).
+	 */
+	private final boolean[] descendants;
+
+	private Xpp3DomPath(String expression, String[] names, boolean[] descendants) {
+		this.expression = expression;
+		this.names = names;
+		this.descendants = descendants;
+	}
+
+	/**
+	 * Return the compiled path for the given expression, compiling it the
+	 * first time.
+	 *
+	 * @param expression
+	 *            not null, like <code>archive//manifest//mainClass</code>
+	 * @return the compiled path
+	 * @throws IllegalArgumentException
+	 *             if the expression is not supported
+	 */
+	public static Xpp3DomPath compile(String expression) {
+		Xpp3DomPath path = compiled.get(expression);
+		if (path == null) {
+			path = parse(expression);
+			compiled.put(expression, path);
+		}
+		return path;
+	}
+
+	private static Xpp3DomPath parse(String expression) {
+		List<String> names = new ArrayList<String>();
+		List<Boolean> descendants = new ArrayList<Boolean>();
+
+		int i = 0;
+		boolean descendant = false;
+		while (i < expression.length()) {
+			if (expression.startsWith("//", i)) {
+				descendant = true;
+				i += 2;
+			} else if (expression.charAt(i) == '/') {
+				i++;
+			}
+
+			int end = expression.indexOf('/', i);
+			if (end < 0) {
+				end = expression.length();
+			}
+			String name = expression.substring(i, end).trim();
+			if (StringUtils.isEmpty(name) || !isName(name)) {
+				throw new IllegalArgumentException("Unsupported path expression: " + expression);
+			}
+			names.add(name);
+			descendants.add(Boolean.valueOf(descendant));
+
+			descendant = false;
+			i = end;
+		}
+
+		if (names.isEmpty()) {
+			throw new IllegalArgumentException("Unsupported path expression: " + expression);
+		}
+
+		boolean[] flags = new boolean[descendants.size()];
+		for (int j = 0; j < flags.length; j++) {
+			flags[j] = descendants.get(j).booleanValue();
+		}
+		return new Xpp3DomPath(expression, names.toArray(new String[0]), flags);
+	}
+
+	private static boolean isName(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '.') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the first node, in document order, selected by this path.
+	 *
+	 * @param context
+	 *            the <code>&lt;configuration/&gt;</code> node, may be null
+	 * @return the node selected or null if none
+	 */
+	public Xpp3Dom selectFirst(Xpp3Dom context) {
+		if (context == null) {
+			return null;
+		}
+		return select(context, 0);
+	}
+
+	private Xpp3Dom select(Xpp3Dom context, int step) {
+		if (step == names.length) {
+			return context;
+		}
+
+		Xpp3Dom[] children = context.getChildren();
+		for (int i = 0; i < children.length; i++) {
+			Xpp3Dom child = children[i];
+			if (child.getName().equals(names[step])) {
+				Xpp3Dom found = select(child, step + 1);
+				if (found != null) {
+					return found;
+				}
+			}
+			if (descendants[step]) {
+				Xpp3Dom found = select(child, step);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if a node is selected by this path, given the names of the
+	 * elements from the <code>&lt;configuration/&gt;</code> child down to the
+	 * node itself.
+	 *
+	 * @param elementNames
+	 *            the names of the node and its ancestors, the node last
+	 * @param length
+	 *            the number of names to consider in <code>elementNames</code>
+	 * @return true if the node is selected by this path
+	 */
+	public boolean matches(String[] elementNames, int length) {
+		if (length <= 0) {
+			return false;
+		}
+		return matches(elementNames, names.length - 1, length - 1);
+	}
+
+	private boolean matches(String[] elementNames, int step, int position) {
+		if (!names[step].equals(elementNames[position])) {
+			return false;
+		}
+		if (step == 0) {
+			return descendants[0] || position == 0;
+		}
+		if (!descendants[step]) {
+			return position > 0 && matches(elementNames, step - 1, position - 1);
+		}
+		for (int i = position - 1; i >= 0; i--) {
+			if (matches(elementNames, step - 1, i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the name of the element selected by the last step
+	 */
+	public String getLastName() {
+		return names[names.length - 1];
+	}
+
+	/**
+	 * @return the expression this path was compiled from
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+}
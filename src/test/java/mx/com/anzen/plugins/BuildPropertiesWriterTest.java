@@ -0,0 +1,75 @@
+package mx.com.anzen.plugins;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link BuildPropertiesWriter}.
+ */
+public class BuildPropertiesWriterTest extends TestCase {
+
+	private static final String EOL = System.getProperty("line.separator");
+
+	public void testEscape() throws IOException {
+		BuildPropertiesWriter writer = new BuildPropertiesWriter();
+		writer.setProperty("key with:special=chars", " leading and inner space");
+		writer.setProperty("path", "C:\\dir\\file #1!");
+		writer.setProperty("lines", "a\tb\nc\rd\fe");
+		writer.setProperty("unicode", "caf\u00e9 \u20ac");
+
+		String text = store(writer, null);
+		assertTrue(text, text.indexOf("key\\ with\\:special\\=chars=\\ leading and inner space" + EOL) >= 0);
+		assertTrue(text, text.indexOf("path=C\\:\\\\dir\\\\file \\#1\\!" + EOL) >= 0);
+		assertTrue(text, text.indexOf("lines=a\\tb\\nc\\rd\\fe" + EOL) >= 0);
+		assertTrue(text, text.indexOf("unicode=caf\\u00E9 \\u20AC" + EOL) >= 0);
+
+		// read back as written
+		Properties properties = new Properties();
+		properties.load(new StringReader(text));
+		assertEquals(4, properties.size());
+		assertEquals(" leading and inner space", properties.getProperty("key with:special=chars"));
+		assertEquals("C:\\dir\\file #1!", properties.getProperty("path"));
+		assertEquals("a\tb\nc\rd\fe", properties.getProperty("lines"));
+		assertEquals("caf\u00e9 \u20ac", properties.getProperty("unicode"));
+	}
+
+	public void testGroupsAndOrder() throws IOException {
+		BuildPropertiesWriter writer = new BuildPropertiesWriter();
+		writer.setGroup("Sources");
+		writer.setProperty("build.srcDir.10", "j");
+		writer.setProperty("build.srcDir.2", "b");
+		writer.setProperty("build.srcDir", "a");
+		writer.setGroup("Empty");
+		writer.setGroup("Output");
+		writer.setProperty("build.dir", "target");
+
+		assertEquals("#header" + EOL //
+				+ "# Sources" + EOL //
+				+ "build.srcDir=a" + EOL //
+				+ "build.srcDir.2=b" + EOL //
+				+ "build.srcDir.10=j" + EOL //
+				+ EOL //
+				+ "# Output" + EOL //
+				+ "build.dir=target" + EOL, store(writer, "header"));
+	}
+
+	public void testPropertySetAgainMovesToCurrentGroup() throws IOException {
+		BuildPropertiesWriter writer = new BuildPropertiesWriter();
+		writer.setProperty("a", "1");
+		writer.setGroup("Second");
+		writer.setProperty("b", "2");
+		writer.setProperty("a", "3");
+
+		assertEquals("# Second" + EOL + "a=3" + EOL + "b=2" + EOL, store(writer, null));
+	}
+
+	private static String store(BuildPropertiesWriter writer, String header) throws IOException {
+		StringWriter out = new StringWriter();
+		writer.store(out, header);
+		return out.toString();
+	}
+}
@@ -0,0 +1,157 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests of {@link CopyManifest}.
+ */
+public class CopyManifestTest extends TestCase {
+
+	private File directory;
+
+	private File root;
+
+	private CopyManifest manifest;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("manifest").toFile();
+		root = new File(directory, "root");
+		root.mkdirs();
+		manifest = CopyManifest.getInstance(root);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void testUpToDate() throws IOException {
+		File source = write("repository/a.jar", "a", 1000000000000L);
+		File target = copy(source, "lib/a.jar");
+
+		assertFalse(manifest.isUpToDate(source, target));
+		manifest.record("lib", source, target);
+		assertTrue(manifest.isUpToDate(source, target));
+		assertFalse(manifest.isUpToDate(write("other/a.jar", "a", 1000000000000L), target));
+	}
+
+	public void testSourceChanged() throws IOException {
+		File source = write("repository/a.jar", "a", 1000000000000L);
+		File target = copy(source, "lib/a.jar");
+		manifest.record("lib", source, target);
+
+		// downloaded again, same content
+		source.setLastModified(1000000002000L);
+		assertFalse(manifest.isUpToDate(source, target));
+
+		write("repository/a.jar", "ab", 1000000000000L);
+		assertFalse(manifest.isUpToDate(source, target));
+	}
+
+	public void testTargetChanged() throws IOException {
+		File source = write("repository/a.jar", "a", 1000000000000L);
+		File target = copy(source, "lib/a.jar");
+		manifest.record("lib", source, target);
+
+		write("root/lib/a.jar", "edited", 1000000000000L);
+		assertFalse(manifest.isUpToDate(source, target));
+
+		target.delete();
+		assertFalse(manifest.isUpToDate(source, target));
+	}
+
+	public void testHashing() throws IOException {
+		manifest.setHashing(true);
+		File source = write("repository/a-SNAPSHOT.jar", "a", 1000000000000L);
+		File target = copy(source, "lib/a-SNAPSHOT.jar");
+		manifest.record("lib", source, target);
+		manifest.save();
+
+		// downloaded again, same content
+		source.setLastModified(1000000002000L);
+		assertTrue(manifest.isUpToDate(source, target));
+		// the new last modified time is kept
+		File file = new File(root, CopyManifest.DEFAULT_MANIFEST_FILENAME);
+		file.delete();
+		manifest.save();
+		assertTrue(FileUtils.fileRead(file).indexOf("\t1000000002000\t") > 0);
+
+		// same size, new content
+		write("repository/a-SNAPSHOT.jar", "b", 1000000004000L);
+		assertFalse(manifest.isUpToDate(source, target));
+	}
+
+	public void testRemoveStale() throws IOException {
+		File a = write("repository/a.jar", "a", 1000000000000L);
+		File b = write("repository/b.jar", "b", 1000000000000L);
+		File targetA = copy(a, "lib/a.jar");
+		File targetB = copy(b, "lib/b.jar");
+		File other = copy(b, "module/lib/b.jar");
+		manifest.record("lib", a, targetA);
+		manifest.record("lib", b, targetB);
+		manifest.record("module/lib", b, other);
+
+		Set<File> kept = new HashSet<File>(Collections.singleton(targetA));
+		assertEquals(1, manifest.removeStale("lib", kept));
+		assertTrue(targetA.isFile());
+		assertFalse(targetB.exists());
+		assertTrue(other.isFile());
+		assertFalse(manifest.isUpToDate(b, targetB));
+		assertTrue(manifest.isUpToDate(b, other));
+
+		assertEquals(0, manifest.removeStale("lib", kept));
+	}
+
+	public void testSaveOnlyWhenChanged() throws IOException {
+		File source = write("repository/a.jar", "a", 1000000000000L);
+		File target = copy(source, "lib/a.jar");
+		File file = new File(root, CopyManifest.DEFAULT_MANIFEST_FILENAME);
+
+		manifest.save();
+		assertFalse(file.exists());
+
+		manifest.record("lib", source, target);
+		manifest.save();
+		String content = FileUtils.fileRead(file);
+		assertTrue(content, content.startsWith("lib/a.jar\tlib\t", content.indexOf('\n') + 1));
+
+		file.delete();
+		manifest.save();
+		assertFalse(file.exists());
+		assertEquals(0, manifest.removeStale("lib", Collections.singleton(target)));
+		manifest.save();
+		assertFalse(file.exists());
+
+		manifest.record("lib", source, target);
+		CopyManifest.saveAll();
+		assertEquals(content, FileUtils.fileRead(file));
+	}
+
+	public void testGetInstance() throws IOException {
+		assertSame(manifest, CopyManifest.getInstance(new File(directory, "root")));
+	}
+
+	private File write(String name, String content, long lastModified) throws IOException {
+		File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file.getPath(), content);
+		file.setLastModified(lastModified);
+		return file;
+	}
+
+	private File copy(File source, String target) throws IOException {
+		File file = new File(root, target);
+		FileUtils.copyFile(source, file);
+		return file;
+	}
+}
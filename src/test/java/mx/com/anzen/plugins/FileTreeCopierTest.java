@@ -0,0 +1,74 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests of {@link FileTreeCopier}.
+ */
+public class FileTreeCopierTest extends TestCase {
+
+	private File directory;
+
+	private FileTreeCopier copier;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("tree").toFile();
+		copier = new FileTreeCopier(4);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		copier.shutdown();
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void testCopyAgain() throws IOException {
+		Map<File, File> copies = new LinkedHashMap<File, File>();
+		new File(directory, "target").mkdirs();
+		for (int i = 0; i < 40; i++) {
+			copies.put(new File(directory, "target/" + i + ".txt"), write("source/" + i + ".txt", "file " + i));
+		}
+
+		copier.copy(copies);
+		assertEquals(40, copier.getFileCount());
+		assertEquals(40, copier.getTargets().size());
+		assertEquals("file 39", FileUtils.fileRead(new File(directory, "target/39.txt")));
+
+		// the same pool, only the changed file with a manifest
+		copier.setManifest(CopyManifest.getInstance(directory), "files");
+		copier.copy(copies);
+		write("source/7.txt", "changed");
+		copier.copy(copies);
+		assertEquals(81, copier.getFileCount());
+		assertEquals(39, copier.getSkippedCount());
+		assertEquals("changed", FileUtils.fileRead(new File(directory, "target/7.txt")));
+	}
+
+	public void testMissingSource() throws IOException {
+		new File(directory, "target").mkdirs();
+		Map<File, File> copies = new LinkedHashMap<File, File>();
+		copies.put(new File(directory, "target/a.txt"), new File(directory, "missing.txt"));
+		try {
+			copier.copy(copies);
+			fail("Copied a missing source");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file.getPath(), content);
+		return file;
+	}
+}
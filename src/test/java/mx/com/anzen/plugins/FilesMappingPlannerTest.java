@@ -0,0 +1,148 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests of {@link FilesMappingPlanner}.
+ */
+public class FilesMappingPlannerTest extends TestCase {
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("planner").toFile().getCanonicalFile();
+		write("src/a/x.txt", "a/x");
+		write("src/a/sub/y.txt", "a/sub/y");
+		write("src/b/x.txt", "b/x");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void testLaterMappingWins() throws IOException {
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		planner.add(new FilesMapping(), file("src/a"), file("out/dir"));
+		planner.add(new FilesMapping(), file("src/b"), file("out/dir"));
+
+		Map<File, File> copies = planner.getCopies();
+		assertEquals(2, copies.size());
+		assertEquals(file("src/b/x.txt"), copies.get(file("out/dir/x.txt")));
+		assertEquals(file("src/a/sub/y.txt"), copies.get(file("out/dir/sub/y.txt")));
+		assertEquals(1, planner.getReplacedCount());
+		assertEquals(2, planner.getFileCount());
+		assertEquals(10, planner.getByteCount());
+	}
+
+	public void testChainedMappingsCopyFromTheSources() throws IOException {
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		planner.add(new FilesMapping(), file("src/a"), file("out/dir"));
+		planner.add(new FilesMapping(), file("src/b"), file("out/dir"));
+		// read from the targets of the previous mappings, not copied yet
+		planner.add(new FilesMapping(), file("out/dir"), file("out/copy"));
+		planner.add(new FilesMapping(), file("out/dir/x.txt"), file("out/single.txt"));
+
+		Map<File, File> copies = planner.getCopies();
+		assertEquals(5, copies.size());
+		assertEquals(file("src/b/x.txt"), copies.get(file("out/copy/x.txt")));
+		assertEquals(file("src/a/sub/y.txt"), copies.get(file("out/copy/sub/y.txt")));
+		assertEquals(file("src/b/x.txt"), copies.get(file("out/single.txt")));
+		assertFalse(file("out").exists());
+	}
+
+	public void testFileIntoPlannedDirectory() throws IOException {
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		planner.add(new FilesMapping(), file("src/b"), file("out/dir"));
+		planner.add(new FilesMapping(), file("src/a/x.txt"), file("out/dir"));
+
+		Map<File, File> copies = planner.getCopies();
+		assertEquals(1, copies.size());
+		assertEquals(file("src/a/x.txt"), copies.get(file("out/dir/x.txt")));
+		assertEquals(1, planner.getReplacedCount());
+	}
+
+	public void testTargetInsideSource() throws IOException {
+		write("src/a/copy/z.txt", "a/copy/z");
+
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		planner.add(new FilesMapping(), file("src/a"), file("src/a/copy"));
+
+		Map<File, File> copies = planner.getCopies();
+		assertEquals(2, copies.size());
+		assertEquals(file("src/a/x.txt"), copies.get(file("src/a/copy/x.txt")));
+		assertEquals(file("src/a/sub/y.txt"), copies.get(file("src/a/copy/sub/y.txt")));
+	}
+
+	public void testDirectories() throws IOException {
+		file("src/empty").mkdirs();
+
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		planner.add(new FilesMapping(), file("src/a"), file("out/dir"));
+		planner.add(new FilesMapping(), null, file("out/mkdir"));
+		planner.add(new FilesMapping(), file("src/empty"), file("out/empty"));
+		planner.add(new FilesMapping(), null, file("src/b"));
+
+		// parents first, without the ones made by a directory inside them
+		assertEquals(Arrays.asList(file("out/dir/sub"), file("out/empty"), file("out/mkdir"), file("src/b")), planner.getLeafDirectories());
+		// without the ones already there
+		assertEquals(Arrays.asList(file("out/dir/sub"), file("out/empty"), file("out/mkdir")), planner.getDirectories());
+	}
+
+	public void testPlanAgain() throws IOException {
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		planner.add(new FilesMapping(), file("src/a"), file("out/dir"));
+		planner.add(new FilesMapping(), file("src/b"), file("out/dir"));
+
+		write("src/a/unseen.txt", "a/unseen");
+		write("src/b/sub/z.txt", "b/sub/z");
+		Set<File> changed = new HashSet<File>(Arrays.asList(file("src/b/sub"), file("src/b/sub/z.txt")));
+		FilesMappingPlanner again = new FilesMappingPlanner(planner, changed);
+		again.add(new FilesMapping(), file("src/a"), file("out/dir"));
+		again.add(new FilesMapping(), file("src/b"), file("out/dir"));
+
+		// src/a is not walked again
+		Map<File, File> copies = again.getCopies();
+		assertEquals(3, copies.size());
+		assertEquals(file("src/b/x.txt"), copies.get(file("out/dir/x.txt")));
+		assertEquals(file("src/b/sub/z.txt"), copies.get(file("out/dir/sub/z.txt")));
+		assertNull(copies.get(file("out/dir/unseen.txt")));
+		assertEquals(1, again.getReplacedCount());
+
+		FilesMappingPlanner all = new FilesMappingPlanner(again, null);
+		all.add(new FilesMapping(), file("src/a"), file("out/dir"));
+		all.add(new FilesMapping(), file("src/b"), file("out/dir"));
+		assertEquals(file("src/a/unseen.txt"), all.getCopies().get(file("out/dir/unseen.txt")));
+	}
+
+	public void testOriginNotFound() {
+		FilesMappingPlanner planner = new FilesMappingPlanner();
+		try {
+			planner.add(new FilesMapping(), file("src/missing"), file("out"));
+			fail("Planned a missing origin");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private File file(String name) {
+		return new File(directory, name);
+	}
+
+	private void write(String name, String content) throws IOException {
+		File file = file(name);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file.getPath(), content);
+	}
+}
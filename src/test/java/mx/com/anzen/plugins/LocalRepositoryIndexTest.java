@@ -0,0 +1,65 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests of {@link LocalRepositoryIndex}.
+ */
+public class LocalRepositoryIndexTest extends TestCase {
+
+	private File repository;
+
+	@Override
+	protected void setUp() throws Exception {
+		repository = Files.createTempDirectory("repository").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(repository);
+	}
+
+	public void testFind() throws IOException {
+		File jar = write("org/acme/core/1.0/core-1.0.jar", "core");
+		write("org/acme/core/1.0/core-1.0.jar.sha1", "sha1");
+
+		LocalRepositoryIndex index = LocalRepositoryIndex.getInstance(repository);
+		assertEquals(jar, index.find("org.acme", "core", "1.0", "jar"));
+		assertNull(index.find("org.acme", "core", "1.0", "pom"));
+		assertNull(index.find("org.acme", "core", "2.0", "jar"));
+		assertEquals(5, index.getDirectoryCount());
+	}
+
+	public void testSymbolicLinkLoopNotFollowed() throws IOException {
+		File jar = write("org/acme/core/1.0/core-1.0.jar", "core");
+		Path loop = new File(repository, "org/acme/loop").toPath();
+		try {
+			Files.createSymbolicLink(loop, repository.toPath());
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+
+		try {
+			LocalRepositoryIndex index = LocalRepositoryIndex.getInstance(repository);
+			assertEquals(jar, index.find("org.acme", "core", "1.0", "jar"));
+			assertEquals(5, index.getDirectoryCount());
+		} finally {
+			// not followed when the repository is deleted
+			Files.delete(loop);
+		}
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(repository, name);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file.getPath(), content);
+		return file;
+	}
+}
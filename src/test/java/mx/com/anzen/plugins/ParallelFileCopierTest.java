@@ -0,0 +1,94 @@
+package mx.com.anzen.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests of {@link ParallelFileCopier}.
+ */
+public class ParallelFileCopierTest extends TestCase {
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("copier").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void testCopyFile() throws IOException {
+		File source = write("source.jar", "content");
+		File target = new File(directory, "target.jar");
+		source.setLastModified(1000000000000L);
+
+		assertEquals(7, ParallelFileCopier.copyFile(source, target));
+		assertEquals("content", FileUtils.fileRead(target));
+		assertEquals(1000000000000L, target.lastModified());
+		assertEquals(2, directory.list().length);
+	}
+
+	public void testCopyFileReplacesHardLink() throws IOException {
+		File stored = write("stored.jar", "stored");
+		File target = new File(directory, "target.jar");
+		try {
+			Files.createLink(target.toPath(), stored.toPath());
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+
+		ParallelFileCopier.copyFile(write("source.jar", "plain"), target);
+		assertEquals("plain", FileUtils.fileRead(target));
+		assertEquals("stored", FileUtils.fileRead(stored));
+	}
+
+	public void testCopyFileReplacesSymbolicLink() throws IOException {
+		File stored = write("stored.jar", "stored");
+		Path target = new File(directory, "target.jar").toPath();
+		try {
+			Files.createSymbolicLink(target, stored.toPath());
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+
+		ParallelFileCopier.copyFile(write("source.jar", "plain"), target.toFile());
+		assertFalse(Files.isSymbolicLink(target));
+		assertEquals("plain", FileUtils.fileRead(target.toFile()));
+		assertEquals("stored", FileUtils.fileRead(stored));
+	}
+
+	public void testSharedLibraryThenPlainCopy() throws IOException {
+		File source = write("repository/a.jar", "a");
+		File lib = new File(directory, "lib");
+		File store = new File(directory, LibraryStore.DEFAULT_STORE_DIRECTORY);
+
+		ParallelFileCopier copier = new ParallelFileCopier(1);
+		copier.setLibraryStore(new LibraryStore(store));
+		copier.copyToDirectory(Collections.singletonList(source), lib);
+		File[] blobs = store.listFiles();
+		assertEquals(1, blobs.length);
+
+		// the shared libraries switched off, with a new version of the jar
+		FileUtils.fileWrite(source.getPath(), "a2");
+		new ParallelFileCopier(1).copyToDirectory(Collections.singletonList(source), lib);
+		assertEquals("a2", FileUtils.fileRead(new File(lib, "a.jar")));
+		assertEquals("a", FileUtils.fileRead(blobs[0]));
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file.getPath(), content);
+		return file;
+	}
+}
@@ -0,0 +1,87 @@
+package mx.com.anzen.plugins;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.xml.PrettyPrintXMLWriter;
+import org.codehaus.plexus.util.xml.XMLWriter;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+/**
+ * Tests of {@link PluginOptionMapper}.
+ */
+public class PluginOptionMapperTest extends TestCase {
+
+	private static final PluginOptionMapping[] OPTIONS = {
+			new PluginOptionMapping("archive//compress", "compress", "true", 3),
+			new PluginOptionMapping("archive//manifest//mainClass", null),
+			new PluginOptionMapping("includes", "includes ", null, 3),
+			new PluginOptionMapping("excludes", "excludes", null, 3),
+			new PluginOptionMapping("show", "access", "protected", 3) };
+
+	public void testFirstConfigurationWins() throws Exception {
+		Xpp3Dom execution = build("<configuration><show>private</show></configuration>");
+		Xpp3Dom plugin = build("<configuration><show>public</show><excludes>**/Test*</excludes></configuration>");
+
+		Map<String, String> values = PluginOptionMapper.map(Arrays.asList(execution, plugin), OPTIONS);
+		assertEquals("private", values.get("show"));
+		assertEquals("**/Test*", values.get("excludes"));
+	}
+
+	public void testFirstNodeInDocumentOrderWins() throws Exception {
+		Xpp3Dom configuration = build("<configuration><archive>" //
+				+ "<manifest><mainClass>a.First</mainClass></manifest>" //
+				+ "<manifest><mainClass>a.Second</mainClass></manifest>" //
+				+ "</archive></configuration>");
+
+		Map<String, String> values = PluginOptionMapper.map(Arrays.asList(configuration), OPTIONS);
+		assertEquals("a.First", values.get("archive//manifest//mainClass"));
+	}
+
+	public void testDefaultValues() throws Exception {
+		Xpp3Dom configuration = build("<configuration><compress/><other><show>nested</show></other></configuration>");
+
+		Map<String, String> values = PluginOptionMapper.map(Arrays.asList(configuration), OPTIONS);
+		// not under archive, nor a child of the configuration
+		assertEquals("true", values.get("archive//compress"));
+		assertEquals("protected", values.get("show"));
+		assertNull(values.get("includes"));
+		assertTrue(values.containsKey("includes"));
+	}
+
+	public void testEmptyOption() throws Exception {
+		Xpp3Dom configuration = build("<configuration><archive><compress/></archive></configuration>");
+
+		Map<String, String> values = PluginOptionMapper.map(Arrays.asList(configuration), OPTIONS);
+		assertEquals("", values.get("archive//compress"));
+	}
+
+	public void testWriteAttributes() throws Exception {
+		Xpp3Dom configuration = build("<configuration><includes>**/*.jar</includes><show>private</show></configuration>");
+		Map<String, String> values = PluginOptionMapper.map(Arrays.asList(configuration), OPTIONS);
+
+		StringWriter out = new StringWriter();
+		XMLWriter writer = new PrettyPrintXMLWriter(out);
+		writer.startElement("ear");
+		PluginOptionMapper.writeAttributes(writer, "ear", OPTIONS, values);
+		writer.endElement();
+
+		String xml = out.toString();
+		// the attribute name written by the ear task before the tables
+		assertTrue(xml, xml.indexOf("includes =\"**/*.jar\"") > 0);
+		assertTrue(xml, xml.indexOf("access=\"private\"") > 0);
+		assertTrue(xml, xml.indexOf("compress=\"true\"") > 0);
+		assertTrue(xml, xml.indexOf("compress") < xml.indexOf("includes") && xml.indexOf("includes") < xml.indexOf("access"));
+		assertEquals(xml, -1, xml.indexOf("excludes"));
+		assertEquals(xml, -1, xml.indexOf("mainClass"));
+	}
+
+	private static Xpp3Dom build(String xml) throws Exception {
+		return Xpp3DomBuilder.build(new StringReader(xml));
+	}
+}
@@ -0,0 +1,49 @@
+package mx.com.anzen.plugins;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link PropertyValueTrie}.
+ */
+public class PropertyValueTrieTest extends TestCase {
+
+	public void testLongestPrefix() {
+		PropertyValueTrie trie = new PropertyValueTrie();
+		trie.put("/opt", "opt.dir");
+		trie.put("/opt/shared", "shared.dir");
+		trie.put("/opt/shared/lib/servlet-api.jar", "servlet.jar");
+
+		assertEquals("/opt/shared", trie.getLongestPrefix("/opt/shared/servlet-api.jar"));
+		assertEquals("/opt/shared/lib/servlet-api.jar", trie.getLongestPrefix("/opt/shared/lib/servlet-api.jar"));
+		assertEquals("/opt", trie.getLongestPrefix("/opt/other/a.jar"));
+		assertEquals("/opt/shared", trie.getLongestPrefix("/opt/shared/lib/a.jar"));
+		assertNull(trie.getLongestPrefix("/usr/lib/a.jar"));
+		assertNull(trie.getLongestPrefix("/op"));
+		assertNull(trie.getLongestPrefix(""));
+	}
+
+	public void testGet() {
+		PropertyValueTrie trie = new PropertyValueTrie();
+		trie.put("/opt/shared", "shared.dir");
+
+		assertEquals("shared.dir", trie.get("/opt/shared"));
+		assertNull(trie.get("/opt"));
+		assertNull(trie.get("/opt/shared/lib"));
+	}
+
+	public void testSameValueKeptForLastProperty() {
+		PropertyValueTrie trie = new PropertyValueTrie();
+		trie.put("/opt/shared", "shared.dir");
+		trie.put("/opt/shared", "lib.dir");
+
+		assertEquals("lib.dir", trie.get("/opt/shared"));
+	}
+
+	public void testEmptyValueIgnored() {
+		PropertyValueTrie trie = new PropertyValueTrie();
+		trie.put("", "empty");
+
+		assertNull(trie.get(""));
+		assertNull(trie.getLongestPrefix("/opt"));
+	}
+}
@@ -0,0 +1,178 @@
+package mx.com.anzen.plugins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.tar.TarEntry;
+import org.apache.tools.tar.TarInputStream;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Tests of {@link ProsaArchive}.
+ */
+public class ProsaArchiveTest extends TestCase {
+
+	private File directory;
+
+	private File root;
+
+	@Override
+	protected void setUp() throws Exception {
+		directory = Files.createTempDirectory("archive").toFile();
+		root = new File(directory, "prosa");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	public void testZip() throws IOException {
+		File archive = new File(directory, "prosa.zip");
+		ProsaArchive prosaArchive = new ProsaArchive(archive, root);
+		fill(prosaArchive);
+		prosaArchive.close();
+
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		ZipFile zip = new ZipFile(archive);
+		try {
+			for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+				ZipEntry entry = e.nextElement();
+				entries.put(entry.getName(), entry.isDirectory() ? null : read(zip.getInputStream(entry)));
+				if (entry.getName().endsWith(".jar")) {
+					assertEquals(ZipEntry.STORED, entry.getMethod());
+				} else if (!entry.isDirectory()) {
+					assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+				}
+			}
+		} finally {
+			zip.close();
+		}
+		assertEntries(entries);
+	}
+
+	public void testTarGz() throws IOException {
+		File archive = new File(directory, "prosa.tgz");
+		assertTrue(ProsaArchive.isTar(archive));
+		ProsaArchive prosaArchive = new ProsaArchive(archive, root);
+		fill(prosaArchive);
+		prosaArchive.close();
+
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		TarInputStream tar = new TarInputStream(new GZIPInputStream(new FileInputStream(archive)));
+		try {
+			TarEntry entry;
+			while ((entry = tar.getNextEntry()) != null) {
+				String name = entry.getName();
+				if (entry.isDirectory()) {
+					entries.put(name, null);
+				} else {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					tar.copyEntryContents(out);
+					entries.put(name, out.toString("UTF-8"));
+				}
+			}
+		} finally {
+			tar.close();
+		}
+		assertEntries(entries);
+	}
+
+	public void testDirectoryAndFileConflicts() throws IOException {
+		ProsaArchive prosaArchive = new ProsaArchive(new File(directory, "prosa.zip"), root);
+		prosaArchive.addDirectory(new File(root, "lib"));
+		prosaArchive.addFile(new File(root, "build.xml"), "<project/>".getBytes("UTF-8"));
+
+		// skipped
+		assertEquals(0, prosaArchive.addFile(write("a.jar", "a"), new File(root, "lib")));
+		assertTrue(prosaArchive.isDirectory(new File(root, "lib")));
+		try {
+			prosaArchive.addDirectory(new File(root, "build.xml"));
+			fail("Added a directory over a file");
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(prosaArchive.isFile(new File(root, "build.xml")));
+		assertEquals(1, prosaArchive.getFileCount());
+		prosaArchive.close();
+	}
+
+	public void testNotUnderRoot() throws IOException {
+		ProsaArchive prosaArchive = new ProsaArchive(new File(directory, "prosa.zip"), root);
+		try {
+			prosaArchive.addFile(new File(directory, "build.xml"), new byte[0]);
+			fail("Added a file out of the root directory");
+		} catch (IllegalArgumentException e) {
+			// expected
+		} finally {
+			prosaArchive.close();
+		}
+	}
+
+	public void testMissingSource() throws IOException {
+		ProsaArchive prosaArchive = new ProsaArchive(new File(directory, "prosa.zip"), root);
+		prosaArchive.addFile(new File(directory, "missing.jar"), new File(root, "lib/missing.jar"));
+		try {
+			prosaArchive.close();
+			fail("Closed with a missing source");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Add a file twice to the same target, the second time from a later
+	 * mapping, as the copies to the root directory would.
+	 */
+	private void fill(ProsaArchive prosaArchive) throws IOException {
+		prosaArchive.addFile(write("first/a.jar", "first"), new File(root, "lib/a.jar"));
+		prosaArchive.addFile(new File(root, "build.xml"), "<project/>".getBytes("UTF-8"));
+		assertEquals(6, prosaArchive.addFile(write("second/a.jar", "second"), new File(root, "lib/a.jar")));
+		prosaArchive.addDirectory(new File(root, "conf/empty"));
+		prosaArchive.addFile(new File(root, "build.xml"), "<project name=\"prosa\"/>".getBytes("UTF-8"));
+
+		assertEquals(2, prosaArchive.getFileCount());
+		assertEquals(6 + 23, prosaArchive.getByteCount());
+		assertTrue(prosaArchive.isFile(new File(root, "lib/a.jar")));
+		assertTrue(prosaArchive.isDirectory(new File(root, "conf")));
+		assertFalse(prosaArchive.isFile(new File(root, "lib")));
+	}
+
+	private static void assertEntries(Map<String, String> entries) {
+		List<String> names = new ArrayList<String>(entries.keySet());
+		// the directories first, in the order they were added
+		assertEquals("[prosa/, prosa/lib/, prosa/conf/, prosa/conf/empty/, prosa/lib/a.jar, prosa/build.xml]", names.toString());
+		assertEquals("second", entries.get("prosa/lib/a.jar"));
+		assertEquals("<project name=\"prosa\"/>", entries.get("prosa/build.xml"));
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		FileUtils.fileWrite(file.getPath(), content);
+		return file;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try {
+			return IOUtil.toString(in, "UTF-8");
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+}
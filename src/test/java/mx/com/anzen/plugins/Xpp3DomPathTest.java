@@ -0,0 +1,84 @@
+package mx.com.anzen.plugins;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+
+/**
+ * Tests of {@link Xpp3DomPath}.
+ */
+public class Xpp3DomPathTest extends TestCase {
+
+	private Xpp3Dom configuration;
+
+	@Override
+	protected void setUp() throws Exception {
+		configuration = Xpp3DomBuilder.build(new StringReader("<configuration>" //
+				+ "<show>private</show>" //
+				+ "<archive><index>true</index><manifest><mainClass>a.Main</mainClass></manifest></archive>" //
+				+ "<groups><group><title>First</title></group><group><title>Second</title></group></groups>" //
+				+ "<tags><tag><name>deep</name><show>nested</show></tag></tags>" //
+				+ "</configuration>"));
+	}
+
+	public void testChild() {
+		assertEquals("private", Xpp3DomPath.compile("show").selectFirst(configuration).getValue());
+		assertEquals("true", Xpp3DomPath.compile("archive/index").selectFirst(configuration).getValue());
+		assertNull(Xpp3DomPath.compile("mainClass").selectFirst(configuration));
+		assertNull(Xpp3DomPath.compile("archive/mainClass").selectFirst(configuration));
+	}
+
+	public void testDescendant() {
+		assertEquals("a.Main", Xpp3DomPath.compile("archive//mainClass").selectFirst(configuration).getValue());
+		assertEquals("a.Main", Xpp3DomPath.compile("//mainClass").selectFirst(configuration).getValue());
+		assertEquals("deep", Xpp3DomPath.compile("tags//name").selectFirst(configuration).getValue());
+	}
+
+	public void testFirstInDocumentOrder() {
+		assertEquals("First", Xpp3DomPath.compile("groups//group//title").selectFirst(configuration).getValue());
+		assertEquals("private", Xpp3DomPath.compile("//show").selectFirst(configuration).getValue());
+	}
+
+	public void testNullContext() {
+		assertNull(Xpp3DomPath.compile("show").selectFirst(null));
+	}
+
+	public void testMatches() {
+		Xpp3DomPath path = Xpp3DomPath.compile("archive//mainClass");
+		assertTrue(path.matches(new String[] { "archive", "manifest", "mainClass" }, 3));
+		assertTrue(path.matches(new String[] { "archive", "mainClass" }, 2));
+		assertFalse(path.matches(new String[] { "jar", "archive", "mainClass" }, 3));
+		assertFalse(path.matches(new String[] { "archive", "manifest", "mainClass" }, 2));
+		assertFalse(path.matches(new String[0], 0));
+
+		Xpp3DomPath child = Xpp3DomPath.compile("archive/index");
+		assertTrue(child.matches(new String[] { "archive", "index" }, 2));
+		assertFalse(child.matches(new String[] { "archive", "manifest", "index" }, 3));
+
+		Xpp3DomPath descendant = Xpp3DomPath.compile("//show");
+		assertTrue(descendant.matches(new String[] { "tags", "tag", "show" }, 3));
+		assertTrue(descendant.matches(new String[] { "show" }, 1));
+	}
+
+	public void testCompileCached() {
+		Xpp3DomPath path = Xpp3DomPath.compile("groups//group//title");
+		assertSame(path, Xpp3DomPath.compile("groups//group//title"));
+		assertEquals("title", path.getLastName());
+		assertEquals("groups//group//title", path.getExpression());
+	}
+
+	public void testUnsupportedExpression() {
+		String[] expressions = { "", "/", "a///b", "a/", "a[1]", "@name" };
+		for (int i = 0; i < expressions.length; i++) {
+			try {
+				Xpp3DomPath.compile(expressions[i]);
+				fail("Compiled: " + expressions[i]);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+}